@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.benchmarks;
+
+import com.angelocvti.contactsbook.model.Contact;
+import com.angelocvti.contactsbook.persistence.ContactDao;
+import com.angelocvti.contactsbook.persistence.Page;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Single row reads and writes of {@link ContactDao} on a table with {@link #TABLE_SIZE} contacts.
+ *
+ * @author Angelo Cavalcanti
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContactDaoBenchmark {
+
+  private static final int TABLE_SIZE = 10_000;
+
+  private final AtomicLong insertedEmails = new AtomicLong();
+
+  private EmbeddedDatabase database;
+  private Connection connection;
+  private ContactDao contactDao;
+  private LocalDate birthdate;
+
+  @Setup
+  public void setUp() throws IOException, SQLException {
+    database = EmbeddedDatabase.start();
+    database.seed(TABLE_SIZE);
+    connection = database.getConnection();
+    contactDao = ContactDao.builder().withConnection(connection).build();
+    birthdate = LocalDate.of(1990, 1, 1);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException, SQLException {
+    connection.close();
+    database.close();
+  }
+
+  @Benchmark
+  public Optional<Contact> findById() {
+    return contactDao.findById(randomId());
+  }
+
+  @Benchmark
+  public Optional<Contact> findByEmail() {
+    return contactDao.findByEmail("user" + randomId() + "@example.com");
+  }
+
+  @Benchmark
+  public Page<Contact> findPageAfter() {
+    return contactDao.findPageAfter(randomId(), Page.DEFAULT_SIZE);
+  }
+
+  @Benchmark
+  public Long insertAndGetId() {
+    return contactDao.insertAndGetId(
+        contact("inserted" + insertedEmails.incrementAndGet() + "@example.com"));
+  }
+
+  @Benchmark
+  public void update() {
+    long id = randomId();
+    contactDao.update(id, contact("user" + id + "@example.com"));
+  }
+
+  private Contact contact(String email) {
+    return Contact.builder()
+        .withName("Benchmark contact")
+        .withEmail(email)
+        .withAddress("Benchmark street, 1")
+        .withBirthdate(birthdate)
+        .build();
+  }
+
+  private static long randomId() {
+    return ThreadLocalRandom.current().nextLong(1, TABLE_SIZE + 1);
+  }
+}
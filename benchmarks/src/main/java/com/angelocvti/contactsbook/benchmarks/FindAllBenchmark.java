@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.benchmarks;
+
+import com.angelocvti.contactsbook.model.Contact;
+import com.angelocvti.contactsbook.persistence.ContactDao;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reading and mapping the whole table, as a list and as a stream, at several table sizes.
+ *
+ * @author Angelo Cavalcanti
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FindAllBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  public int tableSize;
+
+  private EmbeddedDatabase database;
+  private Connection connection;
+  private ContactDao contactDao;
+
+  @Setup
+  public void setUp() throws IOException, SQLException {
+    database = EmbeddedDatabase.start();
+    database.seed(tableSize);
+    connection = database.getConnection();
+    contactDao = ContactDao.builder().withConnection(connection).build();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException, SQLException {
+    connection.close();
+    database.close();
+  }
+
+  @Benchmark
+  public List<Contact> findAll() {
+    return contactDao.findAll();
+  }
+
+  @Benchmark
+  public void streamAll(Blackhole blackhole) {
+    try (Stream<Contact> contacts = contactDao.streamAll()) {
+      contacts.forEach(blackhole::consume);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.loadtests;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * PostgreSQL server started in a temporary directory, with the schema from the contacts-table.sql
+ * packaged in the WAR under test.
+ *
+ * @author Angelo Cavalcanti
+ */
+final class EmbeddedDatabase implements AutoCloseable {
+
+  private static final String SCHEMA = "WEB-INF/classes/contacts-table.sql";
+
+  private final EmbeddedPostgres postgres;
+
+  private EmbeddedDatabase(EmbeddedPostgres postgres) {
+    this.postgres = postgres;
+  }
+
+  static EmbeddedDatabase start(Path war) throws IOException, SQLException {
+    EmbeddedDatabase database = new EmbeddedDatabase(EmbeddedPostgres.builder().start());
+    try (Connection connection = database.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute(readSchema(war));
+    }
+    return database;
+  }
+
+  String getUrl() {
+    return postgres.getJdbcUrl("postgres", "postgres");
+  }
+
+  Connection getConnection() throws SQLException {
+    return DriverManager.getConnection(getUrl());
+  }
+
+  /**
+   * Inserts {@code size} contacts in the default book, with ids from 1 to size and emails
+   * user{id}@example.com.
+   */
+  void seed(int size) throws SQLException {
+    try (Connection connection = getConnection();
+        PreparedStatement preparedStatement =
+            connection.prepareStatement(
+                "INSERT INTO contacts (book_id, name, email, address, birthdate)"
+                    + " SELECT 1, 'Contact ' || g, 'user' || g || '@example.com',"
+                    + " 'Street ' || g || ', ' || g % 1000, date '1950-01-01' + g % 20000"
+                    + " FROM generate_series(1, ?) g")) {
+      preparedStatement.setInt(1, size);
+      preparedStatement.execute();
+    }
+    try (Connection connection = getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute("ANALYZE contacts");
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    postgres.close();
+  }
+
+  private static String readSchema(Path war) throws IOException {
+    try (ZipFile zip = new ZipFile(war.toFile())) {
+      ZipEntry entry = zip.getEntry(SCHEMA);
+      if (entry == null) {
+        throw new IOException(SCHEMA + " not found in " + war + ".");
+      }
+      try (InputStream inputStream = zip.getInputStream(entry)) {
+        ByteArrayOutputStream schema = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+          schema.write(buffer, 0, read);
+        }
+        return new String(schema.toByteArray(), StandardCharsets.UTF_8);
+      }
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.loadtests;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+
+/**
+ * Tomcat started on a free port, serving the WAR under test at the root context. The application
+ * reads its settings from JVM system properties when the environment variables are not set, so they
+ * are set before the WAR is deployed.
+ *
+ * @author Angelo Cavalcanti
+ */
+final class EmbeddedServer implements AutoCloseable {
+
+  private final Tomcat tomcat;
+
+  private EmbeddedServer(Tomcat tomcat) {
+    this.tomcat = tomcat;
+  }
+
+  static EmbeddedServer start(Path war, String jdbcUrl) throws IOException, LifecycleException {
+    System.setProperty("JDBC_DATABASE_URL", jdbcUrl);
+
+    Tomcat tomcat = new Tomcat();
+    Path baseDir = Files.createTempDirectory("contacts-book-tomcat");
+    // The WAR is expanded under the webapps directory, which Tomcat doesn't create.
+    Files.createDirectories(baseDir.resolve("webapps"));
+    tomcat.setBaseDir(baseDir.toString());
+    tomcat.setPort(0);
+    tomcat.getConnector();
+    tomcat.addWebapp("", war.toAbsolutePath().toString());
+    tomcat.start();
+    return new EmbeddedServer(tomcat);
+  }
+
+  String getBaseUrl() {
+    return "http://localhost:" + tomcat.getConnector().getLocalPort();
+  }
+
+  @Override
+  public void close() throws LifecycleException {
+    tomcat.stop();
+    tomcat.destroy();
+  }
+}
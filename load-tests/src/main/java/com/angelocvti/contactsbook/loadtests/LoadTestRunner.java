@@ -0,0 +1,126 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.loadtests;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deploys the WAR in an embedded Tomcat against an embedded PostgreSQL seeded with the requested
+ * number of contacts, warms it up, then drives the mixed workload at the target rate. Prints the
+ * throughput, latency percentiles and error rate of each operation, writes them to
+ * load-tests/target/load-result.json, and exits with status 1 when a threshold is exceeded.
+ *
+ * <p>Options, given as "--name value", with their defaults:
+ *
+ * <ul>
+ *   <li>--war target/contacts-book-0.0.1-SNAPSHOT.war
+ *   <li>--contacts 100000, the contacts seeded before the run
+ *   <li>--rate 200, the requests per second sent
+ *   <li>--duration 30 and --warmup 10, in seconds
+ *   <li>--threads 64, the most requests in flight at once
+ *   <li>--mix list=60,search=10,get=15,add=10,update=5, the weight of each operation
+ *   <li>--thresholds load-tests/thresholds.properties, or "none" to only report
+ *   <li>--result load-tests/target/load-result.json
+ * </ul>
+ *
+ * The application settings, such as DB_POOL_MAX_SIZE, can be passed as environment variables or as
+ * -D system properties.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class LoadTestRunner {
+
+  private LoadTestRunner() {}
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = parseOptions(args);
+    Path war = Paths.get(options.getOrDefault("war", "target/contacts-book-0.0.1-SNAPSHOT.war"));
+    int contacts = Integer.parseInt(options.getOrDefault("contacts", "100000"));
+    int rate = Integer.parseInt(options.getOrDefault("rate", "200"));
+    long duration = Long.parseLong(options.getOrDefault("duration", "30"));
+    long warmup = Long.parseLong(options.getOrDefault("warmup", "10"));
+    int threads = Integer.parseInt(options.getOrDefault("threads", "64"));
+    String mix = options.getOrDefault("mix", "list=60,search=10,get=15,add=10,update=5");
+    String thresholdsFile = options.getOrDefault("thresholds", "load-tests/thresholds.properties");
+    Path result = Paths.get(options.getOrDefault("result", "load-tests/target/load-result.json"));
+
+    if (!Files.isRegularFile(war)) {
+      throw new IllegalArgumentException(war + " not found, build it with mvn package first.");
+    }
+    Thresholds thresholds =
+        "none".equals(thresholdsFile) ? null : Thresholds.load(Paths.get(thresholdsFile));
+    // Keeps a connection per thread alive instead of the default five.
+    System.setProperty("http.maxConnections", String.valueOf(threads));
+
+    List<String> violations;
+    try (EmbeddedDatabase database = EmbeddedDatabase.start(war)) {
+      System.out.println("Seeding " + contacts + " contacts...");
+      database.seed(contacts);
+
+      try (EmbeddedServer server = EmbeddedServer.start(war, database.getUrl())) {
+        Workload workload =
+            new Workload(server.getBaseUrl(), Workload.parseMix(mix), contacts, rate, threads);
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        if (warmup > 0) {
+          System.out.println("Warming up for " + warmup + " s...");
+          workload.run(warmup, runId + "w");
+        }
+        System.out.println("Running " + mix + " for " + duration + " s...");
+        Results results = workload.run(duration, runId);
+
+        results.print(System.out);
+        results.writeJson(result);
+        violations = thresholds == null ? null : thresholds.check(results.getStatistics());
+      }
+    }
+
+    if (violations == null) {
+      return;
+    }
+    if (violations.isEmpty()) {
+      System.out.println("\nAll thresholds met.");
+      return;
+    }
+    System.out.println("\nThresholds exceeded:");
+    violations.forEach(violation -> System.out.println("  " + violation));
+    System.exit(1);
+  }
+
+  private static Map<String, String> parseOptions(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i < args.length; i += 2) {
+      if (!args[i].startsWith("--") || i + 1 >= args.length) {
+        throw new IllegalArgumentException("Options are given as --name value: " + args[i]);
+      }
+      options.put(args[i].substring(2), args[i + 1]);
+    }
+    return options;
+  }
+}
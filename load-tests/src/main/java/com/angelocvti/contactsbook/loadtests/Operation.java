@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.loadtests;
+
+import java.net.HttpURLConnection;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * The requests of the workload. Reads and updates pick a random seeded contact, inserts use a new
+ * e-Mail for every request so none of them fails as a duplicate.
+ *
+ * @author Angelo Cavalcanti
+ */
+enum Operation {
+  /** A page of the listing, the first one or one after a random contact. */
+  LIST(HttpURLConnection.HTTP_OK) {
+    @Override
+    String path(Random random, int contacts, String runId, long sequence) {
+      return sequence % 4 == 0 ? "/listContact" : "/listContact?after=" + random.nextInt(contacts);
+    }
+  },
+
+  /** A search for the e-Mail of a random contact. */
+  SEARCH(HttpURLConnection.HTTP_OK) {
+    @Override
+    String path(Random random, int contacts, String runId, long sequence) {
+      return "/searchContacts?q=user" + randomId(random, contacts) + "%40example";
+    }
+  },
+
+  /** A random contact read through the JSON API. */
+  GET(HttpURLConnection.HTTP_OK) {
+    @Override
+    String path(Random random, int contacts, String runId, long sequence) {
+      return "/api/contacts/" + randomId(random, contacts);
+    }
+  },
+
+  /** A new contact added through the form, answered with a redirect to the listing. */
+  ADD(HttpURLConnection.HTTP_MOVED_TEMP) {
+    @Override
+    String path(Random random, int contacts, String runId, long sequence) {
+      return "/addContact?name=Load+"
+          + sequence
+          + "&email=load-"
+          + runId
+          + "-"
+          + sequence
+          + "%40example.com&address=Street+"
+          + sequence
+          + "&birthdate=01%2F02%2F1990";
+    }
+  },
+
+  /** A random contact overwritten through the form, keeping its e-Mail. */
+  UPDATE(HttpURLConnection.HTTP_MOVED_TEMP) {
+    @Override
+    String path(Random random, int contacts, String runId, long sequence) {
+      long id = randomId(random, contacts);
+      return "/updateContact?id="
+          + id
+          + "&name=Contact+"
+          + id
+          + "&email=user"
+          + id
+          + "%40example.com&address=Street+"
+          + sequence
+          + "&birthdate=01%2F02%2F1990";
+    }
+  };
+
+  private final int expectedStatus;
+
+  Operation(int expectedStatus) {
+    this.expectedStatus = expectedStatus;
+  }
+
+  /**
+   * @param contacts The number of seeded contacts, whose ids go from 1 to contacts.
+   * @param runId Tells apart the contacts added by different runs against the same database.
+   * @param sequence The position of the request in the run.
+   * @return the path and query string of the request.
+   */
+  abstract String path(Random random, int contacts, String runId, long sequence);
+
+  int getExpectedStatus() {
+    return expectedStatus;
+  }
+
+  /** Name used in the mix, the report and the thresholds. */
+  String key() {
+    return name().toLowerCase(Locale.ROOT);
+  }
+
+  static Operation fromKey(String key) {
+    for (Operation operation : values()) {
+      if (operation.key().equals(key.trim())) {
+        return operation;
+      }
+    }
+    throw new IllegalArgumentException("Unknown operation: " + key + ".");
+  }
+
+  private static long randomId(Random random, int contacts) {
+    return 1 + random.nextInt(contacts);
+  }
+}
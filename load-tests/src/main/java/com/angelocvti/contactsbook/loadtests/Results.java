@@ -0,0 +1,230 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.loadtests;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies and errors of the requests of one run, by operation. A latency is measured from the
+ * moment the request was scheduled to be sent, not from when a thread got to send it, so a server
+ * that falls behind the target rate shows up in the percentiles instead of lowering the load.
+ *
+ * @author Angelo Cavalcanti
+ */
+final class Results {
+
+  /** Name under which the statistics of all the operations together are reported. */
+  static final String ALL = "all";
+
+  private final Map<Operation, Samples> samples = new EnumMap<>(Operation.class);
+  private final int targetRate;
+  private long elapsedNanos;
+
+  Results(int targetRate) {
+    this.targetRate = targetRate;
+    for (Operation operation : Operation.values()) {
+      samples.put(operation, new Samples());
+    }
+  }
+
+  void record(Operation operation, long latencyNanos, boolean succeeded) {
+    samples.get(operation).add(latencyNanos, succeeded);
+  }
+
+  void setElapsedNanos(long elapsedNanos) {
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /** Statistics of each operation that ran, followed by those of all of them together. */
+  Map<String, Statistics> getStatistics() {
+    Map<String, Statistics> statistics = new LinkedHashMap<>();
+    Samples all = new Samples();
+    for (Map.Entry<Operation, Samples> entry : samples.entrySet()) {
+      Samples operation = entry.getValue();
+      if (operation.count > 0) {
+        statistics.put(entry.getKey().key(), operation.statistics(elapsedNanos));
+        all.addAll(operation);
+      }
+    }
+    statistics.put(ALL, all.statistics(elapsedNanos));
+    return statistics;
+  }
+
+  void print(PrintStream out) {
+    out.printf(
+        Locale.ROOT, "%nTarget rate %d req/s over %.1f s%n%n", targetRate, elapsedNanos / 1e9);
+    out.printf(
+        Locale.ROOT,
+        "%-8s %9s %8s %8s %9s %9s %9s %9s %9s%n",
+        "",
+        "requests",
+        "errors",
+        "error %",
+        "req/s",
+        "p50 ms",
+        "p90 ms",
+        "p99 ms",
+        "max ms");
+    for (Map.Entry<String, Statistics> entry : getStatistics().entrySet()) {
+      Statistics statistics = entry.getValue();
+      out.printf(
+          Locale.ROOT,
+          "%-8s %9d %8d %8.2f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+          entry.getKey(),
+          statistics.requests,
+          statistics.errors,
+          statistics.errorRate * 100,
+          statistics.throughput,
+          statistics.p50Millis,
+          statistics.p90Millis,
+          statistics.p99Millis,
+          statistics.maxMillis);
+    }
+  }
+
+  void writeJson(Path path) throws IOException {
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      writer.write("{\"targetRate\":" + targetRate);
+      writer.write(",\"elapsedSeconds\":" + elapsedNanos / 1e9);
+      writer.write(",\"operations\":{");
+      boolean first = true;
+      for (Map.Entry<String, Statistics> entry : getStatistics().entrySet()) {
+        Statistics statistics = entry.getValue();
+        writer.write(first ? "" : ",");
+        writer.write("\"" + entry.getKey() + "\":{");
+        writer.write("\"requests\":" + statistics.requests);
+        writer.write(",\"errors\":" + statistics.errors);
+        writer.write(",\"errorRate\":" + statistics.errorRate);
+        writer.write(",\"throughput\":" + statistics.throughput);
+        writer.write(",\"p50Millis\":" + statistics.p50Millis);
+        writer.write(",\"p90Millis\":" + statistics.p90Millis);
+        writer.write(",\"p99Millis\":" + statistics.p99Millis);
+        writer.write(",\"maxMillis\":" + statistics.maxMillis);
+        writer.write("}");
+        first = false;
+      }
+      writer.write("}}\n");
+    }
+  }
+
+  /** Summary of the requests of one operation; the throughput only counts successful requests. */
+  static final class Statistics {
+
+    final long requests;
+    final long errors;
+    final double errorRate;
+    final double throughput;
+    final double p50Millis;
+    final double p90Millis;
+    final double p99Millis;
+    final double maxMillis;
+
+    private Statistics(long requests, long errors, double throughput, long[] sortedNanos) {
+      this.requests = requests;
+      this.errors = errors;
+      this.errorRate = requests == 0 ? 0 : (double) errors / requests;
+      this.throughput = throughput;
+      this.p50Millis = percentile(sortedNanos, 0.50);
+      this.p90Millis = percentile(sortedNanos, 0.90);
+      this.p99Millis = percentile(sortedNanos, 0.99);
+      this.maxMillis = percentile(sortedNanos, 1.0);
+    }
+
+    /** Looks a statistic up by the name used in the thresholds file, e.g. "p99.ms". */
+    double get(String name) {
+      switch (name) {
+        case "p50.ms":
+          return p50Millis;
+        case "p90.ms":
+          return p90Millis;
+        case "p99.ms":
+          return p99Millis;
+        case "max.ms":
+          return maxMillis;
+        case "error.rate":
+          return errorRate;
+        case "throughput":
+          return throughput;
+        default:
+          throw new IllegalArgumentException("Unknown statistic: " + name + ".");
+      }
+    }
+
+    private static double percentile(long[] sortedNanos, double quantile) {
+      if (sortedNanos.length == 0) {
+        return 0;
+      }
+      int index = (int) Math.ceil(quantile * sortedNanos.length) - 1;
+      long nanos = sortedNanos[Math.max(0, Math.min(index, sortedNanos.length - 1))];
+      return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+  }
+
+  /** Latencies of the requests, errors included, so failing fast doesn't improve them. */
+  private static final class Samples {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private long errors;
+
+    private synchronized void add(long latencyNanos, boolean succeeded) {
+      if (count == latencies.length) {
+        latencies = Arrays.copyOf(latencies, count * 2);
+      }
+      latencies[count++] = latencyNanos;
+      if (!succeeded) {
+        errors++;
+      }
+    }
+
+    private synchronized void addAll(Samples other) {
+      for (int i = 0; i < other.count; i++) {
+        add(other.latencies[i], true);
+      }
+      errors += other.errors;
+    }
+
+    private synchronized Statistics statistics(long elapsedNanos) {
+      long[] sorted = Arrays.copyOf(latencies, count);
+      Arrays.sort(sorted);
+      double seconds = elapsedNanos / 1e9;
+      return new Statistics(count, errors, seconds > 0 ? (count - errors) / seconds : 0, sorted);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.loadtests;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Limits a run must stay within, read from a properties file. Each key is an operation, or "all",
+ * followed by a statistic: "p50.ms", "p90.ms", "p99.ms", "max.ms" and "error.rate" are maximums,
+ * "throughput" is a minimum in successful requests per second. E.g. "list.p99.ms=250".
+ *
+ * @author Angelo Cavalcanti
+ */
+final class Thresholds {
+
+  private final Properties limits;
+
+  private Thresholds(Properties limits) {
+    this.limits = limits;
+  }
+
+  static Thresholds load(Path path) throws IOException {
+    Properties limits = new Properties();
+    try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      limits.load(reader);
+    }
+    return new Thresholds(limits);
+  }
+
+  /**
+   * Compares the statistics of a run with the limits. Limits of operations that didn't run are
+   * skipped.
+   *
+   * @return a description of each limit the run went past, empty if it passed.
+   */
+  List<String> check(Map<String, Results.Statistics> statistics) {
+    List<String> violations = new ArrayList<>();
+    for (String key : new TreeSet<>(limits.stringPropertyNames())) {
+      int separator = key.indexOf('.');
+      if (separator < 0) {
+        throw new IllegalArgumentException("Invalid threshold: " + key + ".");
+      }
+      Results.Statistics operation = statistics.get(key.substring(0, separator));
+      if (operation == null) {
+        continue;
+      }
+      String statistic = key.substring(separator + 1);
+      double limit = Double.parseDouble(limits.getProperty(key).trim());
+      double value = operation.get(statistic);
+      boolean minimum = "throughput".equals(statistic);
+      if (minimum ? value < limit : value > limit) {
+        violations.add(
+            String.format(
+                Locale.ROOT,
+                "%s is %.3f, %s %s",
+                key,
+                value,
+                minimum ? "below the minimum of" : "above the maximum of",
+                limits.getProperty(key).trim()));
+      }
+    }
+    return violations;
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.loadtests;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open workload: requests are scheduled at a fixed rate, whatever the response times, and spread
+ * over the operations by the weights of the mix. Each request is sent by the first free thread, so
+ * the threads bound how many requests can be in flight, not how many are sent.
+ *
+ * @author Angelo Cavalcanti
+ */
+final class Workload {
+
+  private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+  private static final int READ_TIMEOUT_MILLIS = 60_000;
+
+  private final String baseUrl;
+  private final Map<Operation, Integer> mix;
+  private final int totalWeight;
+  private final int contacts;
+  private final int rate;
+  private final int threads;
+
+  Workload(String baseUrl, Map<Operation, Integer> mix, int contacts, int rate, int threads) {
+    this.baseUrl = baseUrl;
+    this.mix = new EnumMap<>(mix);
+    this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+    this.contacts = contacts;
+    this.rate = rate;
+    this.threads = threads;
+    if (totalWeight <= 0) {
+      throw new IllegalArgumentException("The mix must give some weight to an operation.");
+    }
+  }
+
+  /**
+   * Parses a mix like "list=60,get=20,add=20" into the weight of each operation.
+   *
+   * @throws IllegalArgumentException if an operation is unknown or a weight is not a number.
+   */
+  static Map<Operation, Integer> parseMix(String mix) {
+    Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+    for (String entry : mix.split(",")) {
+      String[] keyAndWeight = entry.split("=");
+      if (keyAndWeight.length != 2) {
+        throw new IllegalArgumentException("Invalid mix entry: " + entry + ".");
+      }
+      weights.put(Operation.fromKey(keyAndWeight[0]), Integer.valueOf(keyAndWeight[1].trim()));
+    }
+    return weights;
+  }
+
+  /**
+   * Sends requests at the target rate for the given time and waits for the last of them.
+   *
+   * @param runId Tells apart the contacts added by this run.
+   * @return the latencies and errors of the requests.
+   */
+  Results run(long seconds, String runId) throws InterruptedException {
+    Results results = new Results(rate);
+    long slots = seconds * rate;
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+    long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+    AtomicLong nextSlot = new AtomicLong();
+
+    List<Thread> workers = new ArrayList<>(threads);
+    for (int i = 0; i < threads; i++) {
+      Thread worker =
+          new Thread(
+              () -> {
+                Random random = ThreadLocalRandom.current();
+                long slot;
+                while ((slot = nextSlot.getAndIncrement()) < slots) {
+                  long scheduledAt = start + slot * intervalNanos;
+                  sleepUntil(scheduledAt);
+                  Operation operation = pick(random);
+                  boolean succeeded = send(operation, random, runId, slot);
+                  results.record(operation, System.nanoTime() - scheduledAt, succeeded);
+                }
+              },
+              "load-test-" + i);
+      worker.setDaemon(true);
+      workers.add(worker);
+      worker.start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    results.setElapsedNanos(System.nanoTime() - start);
+    return results;
+  }
+
+  private Operation pick(Random random) {
+    int ticket = random.nextInt(totalWeight);
+    for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+      ticket -= entry.getValue();
+      if (ticket < 0) {
+        return entry.getKey();
+      }
+    }
+    throw new IllegalStateException("The mix weights changed.");
+  }
+
+  private boolean send(Operation operation, Random random, String runId, long sequence) {
+    try {
+      URL url = new URL(baseUrl + operation.path(random, contacts, runId, sequence));
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      connection.setInstanceFollowRedirects(false);
+      connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+      connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+      connection.setRequestProperty("Accept-Encoding", "gzip");
+      int status = connection.getResponseCode();
+      // Reading the body to the end lets the connection be kept alive for the next request.
+      drain(status >= 400 ? connection.getErrorStream() : connection.getInputStream());
+      return status == operation.getExpectedStatus();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static void drain(InputStream inputStream) throws IOException {
+    if (inputStream == null) {
+      return;
+    }
+    try (InputStream body = inputStream) {
+      byte[] buffer = new byte[8192];
+      while (body.read(buffer) != -1) {
+        // Discarded, only the status is checked.
+      }
+    }
+  }
+
+  private static void sleepUntil(long nanoTime) {
+    long remaining;
+    while ((remaining = nanoTime - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remaining);
+    }
+  }
+}
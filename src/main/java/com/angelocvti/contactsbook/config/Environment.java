@@ -0,0 +1,73 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.config;
+
+/**
+ * Reads the application settings from the environment variables, falling back to a default value
+ * when the variable is not set. A variable can also be given as a JVM system property of the same
+ * name, which is how an embedded container, e.g. the one the load tests start, configures the
+ * application; the environment wins when both are set.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class Environment {
+
+  private Environment() {}
+
+  public static String getString(String name, String defaultValue) {
+    String value = System.getenv(name);
+    if (value == null) {
+      value = System.getProperty(name);
+    }
+    return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+  }
+
+  public static int getInt(String name, int defaultValue) {
+    String value = getString(name, null);
+    try {
+      return value == null ? defaultValue : Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The variable " + name + " must be an integer.", e);
+    }
+  }
+
+  public static long getLong(String name, long defaultValue) {
+    String value = getString(name, null);
+    try {
+      return value == null ? defaultValue : Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The variable " + name + " must be an integer.", e);
+    }
+  }
+
+  public static double getDouble(String name, double defaultValue) {
+    String value = getString(name, null);
+    try {
+      return value == null ? defaultValue : Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The variable " + name + " must be a number.", e);
+    }
+  }
+}
@@ -0,0 +1,370 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.dedup;
+
+import com.angelocvti.contactsbook.config.Environment;
+import com.angelocvti.contactsbook.exceptions.ContactNotFoundException;
+import com.angelocvti.contactsbook.model.Contact;
+import com.angelocvti.contactsbook.persistence.ContactDao;
+import com.angelocvti.contactsbook.persistence.Dao;
+import com.angelocvti.contactsbook.persistence.UnitOfWork;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Runs the searches of duplicate contacts in the background, one at a time, and merges the pairs a
+ * reviewer picked. A search reads all the contacts of a book, finds the likely duplicates with a
+ * {@link DuplicateFinder} scoring on a pool of DEDUP_PARALLELISM threads (the number of processors
+ * by default) and replaces the pairs of the book in the table 'contact_duplicates'. The variables
+ * DEDUP_MIN_SCORE and DEDUP_MAX_BLOCK_SIZE tune the finder. The finder keeps a few hundred bytes
+ * per contact in memory while it runs.
+ *
+ * <p>The last search of each book is remembered until the application stops.
+ *
+ * @author Angelo Cavalcanti
+ */
+public enum Deduplication {
+  INSTANCE;
+
+  private static final Logger LOGGER = Logger.getLogger(Deduplication.class.getName());
+
+  private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+  private ExecutorService executor;
+  private ForkJoinPool pool;
+
+  /**
+   * Queues a search of the duplicates of the book, unless one is already queued or running.
+   *
+   * @param bookId The book whose contacts are searched.
+   * @return {@link java.util.Optional Optional} with the queued search, empty if the book already
+   *     had one pending.
+   * @author Angelo Cavalcanti
+   */
+  public synchronized Optional<Job> start(long bookId) {
+    Job current = jobs.get(bookId);
+    if (current != null && !current.isFinished()) {
+      return Optional.empty();
+    }
+    if (executor == null) {
+      executor =
+          Executors.newSingleThreadExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "contacts-book-deduplication");
+                thread.setDaemon(true);
+                return thread;
+              });
+      pool =
+          new ForkJoinPool(
+              Environment.getInt("DEDUP_PARALLELISM", Runtime.getRuntime().availableProcessors()));
+    }
+    Job job = new Job(bookId, State.QUEUED, Instant.now(), null, 0, 0, 0, null);
+    jobs.put(bookId, job);
+    executor.execute(() -> run(job));
+    return Optional.of(job);
+  }
+
+  /** The last search of the book, if any was started since the application started. */
+  public Optional<Job> getJob(long bookId) {
+    return Optional.ofNullable(jobs.get(bookId));
+  }
+
+  /**
+   * Merges pairs of contacts of the book of the unit of work: the blank name, e-Mail or address of
+   * a contact kept is taken from its duplicates, in the order of their ids, then each duplicate is
+   * deleted in favour of the contact kept and the pairs found with the duplicates are dropped. All
+   * of it happens in the transaction of the unit of work. The contacts involved are locked until
+   * the transaction ends, so none is changed or deleted by others before the merge commits.
+   *
+   * @param unitOfWork The unit of work to merge in, committed by the caller.
+   * @param keptByDuplicate The id of the contact kept for each duplicate id.
+   * @return the number of duplicates deleted, less than asked if some were deleted already.
+   * @throws IllegalArgumentException if a contact is merged into itself or is both kept and merged.
+   * @throws com.angelocvti.contactsbook.exceptions.ContactNotFoundException if a contact to keep
+   *     doesn't exist.
+   * @author Angelo Cavalcanti
+   */
+  public int merge(UnitOfWork unitOfWork, Map<Long, Long> keptByDuplicate) {
+    Set<Long> kept = new LinkedHashSet<>();
+    for (Map.Entry<Long, Long> merge : keptByDuplicate.entrySet()) {
+      if (merge.getKey().equals(merge.getValue())) {
+        throw new IllegalArgumentException(
+            "The contact " + merge.getKey() + " can't be merged into itself.");
+      }
+      if (keptByDuplicate.containsKey(merge.getValue())) {
+        throw new IllegalArgumentException(
+            "The contact " + merge.getValue() + " can't be both kept and merged.");
+      }
+      kept.add(merge.getValue());
+    }
+    if (keptByDuplicate.isEmpty()) {
+      return 0;
+    }
+
+    DuplicateDao duplicateDao =
+        DuplicateDao.builder()
+            .withBookId(unitOfWork.getBookId())
+            .withConnectionSupplier(unitOfWork::getWriteConnection)
+            .build();
+    List<Long> duplicates = new ArrayList<>(keptByDuplicate.keySet());
+    List<Long> involved = new ArrayList<>(kept);
+    involved.addAll(duplicates);
+    Set<Long> found = duplicateDao.lockContacts(involved);
+    for (Long id : kept) {
+      if (!found.contains(id)) {
+        throw new ContactNotFoundException("The contact " + id + " to keep was not found.");
+      }
+    }
+
+    Dao<Contact> contacts = unitOfWork.contacts();
+    Map<Long, Contact> originals = new HashMap<>();
+    Map<Long, Contact> filled = new LinkedHashMap<>();
+    for (Long id : kept) {
+      Contact contact =
+          contacts
+              .findById(id)
+              .orElseThrow(
+                  () ->
+                      new ContactNotFoundException(
+                          "The contact " + id + " to keep was not found."));
+      originals.put(id, contact);
+      filled.put(id, contact);
+    }
+    for (Map.Entry<Long, Long> merge : new TreeMap<>(keptByDuplicate).entrySet()) {
+      if (found.contains(merge.getKey())) {
+        contacts
+            .findById(merge.getKey())
+            .ifPresent(
+                duplicate ->
+                    filled.computeIfPresent(merge.getValue(), (id, into) -> fill(into, duplicate)));
+      }
+    }
+
+    // The duplicates go first, so an e-Mail taken from one is free for the contact kept.
+    int merged = contacts.deleteAll(duplicates);
+    for (Map.Entry<Long, Contact> contact : filled.entrySet()) {
+      if (contact.getValue() != originals.get(contact.getKey())) {
+        contacts.update(contact.getKey(), contact.getValue());
+      }
+    }
+    duplicateDao.deleteInvolving(duplicates);
+    return merged;
+  }
+
+  /** The kept contact with its blank fields taken from the duplicate, itself if none was taken. */
+  private static Contact fill(Contact kept, Contact duplicate) {
+    String name = pick(kept.getName(), duplicate.getName());
+    String email = pick(kept.getEmail(), duplicate.getEmail());
+    String address = pick(kept.getAddress(), duplicate.getAddress());
+    if (name == kept.getName() && email == kept.getEmail() && address == kept.getAddress()) {
+      return kept;
+    }
+    Contact.ContactBuilder builder =
+        Contact.builder()
+            .withId(kept.getId())
+            .withName(name)
+            .withEmail(email)
+            .withAddress(address)
+            .withBirthdate(kept.getBirthdate());
+    if (kept.getBookId() != null) {
+      builder.withBookId(kept.getBookId());
+    }
+    if (kept.getVersion() != null) {
+      builder.withVersion(kept.getVersion());
+    }
+    return builder.build();
+  }
+
+  private static String pick(String kept, String duplicate) {
+    return isBlank(kept) && !isBlank(duplicate) ? duplicate : kept;
+  }
+
+  private static boolean isBlank(String value) {
+    return value == null || value.trim().isEmpty();
+  }
+
+  public synchronized void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+      pool.shutdownNow();
+      executor = null;
+      pool = null;
+    }
+    jobs.clear();
+  }
+
+  private void run(Job queued) {
+    long bookId = queued.getBookId();
+    jobs.put(bookId, queued.running());
+    DuplicateFinder finder =
+        DuplicateFinder.builder()
+            .withMinScore(
+                Environment.getDouble("DEDUP_MIN_SCORE", DuplicateFinder.DEFAULT_MIN_SCORE))
+            .withMaxBlockSize(
+                Environment.getInt("DEDUP_MAX_BLOCK_SIZE", DuplicateFinder.DEFAULT_MAX_BLOCK_SIZE))
+            .withPool(pool)
+            .build();
+    try (UnitOfWork unitOfWork = UnitOfWork.builder().withBookId(bookId).build()) {
+      DuplicateFinder.Result result;
+      try (Stream<Contact> contacts =
+          unitOfWork.contacts().streamAll(ContactDao.DEFAULT_FETCH_SIZE)) {
+        result = finder.find(contacts);
+      }
+      DuplicateDao.builder()
+          .withBookId(bookId)
+          .withConnectionSupplier(unitOfWork::getWriteConnection)
+          .build()
+          .replaceAll(result.getMatches());
+      unitOfWork.commit();
+      jobs.put(bookId, queued.done(result));
+      LOGGER.info(
+          "Found "
+              + result.getMatches().size()
+              + " likely duplicates among the "
+              + result.getContacts()
+              + " contacts of book "
+              + bookId
+              + " in "
+              + result.getComparisons()
+              + " comparisons.");
+    } catch (RuntimeException e) {
+      jobs.put(bookId, queued.failed(e.getMessage()));
+      LOGGER.log(Level.WARNING, "Searching the duplicates of book " + bookId + " failed.", e);
+    }
+  }
+
+  /** Where a search stands. */
+  public enum State {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED
+  }
+
+  /** A search of the duplicates of a book, replaced by a new instance as it advances. */
+  public static final class Job {
+
+    private final long bookId;
+    private final State state;
+    private final Instant startedAt;
+    private final Instant finishedAt;
+    private final long contacts;
+    private final long comparisons;
+    private final long duplicates;
+    private final String error;
+
+    private Job(
+        long bookId,
+        State state,
+        Instant startedAt,
+        Instant finishedAt,
+        long contacts,
+        long comparisons,
+        long duplicates,
+        String error) {
+      this.bookId = bookId;
+      this.state = state;
+      this.startedAt = startedAt;
+      this.finishedAt = finishedAt;
+      this.contacts = contacts;
+      this.comparisons = comparisons;
+      this.duplicates = duplicates;
+      this.error = error;
+    }
+
+    private Job running() {
+      return new Job(bookId, State.RUNNING, Instant.now(), null, 0, 0, 0, null);
+    }
+
+    private Job done(DuplicateFinder.Result result) {
+      return new Job(
+          bookId,
+          State.DONE,
+          startedAt,
+          Instant.now(),
+          result.getContacts(),
+          result.getComparisons(),
+          result.getMatches().size(),
+          null);
+    }
+
+    private Job failed(String error) {
+      return new Job(bookId, State.FAILED, startedAt, Instant.now(), 0, 0, 0, error);
+    }
+
+    public long getBookId() {
+      return bookId;
+    }
+
+    public State getState() {
+      return state;
+    }
+
+    public boolean isFinished() {
+      return state == State.DONE || state == State.FAILED;
+    }
+
+    /** When the search was queued, then when it began running. */
+    public Instant getStartedAt() {
+      return startedAt;
+    }
+
+    /** When the search finished, null while it is pending. */
+    public Instant getFinishedAt() {
+      return finishedAt;
+    }
+
+    public long getContacts() {
+      return contacts;
+    }
+
+    public long getComparisons() {
+      return comparisons;
+    }
+
+    public long getDuplicates() {
+      return duplicates;
+    }
+
+    /** Why the search failed, null unless it did. */
+    public String getError() {
+      return error;
+    }
+  }
+}
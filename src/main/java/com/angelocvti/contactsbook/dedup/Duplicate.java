@@ -0,0 +1,58 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.dedup;
+
+import com.angelocvti.contactsbook.model.Contact;
+
+/**
+ * A pair of likely duplicate contacts listed for review: the contact to keep, its duplicate and how
+ * alike they are.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class Duplicate {
+
+  private final Contact contact;
+  private final Contact duplicate;
+  private final double score;
+
+  public Duplicate(Contact contact, Contact duplicate, double score) {
+    this.contact = contact;
+    this.duplicate = duplicate;
+    this.score = score;
+  }
+
+  public Contact getContact() {
+    return contact;
+  }
+
+  public Contact getDuplicate() {
+    return duplicate;
+  }
+
+  public double getScore() {
+    return score;
+  }
+}
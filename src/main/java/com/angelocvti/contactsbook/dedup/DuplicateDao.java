@@ -0,0 +1,276 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.dedup;
+
+import com.angelocvti.contactsbook.exceptions.DaoException;
+import com.angelocvti.contactsbook.model.Contact;
+import com.angelocvti.contactsbook.persistence.Books;
+import com.angelocvti.contactsbook.persistence.Page;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Supplier;
+
+/**
+ * Persists the likely duplicate contacts of an address book in the table 'contact_duplicates'.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class DuplicateDao {
+
+  /** Pairs inserted by each statement. */
+  private static final int INSERT_CHUNK_SIZE = 10_000;
+
+  private static final String[] CONTACT_COLUMNS = {
+    "id", "book_id", "name", "email", "address", "birthdate", "version"
+  };
+
+  private final long bookId;
+  private final Supplier<Connection> connectionSupplier;
+  private final Supplier<Connection> readConnectionSupplier;
+
+  private DuplicateDao(
+      long bookId,
+      Supplier<Connection> connectionSupplier,
+      Supplier<Connection> readConnectionSupplier) {
+    this.bookId = bookId;
+    this.connectionSupplier = connectionSupplier;
+    this.readConnectionSupplier = readConnectionSupplier;
+  }
+
+  /**
+   * Replaces the pairs of the book with the ones of a new run, inserted with a statement per chunk
+   * of pairs.
+   *
+   * @param matches The pairs found.
+   * @author Angelo Cavalcanti
+   */
+  public void replaceAll(final List<Match> matches) {
+    Connection connection = connectionSupplier.get();
+    try (PreparedStatement delete =
+            connection.prepareStatement("DELETE FROM contact_duplicates WHERE book_id = ?");
+        PreparedStatement insert =
+            connection.prepareStatement(
+                "INSERT INTO contact_duplicates (book_id, contact_id, duplicate_id, score)"
+                    + " SELECT ?, * FROM unnest(?::bigint[], ?::bigint[], ?::real[])")) {
+      delete.setLong(1, bookId);
+      delete.executeUpdate();
+
+      for (int start = 0; start < matches.size(); start += INSERT_CHUNK_SIZE) {
+        List<Match> chunk =
+            matches.subList(start, Math.min(matches.size(), start + INSERT_CHUNK_SIZE));
+        Long[] contactIds = new Long[chunk.size()];
+        Long[] duplicateIds = new Long[chunk.size()];
+        Float[] scores = new Float[chunk.size()];
+        for (int i = 0; i < chunk.size(); i++) {
+          contactIds[i] = chunk.get(i).getContactId();
+          duplicateIds[i] = chunk.get(i).getDuplicateId();
+          scores[i] = (float) chunk.get(i).getScore();
+        }
+        insert.setLong(1, bookId);
+        insert.setArray(2, connection.createArrayOf("bigint", contactIds));
+        insert.setArray(3, connection.createArrayOf("bigint", duplicateIds));
+        insert.setArray(4, connection.createArrayOf("float4", scores));
+        insert.executeUpdate();
+      }
+    } catch (SQLException e) {
+      throw new DaoException(e);
+    }
+  }
+
+  /**
+   * Reads a page of the pairs of the book with both of their contacts, best score first. Pairs of
+   * which a contact was deleted since the run are left out.
+   *
+   * @param offset Number of pairs to skip.
+   * @param size The page size, limited to {@link Page#MAX_SIZE}.
+   * @return {@link com.angelocvti.contactsbook.persistence.Page Page} with the pairs, whose cursors
+   *     are the offsets of the neighbour pages.
+   * @author Angelo Cavalcanti
+   */
+  public Page<Duplicate> findPage(final long offset, final int size) {
+    int limit = Page.capSize(size);
+    long start = Math.max(0, offset);
+    List<Duplicate> duplicates = new ArrayList<>(limit + 1);
+
+    try (PreparedStatement preparedStatement =
+        readConnectionSupplier
+            .get()
+            .prepareStatement(
+                "SELECT d.score, "
+                    + columns("c")
+                    + ", "
+                    + columns("x")
+                    + " FROM contact_duplicates d"
+                    + " JOIN contacts c ON c.book_id = d.book_id AND c.id = d.contact_id"
+                    + " JOIN contacts x ON x.book_id = d.book_id AND x.id = d.duplicate_id"
+                    + " WHERE d.book_id = ?"
+                    + " ORDER BY d.score DESC, d.contact_id, d.duplicate_id LIMIT ? OFFSET ?")) {
+      preparedStatement.setLong(1, bookId);
+      preparedStatement.setInt(2, limit + 1);
+      preparedStatement.setLong(3, start);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          duplicates.add(
+              new Duplicate(
+                  toContact(resultSet, 2), toContact(resultSet, 9), resultSet.getFloat(1)));
+        }
+      }
+    } catch (SQLException e) {
+      throw new DaoException(e);
+    }
+
+    boolean hasNext = duplicates.size() > limit;
+    if (hasNext) {
+      duplicates.remove(limit);
+    }
+    Long previousCursor = start > 0 ? Math.max(0, start - limit) : null;
+    Long nextCursor = hasNext ? start + limit : null;
+    return new Page<>(duplicates, previousCursor, nextCursor);
+  }
+
+  /**
+   * Locks the given contacts of the book against being deleted or changed until the transaction
+   * ends, so the contacts a merge keeps are still there when it commits.
+   *
+   * @param ids The primary keys of table 'contacts'.
+   * @return {@link java.util.Set Set} with the ids of the contacts that exist.
+   * @author Angelo Cavalcanti
+   */
+  public Set<Long> lockContacts(final List<Long> ids) {
+    Set<Long> found = new HashSet<>();
+    Connection connection = connectionSupplier.get();
+    try (PreparedStatement preparedStatement =
+        connection.prepareStatement(
+            "SELECT id FROM contacts WHERE book_id = ? AND id = ANY(?) FOR SHARE")) {
+      preparedStatement.setLong(1, bookId);
+      preparedStatement.setArray(2, connection.createArrayOf("bigint", ids.toArray()));
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          found.add(resultSet.getLong(1));
+        }
+      }
+    } catch (SQLException e) {
+      throw new DaoException(e);
+    }
+    return found;
+  }
+
+  /**
+   * Deletes the pairs of the book in which any of the given contacts is, once they were merged.
+   *
+   * @param ids The primary keys of table 'contacts'.
+   * @author Angelo Cavalcanti
+   */
+  public void deleteInvolving(final List<Long> ids) {
+    Connection connection = connectionSupplier.get();
+    try (PreparedStatement preparedStatement =
+        connection.prepareStatement(
+            "DELETE FROM contact_duplicates WHERE book_id = ?"
+                + " AND (contact_id = ANY(?) OR duplicate_id = ANY(?))")) {
+      Array array = connection.createArrayOf("bigint", ids.toArray());
+      preparedStatement.setLong(1, bookId);
+      preparedStatement.setArray(2, array);
+      preparedStatement.setArray(3, array);
+      preparedStatement.executeUpdate();
+    } catch (SQLException e) {
+      throw new DaoException(e);
+    }
+  }
+
+  /** The contact columns of the table alias, in the order {@link #toContact} maps them. */
+  private static String columns(String alias) {
+    StringJoiner columns = new StringJoiner(", ");
+    for (String column : CONTACT_COLUMNS) {
+      columns.add(alias + "." + column);
+    }
+    return columns.toString();
+  }
+
+  /** Maps the contact columns starting at the given column index. */
+  private static Contact toContact(ResultSet resultSet, int column) throws SQLException {
+    return Contact.builder()
+        .withId(resultSet.getLong(column))
+        .withBookId(resultSet.getLong(column + 1))
+        .withName(resultSet.getString(column + 2))
+        .withEmail(resultSet.getString(column + 3))
+        .withAddress(resultSet.getString(column + 4))
+        .withBirthdate(resultSet.getObject(column + 5, LocalDate.class))
+        .withVersion(resultSet.getInt(column + 6))
+        .build();
+  }
+
+  public static DuplicateDaoBuilder builder() {
+    return new DuplicateDaoBuilder();
+  }
+
+  public static class DuplicateDaoBuilder {
+
+    private long bookId = Books.DEFAULT_ID;
+    private Supplier<Connection> connection;
+    private Supplier<Connection> readConnection;
+
+    private DuplicateDaoBuilder() {}
+
+    /** Sets the book whose pairs are read and written. Defaults to {@link Books#DEFAULT_ID}. */
+    public DuplicateDaoBuilder withBookId(long bookId) {
+      this.bookId = bookId;
+      return this;
+    }
+
+    /**
+     * Sets where the connection is taken from, on each operation. It is also used for reading
+     * unless a read connection supplier is set.
+     */
+    public DuplicateDaoBuilder withConnectionSupplier(Supplier<Connection> connection) {
+      this.connection = Objects.requireNonNull(connection, "Connection supplier is required.");
+      return this;
+    }
+
+    /** Sets where the read-only operations take their connection from. */
+    public DuplicateDaoBuilder withReadConnectionSupplier(Supplier<Connection> readConnection) {
+      this.readConnection =
+          Objects.requireNonNull(readConnection, "Read connection supplier is required.");
+      return this;
+    }
+
+    public DuplicateDao build() {
+      Objects.requireNonNull(connection, "Connection is required.");
+      return new DuplicateDao(
+          this.bookId,
+          this.connection,
+          this.readConnection == null ? this.connection : this.readConnection);
+    }
+  }
+}
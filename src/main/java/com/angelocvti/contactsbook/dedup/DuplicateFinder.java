@@ -0,0 +1,333 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.dedup;
+
+import com.angelocvti.contactsbook.model.Contact;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Finds the likely duplicates among the contacts of a book without comparing every contact with
+ * every other, which is quadratic. Each contact is given a few {@link Fingerprint blocking keys}
+ * and only the contacts sharing a key are compared, so the work grows with the number of contacts
+ * times the size of the blocks.
+ *
+ * <p>The blocks are found by sorting one array of longs, each holding a key hash in its high bits
+ * and the index of its contact in the low ones. Blocks larger than the max block size, such as the
+ * one of a very common name, are skipped, since their pairs are mostly strangers and would make the
+ * work quadratic again. A pair sharing several keys is only scored in the block of the smallest of
+ * them that isn't skipped, so no set of compared pairs is needed and a pair sharing a skipped block
+ * is still found through a smaller one. The blocks are then scored in parallel on the given
+ * fork/join pool.
+ *
+ * <p>A pair's score weights how alike the names are (Jaro-Winkler, also with the words sorted so
+ * swapped names match), the email local parts (Jaro-Winkler), the address words (Jaccard) and
+ * whether the birthdates are equal.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class DuplicateFinder {
+
+  public static final double DEFAULT_MIN_SCORE = 0.85;
+  public static final int DEFAULT_MAX_BLOCK_SIZE = 200;
+
+  private static final double NAME_WEIGHT = 0.35;
+  private static final double EMAIL_WEIGHT = 0.30;
+  private static final double ADDRESS_WEIGHT = 0.20;
+  private static final double BIRTHDATE_WEIGHT = 0.15;
+
+  private static final long INDEX_MASK = (1L << Fingerprint.INDEX_BITS) - 1;
+
+  /** Blocks a task scores by itself before splitting them with another task. */
+  private static final int BLOCKS_PER_TASK = 512;
+
+  private final double minScore;
+  private final int maxBlockSize;
+  private final ForkJoinPool pool;
+
+  private DuplicateFinder(double minScore, int maxBlockSize, ForkJoinPool pool) {
+    this.minScore = minScore;
+    this.maxBlockSize = maxBlockSize;
+    this.pool = pool;
+  }
+
+  /**
+   * Reads the contacts and finds the pairs likely to be the same person.
+   *
+   * @param contacts The contacts of one book.
+   * @return {@link Result} with the pairs scoring at least the min score, best first.
+   * @throws IllegalArgumentException if there are more than 2^28 contacts.
+   * @author Angelo Cavalcanti
+   */
+  public Result find(Stream<Contact> contacts) {
+    List<Fingerprint> fingerprints = new ArrayList<>();
+    contacts.forEach(contact -> fingerprints.add(Fingerprint.of(contact)));
+    if (fingerprints.size() > INDEX_MASK) {
+      throw new IllegalArgumentException(
+          "At most " + INDEX_MASK + " contacts can be searched for duplicates at once.");
+    }
+
+    int entryCount = 0;
+    for (Fingerprint fingerprint : fingerprints) {
+      entryCount += fingerprint.keys.length;
+    }
+    long[] entries = new long[entryCount];
+    int entry = 0;
+    for (int index = 0; index < fingerprints.size(); index++) {
+      for (long key : fingerprints.get(index).keys) {
+        entries[entry++] = key | index;
+      }
+    }
+    pool.submit(() -> Arrays.parallelSort(entries)).join();
+
+    int[] blockStarts = new int[16];
+    int blockCount = 0;
+    // Found in the order of the sorted entries, so sorted too.
+    long[] skippedKeys = new long[0];
+    int skippedBlocks = 0;
+    for (int start = 0, end; start < entries.length; start = end) {
+      long key = entries[start] & ~INDEX_MASK;
+      end = start + 1;
+      while (end < entries.length && (entries[end] & ~INDEX_MASK) == key) {
+        end++;
+      }
+      if (end - start > maxBlockSize) {
+        if (skippedBlocks == skippedKeys.length) {
+          skippedKeys = Arrays.copyOf(skippedKeys, Math.max(16, skippedBlocks * 2));
+        }
+        skippedKeys[skippedBlocks++] = key;
+      } else if (end - start > 1) {
+        if (blockCount == blockStarts.length) {
+          blockStarts = Arrays.copyOf(blockStarts, blockCount * 2);
+        }
+        blockStarts[blockCount++] = start;
+      }
+    }
+
+    skippedKeys = Arrays.copyOf(skippedKeys, skippedBlocks);
+
+    LongAdder comparisons = new LongAdder();
+    List<Match> matches =
+        pool.invoke(
+            new ScoreBlocks(
+                fingerprints, entries, blockStarts, skippedKeys, 0, blockCount, comparisons));
+    matches.sort(
+        Comparator.comparingDouble(Match::getScore)
+            .reversed()
+            .thenComparingLong(Match::getContactId)
+            .thenComparingLong(Match::getDuplicateId));
+    return new Result(
+        Collections.unmodifiableList(matches),
+        fingerprints.size(),
+        blockCount,
+        skippedBlocks,
+        comparisons.sum());
+  }
+
+  private double score(Fingerprint a, Fingerprint b) {
+    double name =
+        Math.max(
+            Similarity.jaroWinkler(a.name, b.name),
+            Similarity.jaroWinkler(a.sortedName, b.sortedName));
+    double email = Similarity.jaroWinkler(a.emailLocalPart, b.emailLocalPart);
+    double address = Similarity.jaccard(a.addressTokens, b.addressTokens);
+    double birthdate = a.birthdate != Long.MIN_VALUE && a.birthdate == b.birthdate ? 1 : 0;
+    return NAME_WEIGHT * name
+        + EMAIL_WEIGHT * email
+        + ADDRESS_WEIGHT * address
+        + BIRTHDATE_WEIGHT * birthdate;
+  }
+
+  /** Scores the pairs of a range of blocks, splitting it in halves while it is large. */
+  private final class ScoreBlocks extends RecursiveTask<List<Match>> {
+
+    private final List<Fingerprint> fingerprints;
+    private final long[] entries;
+    private final int[] blockStarts;
+    private final long[] skippedKeys;
+    private final int from;
+    private final int to;
+    private final LongAdder comparisons;
+
+    private ScoreBlocks(
+        List<Fingerprint> fingerprints,
+        long[] entries,
+        int[] blockStarts,
+        long[] skippedKeys,
+        int from,
+        int to,
+        LongAdder comparisons) {
+      this.fingerprints = fingerprints;
+      this.entries = entries;
+      this.blockStarts = blockStarts;
+      this.skippedKeys = skippedKeys;
+      this.from = from;
+      this.to = to;
+      this.comparisons = comparisons;
+    }
+
+    @Override
+    protected List<Match> compute() {
+      if (to - from > BLOCKS_PER_TASK) {
+        int middle = (from + to) >>> 1;
+        ScoreBlocks left =
+            new ScoreBlocks(
+                fingerprints, entries, blockStarts, skippedKeys, from, middle, comparisons);
+        left.fork();
+        List<Match> matches =
+            new ScoreBlocks(
+                    fingerprints, entries, blockStarts, skippedKeys, middle, to, comparisons)
+                .compute();
+        matches.addAll(left.join());
+        return matches;
+      }
+
+      List<Match> matches = new ArrayList<>();
+      long compared = 0;
+      for (int block = from; block < to; block++) {
+        int start = blockStarts[block];
+        long key = entries[start] & ~INDEX_MASK;
+        int end = start + 1;
+        while (end < entries.length && (entries[end] & ~INDEX_MASK) == key) {
+          end++;
+        }
+        for (int i = start; i < end; i++) {
+          Fingerprint a = fingerprints.get((int) (entries[i] & INDEX_MASK));
+          for (int j = i + 1; j < end; j++) {
+            Fingerprint b = fingerprints.get((int) (entries[j] & INDEX_MASK));
+            if (a.smallestSharedKey(b, skippedKeys) != key) {
+              continue;
+            }
+            compared++;
+            double score = score(a, b);
+            if (score >= minScore) {
+              matches.add(
+                  a.id < b.id ? new Match(a.id, b.id, score) : new Match(b.id, a.id, score));
+            }
+          }
+        }
+      }
+      comparisons.add(compared);
+      return matches;
+    }
+  }
+
+  /** The pairs found by a run and how much work it took. */
+  public static final class Result {
+
+    private final List<Match> matches;
+    private final long contacts;
+    private final long blocks;
+    private final long skippedBlocks;
+    private final long comparisons;
+
+    private Result(
+        List<Match> matches, long contacts, long blocks, long skippedBlocks, long comparisons) {
+      this.matches = matches;
+      this.contacts = contacts;
+      this.blocks = blocks;
+      this.skippedBlocks = skippedBlocks;
+      this.comparisons = comparisons;
+    }
+
+    /** The pairs scoring at least the min score, best first. */
+    public List<Match> getMatches() {
+      return matches;
+    }
+
+    public long getContacts() {
+      return contacts;
+    }
+
+    /** Blocks of two or more contacts that were compared. */
+    public long getBlocks() {
+      return blocks;
+    }
+
+    /** Blocks larger than the max block size, left out. */
+    public long getSkippedBlocks() {
+      return skippedBlocks;
+    }
+
+    /** Pairs of contacts scored. */
+    public long getComparisons() {
+      return comparisons;
+    }
+  }
+
+  public static DuplicateFinderBuilder builder() {
+    return new DuplicateFinderBuilder();
+  }
+
+  public static class DuplicateFinderBuilder {
+
+    private double minScore = DEFAULT_MIN_SCORE;
+    private int maxBlockSize = DEFAULT_MAX_BLOCK_SIZE;
+    private ForkJoinPool pool;
+
+    private DuplicateFinderBuilder() {}
+
+    /** Sets the lowest score of a pair to report. Defaults to {@link #DEFAULT_MIN_SCORE}. */
+    public DuplicateFinderBuilder withMinScore(double minScore) {
+      if (minScore <= 0 || minScore > 1) {
+        throw new IllegalArgumentException("The min score must be above 0 and at most 1.");
+      }
+      this.minScore = minScore;
+      return this;
+    }
+
+    /**
+     * Sets the size above which a block is skipped. Defaults to {@link #DEFAULT_MAX_BLOCK_SIZE}.
+     */
+    public DuplicateFinderBuilder withMaxBlockSize(int maxBlockSize) {
+      if (maxBlockSize < 2) {
+        throw new IllegalArgumentException("The max block size must be at least 2.");
+      }
+      this.maxBlockSize = maxBlockSize;
+      return this;
+    }
+
+    /** Sets the pool the blocks are scored on. Defaults to the common pool. */
+    public DuplicateFinderBuilder withPool(ForkJoinPool pool) {
+      this.pool = Objects.requireNonNull(pool, "Pool is required.");
+      return this;
+    }
+
+    public DuplicateFinder build() {
+      return new DuplicateFinder(
+          this.minScore,
+          this.maxBlockSize,
+          this.pool == null ? ForkJoinPool.commonPool() : this.pool);
+    }
+  }
+}
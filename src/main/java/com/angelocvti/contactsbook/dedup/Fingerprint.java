@@ -0,0 +1,166 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.dedup;
+
+import com.angelocvti.contactsbook.model.Contact;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * What a contact is compared by: its name, email local part and address, normalized once, and the
+ * hashes of its blocking keys. Two contacts are only compared when they share a blocking key, which
+ * any two spellings of one person are likely to:
+ *
+ * <ul>
+ *   <li>the {@link Similarity#emailLocalPart(String) local part of the email};
+ *   <li>the {@link Similarity#soundex(String) Soundex codes} of the first and last names, in either
+ *       order;
+ *   <li>the numbers of the address and its longest word, usually the street name.
+ * </ul>
+ *
+ * @author Angelo Cavalcanti
+ */
+final class Fingerprint {
+
+  /** The shortest email local part used as a key, shorter ones like "a" are shared by strangers. */
+  private static final int MIN_EMAIL_KEY_LENGTH = 3;
+
+  /**
+   * Low bits of the key hashes left at zero, where the {@link DuplicateFinder} packs the index of
+   * the contact next to the hash of each of its keys.
+   */
+  static final int INDEX_BITS = 28;
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  final long id;
+  final String name;
+  final String sortedName;
+  final String emailLocalPart;
+  final String addressTokens;
+  final long birthdate;
+  final long[] keys;
+
+  private Fingerprint(Contact contact) {
+    this.id = contact.getId();
+    this.name = Similarity.normalize(contact.getName());
+    String sorted = Similarity.sortedTokens(name);
+    this.sortedName = sorted.equals(name) ? name : sorted;
+    this.emailLocalPart = Similarity.emailLocalPart(contact.getEmail());
+    this.addressTokens = Similarity.addressTokens(contact.getAddress());
+    this.birthdate =
+        contact.getBirthdate() == null ? Long.MIN_VALUE : contact.getBirthdate().toEpochDay();
+    this.keys = keys(name, emailLocalPart, addressTokens);
+  }
+
+  static Fingerprint of(Contact contact) {
+    return new Fingerprint(contact);
+  }
+
+  /**
+   * The smallest key hash both contacts have, leaving out the given ones, or 0 when they share no
+   * other.
+   *
+   * @param skipped The key hashes to leave out, sorted.
+   */
+  long smallestSharedKey(Fingerprint other, long[] skipped) {
+    long smallest = 0;
+    for (long key : keys) {
+      for (long otherKey : other.keys) {
+        if (key == otherKey
+            && (smallest == 0 || key < smallest)
+            && Arrays.binarySearch(skipped, key) < 0) {
+          smallest = key;
+        }
+      }
+    }
+    return smallest;
+  }
+
+  private static long[] keys(String name, String emailLocalPart, String addressTokens) {
+    long[] keys = new long[3];
+    int count = 0;
+    if (emailLocalPart.length() >= MIN_EMAIL_KEY_LENGTH) {
+      keys[count++] = hash("e" + emailLocalPart);
+    }
+    String nameKey = nameKey(name);
+    if (!nameKey.isEmpty()) {
+      keys[count++] = hash("n" + nameKey);
+    }
+    String addressKey = addressKey(addressTokens);
+    if (!addressKey.isEmpty()) {
+      keys[count++] = hash("a" + addressKey);
+    }
+    long[] found = new long[count];
+    System.arraycopy(keys, 0, found, 0, count);
+    return found;
+  }
+
+  private static String nameKey(String name) {
+    if (name.isEmpty()) {
+      return "";
+    }
+    String first = Similarity.soundex(name.substring(0, tokenEnd(name, 0)));
+    String last = Similarity.soundex(name.substring(name.lastIndexOf(' ') + 1));
+    return first.compareTo(last) <= 0 ? first + last : last + first;
+  }
+
+  private static String addressKey(String addressTokens) {
+    if (addressTokens.isEmpty()) {
+      return "";
+    }
+    StringBuilder numbers = new StringBuilder();
+    String longestWord = "";
+    for (String token : addressTokens.split(" ")) {
+      if (Character.isDigit(token.charAt(0))) {
+        numbers.append(token).append(' ');
+      } else if (token.length() > longestWord.length()) {
+        longestWord = token;
+      }
+    }
+    // A street name alone is shared by a whole street, the number is what tells houses apart.
+    return numbers.length() == 0 || longestWord.isEmpty() ? "" : numbers + "|" + longestWord;
+  }
+
+  private static int tokenEnd(String tokens, int start) {
+    int end = tokens.indexOf(' ', start);
+    return end < 0 ? tokens.length() : end;
+  }
+
+  /**
+   * FNV-1a hash of the UTF-8 bytes of the key without its {@link #INDEX_BITS low bits}, never 0 so
+   * 0 can mean no key.
+   */
+  private static long hash(String key) {
+    long hash = FNV_OFFSET;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= FNV_PRIME;
+    }
+    hash &= -1L << INDEX_BITS;
+    return hash == 0 ? 1L << INDEX_BITS : hash;
+  }
+}
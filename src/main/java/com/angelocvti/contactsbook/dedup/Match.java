@@ -0,0 +1,57 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.dedup;
+
+/**
+ * Two contacts of a book found to be likely the same person, with the id of the one to keep, the
+ * oldest, and the id of its duplicate.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class Match {
+
+  private final long contactId;
+  private final long duplicateId;
+  private final double score;
+
+  public Match(long contactId, long duplicateId, double score) {
+    this.contactId = contactId;
+    this.duplicateId = duplicateId;
+    this.score = score;
+  }
+
+  public long getContactId() {
+    return contactId;
+  }
+
+  public long getDuplicateId() {
+    return duplicateId;
+  }
+
+  /** How alike the contacts are, from {@link DuplicateFinder#DEFAULT_MIN_SCORE} up to 1. */
+  public double getScore() {
+    return score;
+  }
+}
@@ -0,0 +1,278 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.dedup;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Normalization of the contact fields and the string similarity measures used to tell whether two
+ * contacts are the same person.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class Similarity {
+
+  /** Common abbreviations of the address words, in Portuguese and English, and what they mean. */
+  private static final Map<String, String> ABBREVIATIONS = new HashMap<>();
+
+  static {
+    ABBREVIATIONS.put("r", "rua");
+    ABBREVIATIONS.put("av", "avenida");
+    ABBREVIATIONS.put("ave", "avenue");
+    ABBREVIATIONS.put("tv", "travessa");
+    ABBREVIATIONS.put("pc", "praca");
+    ABBREVIATIONS.put("pca", "praca");
+    ABBREVIATIONS.put("rod", "rodovia");
+    ABBREVIATIONS.put("ap", "apartamento");
+    ABBREVIATIONS.put("apto", "apartamento");
+    ABBREVIATIONS.put("st", "street");
+    ABBREVIATIONS.put("rd", "road");
+    ABBREVIATIONS.put("dr", "drive");
+    ABBREVIATIONS.put("ln", "lane");
+    ABBREVIATIONS.put("blvd", "boulevard");
+    ABBREVIATIONS.put("apt", "apartment");
+  }
+
+  private static final String SOUNDEX_CODES = "01230120022455012623010202";
+
+  private Similarity() {}
+
+  /**
+   * Lower cases the text and drops its accents, keeping the letters and digits of its words
+   * separated by single spaces, e.g. " José da Silva-Jr." becomes "jose da silva jr".
+   */
+  public static String normalize(String text) {
+    if (text == null) {
+      return "";
+    }
+    String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+    StringBuilder normalized = new StringBuilder(decomposed.length());
+    boolean separated = true;
+    for (int i = 0; i < decomposed.length(); i++) {
+      char c = decomposed.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        normalized.append(Character.toLowerCase(c));
+        separated = false;
+      } else if (Character.getType(c) != Character.NON_SPACING_MARK && !separated) {
+        normalized.append(' ');
+        separated = true;
+      }
+    }
+    int length = normalized.length();
+    if (length > 0 && normalized.charAt(length - 1) == ' ') {
+      normalized.setLength(length - 1);
+    }
+    return normalized.toString();
+  }
+
+  /**
+   * The local part of an email normalized so the spellings of one mailbox compare equal: without
+   * the "+tag", the accents and anything but letters and digits, e.g. "Ana.Silva+work@mail.com"
+   * becomes "anasilva".
+   */
+  public static String emailLocalPart(String email) {
+    if (email == null) {
+      return "";
+    }
+    int at = email.indexOf('@');
+    String local = at < 0 ? email : email.substring(0, at);
+    int tag = local.indexOf('+');
+    if (tag >= 0) {
+      local = local.substring(0, tag);
+    }
+    return normalize(local).replace(" ", "");
+  }
+
+  /**
+   * The words of an address, normalized and with the common abbreviations spelled out, sorted and
+   * without repetitions, e.g. "R. das Flores, 12" gives "12 das flores rua".
+   */
+  public static String addressTokens(String address) {
+    String normalized = normalize(address);
+    if (normalized.isEmpty()) {
+      return normalized;
+    }
+    String[] tokens = normalized.split(" ");
+    for (int i = 0; i < tokens.length; i++) {
+      tokens[i] = ABBREVIATIONS.getOrDefault(tokens[i], tokens[i]);
+    }
+    return String.join(" ", sortedDistinct(tokens));
+  }
+
+  /** The words of the normalized text sorted, so "silva ana" and "ana silva" compare equal. */
+  public static String sortedTokens(String normalized) {
+    return normalized.isEmpty()
+        ? normalized
+        : String.join(" ", sortedDistinct(normalized.split(" ")));
+  }
+
+  /**
+   * The American Soundex code of a word, its first letter followed by three digits that stand for
+   * the sound of the next consonants, so "silva" and "sylva" both have the code "s410". Only the
+   * letters a to z are coded: the word should be {@link #normalize(String) normalized}.
+   *
+   * @return the code, or an empty string if the word doesn't start with a letter.
+   */
+  public static String soundex(String word) {
+    if (word.isEmpty() || word.charAt(0) < 'a' || word.charAt(0) > 'z') {
+      return "";
+    }
+    char[] code = {word.charAt(0), '0', '0', '0'};
+    char previous = SOUNDEX_CODES.charAt(word.charAt(0) - 'a');
+    int length = 1;
+    for (int i = 1; i < word.length() && length < code.length; i++) {
+      char c = word.charAt(i);
+      if (c < 'a' || c > 'z') {
+        continue;
+      }
+      char digit = SOUNDEX_CODES.charAt(c - 'a');
+      if (digit != '0' && digit != previous) {
+        code[length++] = digit;
+      }
+      // 'h' and 'w' don't separate two consonants of the same code, vowels do.
+      if (c != 'h' && c != 'w') {
+        previous = digit;
+      }
+    }
+    return new String(code);
+  }
+
+  /**
+   * The Jaro-Winkler similarity of two strings, from 0 when they have nothing in common to 1 when
+   * they are equal. It forgives typos and transpositions and favours a common prefix, which suits
+   * names and the local part of emails.
+   */
+  public static double jaroWinkler(String a, String b) {
+    if (a.equals(b)) {
+      return 1;
+    }
+    int lengthA = a.length();
+    int lengthB = b.length();
+    if (lengthA == 0 || lengthB == 0) {
+      return 0;
+    }
+    int window = Math.max(0, Math.max(lengthA, lengthB) / 2 - 1);
+    boolean[] matchedA = new boolean[lengthA];
+    boolean[] matchedB = new boolean[lengthB];
+    int matches = 0;
+    for (int i = 0; i < lengthA; i++) {
+      int end = Math.min(lengthB - 1, i + window);
+      for (int j = Math.max(0, i - window); j <= end; j++) {
+        if (!matchedB[j] && a.charAt(i) == b.charAt(j)) {
+          matchedA[i] = true;
+          matchedB[j] = true;
+          matches++;
+          break;
+        }
+      }
+    }
+    if (matches == 0) {
+      return 0;
+    }
+    int transpositions = 0;
+    for (int i = 0, j = 0; i < lengthA; i++) {
+      if (matchedA[i]) {
+        while (!matchedB[j]) {
+          j++;
+        }
+        if (a.charAt(i) != b.charAt(j)) {
+          transpositions++;
+        }
+        j++;
+      }
+    }
+    double m = matches;
+    double jaro = (m / lengthA + m / lengthB + (m - transpositions / 2.0) / m) / 3;
+    int prefix = 0;
+    int maxPrefix = Math.min(4, Math.min(lengthA, lengthB));
+    while (prefix < maxPrefix && a.charAt(prefix) == b.charAt(prefix)) {
+      prefix++;
+    }
+    return jaro + prefix * 0.1 * (1 - jaro);
+  }
+
+  /**
+   * The Jaccard index of two lists of {@link #addressTokens(String) sorted and distinct words}: how
+   * many words they share out of all the words they have, from 0 to 1, and 0 when either has none.
+   * Both lists are walked together, without splitting them.
+   */
+  public static double jaccard(String a, String b) {
+    if (a.isEmpty() || b.isEmpty()) {
+      return 0;
+    }
+    int shared = 0;
+    int total = 0;
+    int i = 0;
+    int j = 0;
+    while (i < a.length() && j < b.length()) {
+      int endA = tokenEnd(a, i);
+      int endB = tokenEnd(b, j);
+      int order = compareTokens(a, i, endA, b, j, endB);
+      if (order == 0) {
+        shared++;
+      }
+      if (order <= 0) {
+        i = endA + 1;
+      }
+      if (order >= 0) {
+        j = endB + 1;
+      }
+      total++;
+    }
+    while (i < a.length()) {
+      i = tokenEnd(a, i) + 1;
+      total++;
+    }
+    while (j < b.length()) {
+      j = tokenEnd(b, j) + 1;
+      total++;
+    }
+    return (double) shared / total;
+  }
+
+  private static String[] sortedDistinct(String[] tokens) {
+    return Arrays.stream(tokens).distinct().sorted().toArray(String[]::new);
+  }
+
+  private static int tokenEnd(String tokens, int start) {
+    int end = tokens.indexOf(' ', start);
+    return end < 0 ? tokens.length() : end;
+  }
+
+  private static int compareTokens(String a, int startA, int endA, String b, int startB, int endB) {
+    int lengthA = endA - startA;
+    int lengthB = endB - startB;
+    for (int k = 0; k < Math.min(lengthA, lengthB); k++) {
+      int order = a.charAt(startA + k) - b.charAt(startB + k);
+      if (order != 0) {
+        return order;
+      }
+    }
+    return lengthA - lengthB;
+  }
+}
@@ -26,7 +26,8 @@ package com.angelocvti.contactsbook.exceptions;
 
 /**
  * Thrown when the {@link com.angelocvti.contactsbook.persistence.ConnectionFactory} can't load the
- * driver and return the connection with the database.
+ * driver and return the connection with the database, or when no pooled connection becomes
+ * available in time.
  *
  * @author Angelo Cavalcanti
  */
@@ -34,4 +35,8 @@ public class ConnectionFactoryException extends RuntimeException {
   public ConnectionFactoryException(Throwable cause) {
     super(cause);
   }
+
+  public ConnectionFactoryException(String cause) {
+    super(cause);
+  }
 }
@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.format;
+
+import com.angelocvti.contactsbook.model.Contact;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.Map;
+
+/**
+ * Serialization of {@link com.angelocvti.contactsbook.model.Contact Contact} instances shared by
+ * the endpoints that write contacts as CSV or JSON. Birthdates are written as ISO dates
+ * (yyyy-MM-dd); the forms and the listing use {@link #BIRTHDATE_FORMATTER}.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class ContactFormats {
+
+  /** Format of the birthdates typed in the forms and shown in the listing, e.g. 31/12/1990. */
+  public static final DateTimeFormatter BIRTHDATE_FORMATTER =
+      DateTimeFormatter.ofPattern("dd/MM/uuuu").withResolverStyle(ResolverStyle.STRICT);
+
+  public static final String[] CSV_HEADER = {"id", "name", "email", "address", "birthdate"};
+
+  private ContactFormats() {}
+
+  public static void writeCsv(CsvWriter csvWriter, Contact contact) throws IOException {
+    csvWriter.writeRecord(
+        String.valueOf(contact.getId()),
+        contact.getName(),
+        contact.getEmail(),
+        contact.getAddress(),
+        isoBirthdate(contact));
+  }
+
+  public static void writeJson(JsonWriter jsonWriter, Contact contact) throws IOException {
+    jsonWriter
+        .beginObject()
+        .name("id")
+        .value(contact.getId())
+        .name("name")
+        .value(contact.getName())
+        .name("email")
+        .value(contact.getEmail())
+        .name("address")
+        .value(contact.getAddress())
+        .name("birthdate")
+        .value(isoBirthdate(contact))
+        .name("version")
+        .value(contact.getVersion())
+        .endObject();
+  }
+
+  /**
+   * Builds a contact from a JSON object with the members name, email, address, birthdate (ISO date)
+   * and, optionally, version. Unknown members are ignored.
+   *
+   * @param json JSON document read by a {@link JsonReader}.
+   * @return builder with the contact data, so the caller can set the id.
+   * @throws IllegalArgumentException if the document isn't an object or a member is missing or
+   *     invalid.
+   * @author Angelo Cavalcanti
+   */
+  public static Contact.ContactBuilder readJson(Object json) {
+    if (!(json instanceof Map)) {
+      throw new IllegalArgumentException("Expected a JSON object.");
+    }
+    Map<?, ?> object = (Map<?, ?>) json;
+    Contact.ContactBuilder builder =
+        Contact.builder()
+            .withName(requiredString(object, "name"))
+            .withEmail(requiredString(object, "email"))
+            .withAddress(requiredString(object, "address"));
+    try {
+      builder.withBirthdate(LocalDate.parse(requiredString(object, "birthdate")));
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("The birthdate must be an ISO date (yyyy-MM-dd).");
+    }
+
+    Object version = object.get("version");
+    if (version != null) {
+      if (!(version instanceof BigDecimal)) {
+        throw new IllegalArgumentException("The version must be a number.");
+      }
+      try {
+        builder.withVersion(((BigDecimal) version).intValueExact());
+      } catch (ArithmeticException e) {
+        throw new IllegalArgumentException("The version must be an integer.");
+      }
+    }
+    return builder;
+  }
+
+  private static String requiredString(Map<?, ?> object, String name) {
+    Object value = object.get(name);
+    if (!(value instanceof String) || ((String) value).trim().isEmpty()) {
+      throw new IllegalArgumentException("The member '" + name + "' must be a non-blank string.");
+    }
+    return (String) value;
+  }
+
+  private static String isoBirthdate(Contact contact) {
+    return contact.getBirthdate().toString();
+  }
+}
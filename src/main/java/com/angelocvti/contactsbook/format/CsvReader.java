@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.format;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 CSV records one at a time, so the input is never held in memory as a whole. Fields
+ * may be quoted with double quotes, and quoted fields may contain separators, line breaks and
+ * escaped quotes ("").
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class CsvReader {
+
+  private static final int END = -1;
+
+  private final Reader reader;
+  private int line = 1;
+  private int recordLine;
+  private int pushedBack = Integer.MIN_VALUE;
+
+  public CsvReader(Reader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Reads the next record.
+   *
+   * @return {@link java.util.List List} with the fields of the record, or null at the end of the
+   *     input.
+   * @throws IOException if the input can't be read or a quoted field is not terminated.
+   * @author Angelo Cavalcanti
+   */
+  public List<String> readRecord() throws IOException {
+    int start = line;
+    int next = read();
+    if (next == END) {
+      return null;
+    }
+    recordLine = start;
+
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    while (true) {
+      if (quoted) {
+        if (next == END) {
+          throw new IOException("Unterminated quoted field starting at line " + recordLine + ".");
+        }
+        if (next == '"') {
+          int following = read();
+          if (following == '"') {
+            field.append('"');
+          } else {
+            quoted = false;
+            next = following;
+            continue;
+          }
+        } else {
+          field.append((char) next);
+        }
+      } else if (next == '"' && field.length() == 0) {
+        quoted = true;
+      } else if (next == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else if (next == '\r' || next == '\n' || next == END) {
+        if (next == '\r') {
+          int following = read();
+          if (following != '\n') {
+            unread(following);
+          }
+        }
+        fields.add(field.toString());
+        return fields;
+      } else {
+        field.append((char) next);
+      }
+      next = read();
+    }
+  }
+
+  /** @return the line where the last record returned by {@link #readRecord()} starts. */
+  public int getRecordLine() {
+    return recordLine;
+  }
+
+  private int read() throws IOException {
+    int next;
+    if (pushedBack != Integer.MIN_VALUE) {
+      next = pushedBack;
+      pushedBack = Integer.MIN_VALUE;
+    } else {
+      next = reader.read();
+    }
+    if (next == '\n') {
+      line++;
+    }
+    return next;
+  }
+
+  private void unread(int next) {
+    if (next == '\n') {
+      line--;
+    }
+    pushedBack = next;
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.format;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader for request bodies. A document is read into plain Java values: objects become
+ * a {@link java.util.Map Map} keeping the member order, arrays a {@link java.util.List List},
+ * numbers a {@link java.math.BigDecimal BigDecimal}, and strings, booleans and null their Java
+ * counterparts.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class JsonReader {
+
+  private static final int MAX_DEPTH = 32;
+
+  private final Reader reader;
+  private int position;
+  private int peeked = -2;
+
+  public JsonReader(Reader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Reads a whole document: one value followed only by whitespace.
+   *
+   * @return the value read.
+   * @throws IOException if the input can't be read or isn't well-formed JSON.
+   * @author Angelo Cavalcanti
+   */
+  public Object readDocument() throws IOException {
+    Object value = readValue(0);
+    if (next() != -1) {
+      throw malformed("Unexpected content after the document");
+    }
+    return value;
+  }
+
+  private Object readValue(int depth) throws IOException {
+    if (depth > MAX_DEPTH) {
+      throw malformed("Nesting deeper than " + MAX_DEPTH + " levels");
+    }
+    int c = next();
+    switch (c) {
+      case '{':
+        return readObject(depth + 1);
+      case '[':
+        return readArray(depth + 1);
+      case '"':
+        return readString();
+      case 't':
+        expect("rue");
+        return Boolean.TRUE;
+      case 'f':
+        expect("alse");
+        return Boolean.FALSE;
+      case 'n':
+        expect("ull");
+        return null;
+      case -1:
+        throw malformed("Unexpected end of input");
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) {
+          return readNumber((char) c);
+        }
+        throw malformed("Unexpected character '" + (char) c + "'");
+    }
+  }
+
+  private Map<String, Object> readObject(int depth) throws IOException {
+    Map<String, Object> object = new LinkedHashMap<>();
+    if (peekNext() == '}') {
+      next();
+      return object;
+    }
+    while (true) {
+      if (next() != '"') {
+        throw malformed("Expected a member name");
+      }
+      String name = readString();
+      if (next() != ':') {
+        throw malformed("Expected ':' after the member name");
+      }
+      object.put(name, readValue(depth));
+      int c = next();
+      if (c == '}') {
+        return object;
+      }
+      if (c != ',') {
+        throw malformed("Expected ',' or '}' in object");
+      }
+    }
+  }
+
+  private List<Object> readArray(int depth) throws IOException {
+    List<Object> array = new ArrayList<>();
+    if (peekNext() == ']') {
+      next();
+      return array;
+    }
+    while (true) {
+      array.add(readValue(depth));
+      int c = next();
+      if (c == ']') {
+        return array;
+      }
+      if (c != ',') {
+        throw malformed("Expected ',' or ']' in array");
+      }
+    }
+  }
+
+  private String readString() throws IOException {
+    StringBuilder builder = new StringBuilder();
+    while (true) {
+      int c = read();
+      if (c == -1) {
+        throw malformed("Unterminated string");
+      }
+      if (c == '"') {
+        return builder.toString();
+      }
+      if (c < 0x20) {
+        throw malformed("Unescaped control character in string");
+      }
+      if (c != '\\') {
+        builder.append((char) c);
+        continue;
+      }
+      int escaped = read();
+      switch (escaped) {
+        case '"':
+        case '\\':
+        case '/':
+          builder.append((char) escaped);
+          break;
+        case 'b':
+          builder.append('\b');
+          break;
+        case 'f':
+          builder.append('\f');
+          break;
+        case 'n':
+          builder.append('\n');
+          break;
+        case 'r':
+          builder.append('\r');
+          break;
+        case 't':
+          builder.append('\t');
+          break;
+        case 'u':
+          builder.append(readUnicodeEscape());
+          break;
+        default:
+          throw malformed("Invalid escape sequence");
+      }
+    }
+  }
+
+  private char readUnicodeEscape() throws IOException {
+    int value = 0;
+    for (int i = 0; i < 4; i++) {
+      int digit = Character.digit(read(), 16);
+      if (digit < 0) {
+        throw malformed("Invalid unicode escape");
+      }
+      value = value * 16 + digit;
+    }
+    return (char) value;
+  }
+
+  private BigDecimal readNumber(char first) throws IOException {
+    StringBuilder builder = new StringBuilder().append(first);
+    int c;
+    while ((c = peek()) != -1 && "0123456789.eE+-".indexOf(c) >= 0) {
+      builder.append((char) read());
+    }
+    try {
+      return new BigDecimal(builder.toString());
+    } catch (NumberFormatException e) {
+      throw malformed("Invalid number '" + builder + "'");
+    }
+  }
+
+  private void expect(String rest) throws IOException {
+    for (int i = 0; i < rest.length(); i++) {
+      if (read() != rest.charAt(i)) {
+        throw malformed("Invalid literal");
+      }
+    }
+  }
+
+  /** Next character that isn't whitespace, consumed. */
+  private int next() throws IOException {
+    int c;
+    do {
+      c = read();
+    } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+    return c;
+  }
+
+  /** Next character that isn't whitespace, left unconsumed. */
+  private int peekNext() throws IOException {
+    int c;
+    while ((c = peek()) == ' ' || c == '\t' || c == '\n' || c == '\r') {
+      read();
+    }
+    return c;
+  }
+
+  private int peek() throws IOException {
+    if (peeked == -2) {
+      peeked = reader.read();
+    }
+    return peeked;
+  }
+
+  private int read() throws IOException {
+    int c = peek();
+    peeked = -2;
+    if (c != -1) {
+      position++;
+    }
+    return c;
+  }
+
+  private IOException malformed(String message) {
+    return new IOException(message + " at character " + position + ".");
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.format;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Minimal streaming JSON writer: values are written straight to the underlying writer, so
+ * arbitrarily large documents can be produced without building them in memory.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class JsonWriter {
+
+  private final Writer writer;
+
+  /** One entry per open object or array, telling whether it already has a member. */
+  private final Deque<Boolean> scopes = new ArrayDeque<>();
+
+  private boolean afterName;
+
+  public JsonWriter(Writer writer) {
+    this.writer = writer;
+  }
+
+  public JsonWriter beginObject() throws IOException {
+    beforeValue();
+    writer.write('{');
+    scopes.push(false);
+    return this;
+  }
+
+  public JsonWriter endObject() throws IOException {
+    scopes.pop();
+    writer.write('}');
+    return this;
+  }
+
+  public JsonWriter beginArray() throws IOException {
+    beforeValue();
+    writer.write('[');
+    scopes.push(false);
+    return this;
+  }
+
+  public JsonWriter endArray() throws IOException {
+    scopes.pop();
+    writer.write(']');
+    return this;
+  }
+
+  public JsonWriter name(String name) throws IOException {
+    separate();
+    writeString(name);
+    writer.write(':');
+    afterName = true;
+    return this;
+  }
+
+  public JsonWriter value(String value) throws IOException {
+    beforeValue();
+    if (value == null) {
+      writer.write("null");
+    } else {
+      writeString(value);
+    }
+    return this;
+  }
+
+  public JsonWriter value(Number value) throws IOException {
+    beforeValue();
+    writer.write(value == null ? "null" : value.toString());
+    return this;
+  }
+
+  public JsonWriter value(boolean value) throws IOException {
+    beforeValue();
+    writer.write(value ? "true" : "false");
+    return this;
+  }
+
+  public void flush() throws IOException {
+    writer.flush();
+  }
+
+  private void beforeValue() throws IOException {
+    if (afterName) {
+      afterName = false;
+    } else {
+      separate();
+    }
+  }
+
+  private void separate() throws IOException {
+    if (!scopes.isEmpty()) {
+      if (scopes.peek()) {
+        writer.write(',');
+      } else {
+        scopes.pop();
+        scopes.push(true);
+      }
+    }
+  }
+
+  private void writeString(String value) throws IOException {
+    writer.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          writer.write("\\\"");
+          break;
+        case '\\':
+          writer.write("\\\\");
+          break;
+        case '\n':
+          writer.write("\\n");
+          break;
+        case '\r':
+          writer.write("\\r");
+          break;
+        case '\t':
+          writer.write("\\t");
+          break;
+        default:
+          if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+            writer.write(String.format("\\u%04x", (int) c));
+          } else {
+            writer.write(c);
+          }
+      }
+    }
+    writer.write('"');
+  }
+}
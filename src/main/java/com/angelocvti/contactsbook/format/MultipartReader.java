@@ -0,0 +1,273 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.format;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Reads a part of a multipart/form-data body (RFC 7578) as it arrives, so the body is never held in
+ * memory or spooled to disk as a whole. The parts that come before the wanted one are skipped, and
+ * the wanted part is read up to the boundary that ends it.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class MultipartReader {
+
+  private static final int BUFFER_SIZE = 8192;
+  private static final int MAX_HEADER_LINE = 8192;
+  private static final int MAX_HEADERS = 32;
+
+  private final InputStream inputStream;
+  /** CRLF, two dashes and the boundary, as found between the parts. */
+  private final byte[] delimiter;
+
+  private final byte[] buffer;
+  private int position;
+  private int limit;
+  private boolean endOfInput;
+
+  /** Whether the delimiter ending the part being read was reached. */
+  private boolean endOfPart;
+
+  public MultipartReader(InputStream inputStream, String boundary) {
+    this.inputStream = inputStream;
+    this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+    this.buffer = new byte[BUFFER_SIZE + delimiter.length];
+    // The first delimiter isn't preceded by a line break, unless a preamble comes before it.
+    buffer[0] = '\r';
+    buffer[1] = '\n';
+    limit = 2;
+  }
+
+  /**
+   * Reads the boundary parameter of a multipart content type.
+   *
+   * @return the boundary, or null if the content type isn't multipart or has no boundary.
+   * @author Angelo Cavalcanti
+   */
+  public static String boundary(String contentType) {
+    if (contentType == null
+        || !contentType.toLowerCase(Locale.ROOT).trim().startsWith("multipart/")) {
+      return null;
+    }
+    for (String parameter : contentType.split(";")) {
+      String trimmed = parameter.trim();
+      if (trimmed.toLowerCase(Locale.ROOT).startsWith("boundary=")) {
+        String boundary = trimmed.substring("boundary=".length());
+        if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+          boundary = boundary.substring(1, boundary.length() - 1);
+        }
+        return boundary.isEmpty() ? null : boundary;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Skips to the part of the given form field name and opens it.
+   *
+   * @return {@link java.io.InputStream InputStream} with the content of the part, ending where the
+   *     part ends.
+   * @throws IOException if the body can't be read, isn't well formed or has no such part.
+   * @author Angelo Cavalcanti
+   */
+  public InputStream openPart(String name) throws IOException {
+    skipPart();
+    while (true) {
+      if (!nextPart()) {
+        throw new IOException("The request has no part named '" + name + "'.");
+      }
+      if (name.equals(readPartName())) {
+        return new PartInputStream();
+      }
+      skipPart();
+    }
+  }
+
+  /** Reads the remainder of the current part, or of the preamble, up to its delimiter. */
+  private void skipPart() throws IOException {
+    byte[] skipped = new byte[BUFFER_SIZE];
+    while (readPart(skipped, 0, skipped.length) != -1) {
+      // Skipped.
+    }
+  }
+
+  /**
+   * Reads what follows a delimiter: two dashes for the one closing the body, or else a line break.
+   *
+   * @return whether a part follows.
+   */
+  private boolean nextPart() throws IOException {
+    endOfPart = false;
+    while (limit - position < 2 && fill()) {
+      // The closing dashes may be the last bytes of the body.
+    }
+    if (limit - position >= 2 && buffer[position] == '-' && buffer[position + 1] == '-') {
+      return false;
+    }
+    if (!readLine().trim().isEmpty()) {
+      throw new IOException("Malformed multipart boundary.");
+    }
+    return true;
+  }
+
+  /** Reads the headers of a part, returning the name given by its Content-Disposition. */
+  private String readPartName() throws IOException {
+    String name = null;
+    for (int count = 0; ; count++) {
+      String header = readLine();
+      if (header.isEmpty()) {
+        return name;
+      }
+      if (count == MAX_HEADERS) {
+        throw new IOException("Too many headers in a multipart part.");
+      }
+      if (header.toLowerCase(Locale.ROOT).startsWith("content-disposition:")) {
+        name = dispositionName(header);
+      }
+    }
+  }
+
+  private static String dispositionName(String header) {
+    for (String parameter : header.split(";")) {
+      String trimmed = parameter.trim();
+      if (trimmed.toLowerCase(Locale.ROOT).startsWith("name=")) {
+        String value = trimmed.substring("name=".length());
+        if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+          value = value.substring(1, value.length() - 1);
+        }
+        return value;
+      }
+    }
+    return null;
+  }
+
+  /** Reads a line ended by CRLF, without it. */
+  private String readLine() throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    while (true) {
+      if (position == limit && !fill()) {
+        throw new IOException("Unexpected end of the multipart body.");
+      }
+      byte next = buffer[position++];
+      if (next == '\n') {
+        byte[] bytes = line.toByteArray();
+        int length = bytes.length;
+        if (length > 0 && bytes[length - 1] == '\r') {
+          length--;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+      }
+      if (line.size() == MAX_HEADER_LINE) {
+        throw new IOException("Multipart header line too long.");
+      }
+      line.write(next);
+    }
+  }
+
+  /**
+   * Reads bytes of the current part, stopping before the delimiter that ends it.
+   *
+   * @return the number of bytes read, or -1 once the delimiter was reached and consumed.
+   */
+  private int readPart(byte[] target, int offset, int length) throws IOException {
+    if (endOfPart) {
+      return -1;
+    }
+    while (limit - position < delimiter.length && fill()) {
+      // Enough is buffered to tell whether a delimiter starts at the position.
+    }
+    int found = indexOfDelimiter();
+    if (found == position) {
+      position += delimiter.length;
+      endOfPart = true;
+      return -1;
+    }
+    // Past this index a delimiter could begin with bytes not buffered yet.
+    int available = found >= 0 ? found : limit - delimiter.length + 1;
+    if (available <= position) {
+      throw new IOException("Unexpected end of the multipart body.");
+    }
+    int count = Math.min(length, available - position);
+    System.arraycopy(buffer, position, target, offset, count);
+    position += count;
+    return count;
+  }
+
+  private int indexOfDelimiter() {
+    int last = limit - delimiter.length;
+    outer:
+    for (int i = position; i <= last; i++) {
+      for (int j = 0; j < delimiter.length; j++) {
+        if (buffer[i + j] != delimiter[j]) {
+          continue outer;
+        }
+      }
+      return i;
+    }
+    return -1;
+  }
+
+  /** Reads more of the input into the buffer, returning false at its end. */
+  private boolean fill() throws IOException {
+    if (endOfInput) {
+      return false;
+    }
+    if (position > 0) {
+      System.arraycopy(buffer, position, buffer, 0, limit - position);
+      limit -= position;
+      position = 0;
+    }
+    int read = inputStream.read(buffer, limit, buffer.length - limit);
+    if (read == -1) {
+      endOfInput = true;
+      return false;
+    }
+    limit += read;
+    return true;
+  }
+
+  /** The content of the part being read. */
+  private final class PartInputStream extends InputStream {
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      return readPart(target, offset, length);
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram. Latencies are counted in buckets whose upper bounds grow by a factor
+ * of √2, from 1 µs to about 47 s, so recording is a binary search and an increment and percentiles
+ * are accurate to within one bucket (~41%).
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class LatencyRecorder {
+
+  private static final int BUCKETS = 52;
+
+  /** Upper bound of each bucket, in nanoseconds; the extra last bucket has no bound. */
+  private static final long[] UPPER_BOUNDS_NANOS = new long[BUCKETS];
+
+  static {
+    for (int i = 0; i < BUCKETS; i++) {
+      UPPER_BOUNDS_NANOS[i] = Math.round(1_000 * Math.pow(2, i / 2.0));
+    }
+  }
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS + 1];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sumNanos = new LongAdder();
+
+  public LatencyRecorder() {
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  public void record(long nanos) {
+    int index = Arrays.binarySearch(UPPER_BOUNDS_NANOS, nanos);
+    buckets[index >= 0 ? index : -index - 1].increment();
+    count.increment();
+    sumNanos.add(nanos);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getSumNanos() {
+    return sumNanos.sum();
+  }
+
+  /**
+   * Estimates a percentile of the recorded latencies.
+   *
+   * @param quantile The quantile, between 0 and 1 (e.g. 0.99 for the 99th percentile).
+   * @return upper bound, in nanoseconds, of the bucket holding the percentile, or 0 if nothing was
+   *     recorded.
+   * @author Angelo Cavalcanti
+   */
+  public long getPercentileNanos(double quantile) {
+    long[] counts = snapshot();
+    long total = 0;
+    for (long bucketCount : counts) {
+      total += bucketCount;
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long cumulative = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      cumulative += counts[i];
+      if (cumulative >= rank) {
+        return UPPER_BOUNDS_NANOS[i];
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Cumulative counts at the exported bucket bounds, the powers of two of microseconds (every other
+   * internal bucket), followed by the total count.
+   */
+  long[] cumulativeExportedCounts() {
+    long[] counts = snapshot();
+    long[] exported = new long[exportedBoundsNanos().length + 1];
+    long cumulative = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      cumulative += counts[i];
+      if (i % 2 == 0) {
+        exported[i / 2] = cumulative;
+      }
+    }
+    exported[exported.length - 1] = cumulative + counts[BUCKETS];
+    return exported;
+  }
+
+  static long[] exportedBoundsNanos() {
+    long[] bounds = new long[BUCKETS / 2];
+    for (int i = 0; i < bounds.length; i++) {
+      bounds[i] = UPPER_BOUNDS_NANOS[i * 2];
+    }
+    return bounds;
+  }
+
+  private long[] snapshot() {
+    long[] counts = new long[buckets.length];
+    for (int i = 0; i < buckets.length; i++) {
+      counts[i] = buckets[i].sum();
+    }
+    return counts;
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the application metrics, exported by the {@link
+ * com.angelocvti.contactsbook.servlet.MetricsServlet MetricsServlet}.
+ *
+ * @author Angelo Cavalcanti
+ */
+public enum Metrics {
+  INSTANCE;
+
+  private final ConcurrentMap<String, OperationMetrics> daoOperations = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, OperationMetrics> servlets = new ConcurrentHashMap<>();
+  private final LatencyRecorder connectionAcquire = new LatencyRecorder();
+
+  /** Metrics of a {@link com.angelocvti.contactsbook.persistence.Dao Dao} method. */
+  public OperationMetrics dao(String operation) {
+    return daoOperations.computeIfAbsent(operation, name -> new OperationMetrics());
+  }
+
+  /** Metrics of the requests handled by a servlet. */
+  public OperationMetrics servlet(String servletName) {
+    return servlets.computeIfAbsent(servletName, name -> new OperationMetrics());
+  }
+
+  /** Time spent waiting for a connection from the pool. */
+  public LatencyRecorder connectionAcquire() {
+    return connectionAcquire;
+  }
+
+  Map<String, OperationMetrics> getDaoOperations() {
+    return daoOperations;
+  }
+
+  Map<String, OperationMetrics> getServlets() {
+    return servlets;
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one instrumented operation: calls and latencies, errors and rows returned.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class OperationMetrics {
+
+  private final LatencyRecorder latency = new LatencyRecorder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder rows = new LongAdder();
+
+  public void record(long nanos, boolean failed) {
+    latency.record(nanos);
+    if (failed) {
+      errors.increment();
+    }
+  }
+
+  public void addRows(long count) {
+    rows.add(count);
+  }
+
+  public LatencyRecorder getLatency() {
+    return latency;
+  }
+
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  public long getRows() {
+    return rows.sum();
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes metrics in the Prometheus text exposition format, version 0.0.4.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class PrometheusWriter {
+
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final Writer out;
+
+  public PrometheusWriter(Writer out) {
+    this.out = out;
+  }
+
+  /** Writes everything recorded in the {@link Metrics} registry. */
+  public void writeRegistry(Metrics metrics) throws IOException {
+    writeOperations(
+        "contacts_book_dao", "Dao method calls", "operation", metrics.getDaoOperations(), true);
+    writeOperations(
+        "contacts_book_http",
+        "Requests handled by servlet",
+        "servlet",
+        metrics.getServlets(),
+        false);
+    writeHistogram(
+        "contacts_book_connection_acquire_seconds",
+        "Time spent waiting for a pooled connection",
+        null,
+        null,
+        metrics.connectionAcquire());
+  }
+
+  public void gauge(String name, String help, double value) throws IOException {
+    header(name, help, "gauge");
+    sample(name, "", value);
+  }
+
+  public void counter(String name, String help, double value) throws IOException {
+    header(name, help, "counter");
+    sample(name, "", value);
+  }
+
+  private void writeOperations(
+      String prefix,
+      String help,
+      String labelName,
+      Map<String, OperationMetrics> operations,
+      boolean withRows)
+      throws IOException {
+    Map<String, OperationMetrics> sorted = new TreeMap<>(operations);
+    if (sorted.isEmpty()) {
+      return;
+    }
+
+    header(prefix + "_seconds", help + ", by latency", "histogram");
+    for (Map.Entry<String, OperationMetrics> entry : sorted.entrySet()) {
+      histogramSamples(
+          prefix + "_seconds", labelName, entry.getKey(), entry.getValue().getLatency());
+    }
+
+    header(prefix + "_latency_quantile_seconds", "Latency percentiles since startup", "gauge");
+    for (Map.Entry<String, OperationMetrics> entry : sorted.entrySet()) {
+      for (double quantile : QUANTILES) {
+        sample(
+            prefix + "_latency_quantile_seconds",
+            label(labelName, entry.getKey()) + "," + label("quantile", format(quantile)),
+            entry.getValue().getLatency().getPercentileNanos(quantile) / NANOS_PER_SECOND);
+      }
+    }
+
+    header(prefix + "_errors_total", help + " that failed", "counter");
+    for (Map.Entry<String, OperationMetrics> entry : sorted.entrySet()) {
+      sample(
+          prefix + "_errors_total", label(labelName, entry.getKey()), entry.getValue().getErrors());
+    }
+
+    if (withRows) {
+      header(prefix + "_rows_total", "Rows returned by " + help, "counter");
+      for (Map.Entry<String, OperationMetrics> entry : sorted.entrySet()) {
+        sample(
+            prefix + "_rows_total", label(labelName, entry.getKey()), entry.getValue().getRows());
+      }
+    }
+  }
+
+  private void writeHistogram(
+      String name, String help, String labelName, String labelValue, LatencyRecorder recorder)
+      throws IOException {
+    header(name, help, "histogram");
+    histogramSamples(name, labelName, labelValue, recorder);
+  }
+
+  private void histogramSamples(
+      String name, String labelName, String labelValue, LatencyRecorder recorder)
+      throws IOException {
+    String labels = labelName == null ? "" : label(labelName, labelValue) + ",";
+    long[] bounds = LatencyRecorder.exportedBoundsNanos();
+    long[] counts = recorder.cumulativeExportedCounts();
+    for (int i = 0; i < bounds.length; i++) {
+      sample(
+          name + "_bucket", labels + label("le", format(bounds[i] / NANOS_PER_SECOND)), counts[i]);
+    }
+    sample(name + "_bucket", labels + label("le", "+Inf"), counts[bounds.length]);
+    sample(
+        name + "_sum",
+        labelName == null ? "" : label(labelName, labelValue),
+        recorder.getSumNanos() / NANOS_PER_SECOND);
+    sample(
+        name + "_count",
+        labelName == null ? "" : label(labelName, labelValue),
+        counts[bounds.length]);
+  }
+
+  private void header(String name, String help, String type) throws IOException {
+    out.write("# HELP " + name + " " + help + "\n");
+    out.write("# TYPE " + name + " " + type + "\n");
+  }
+
+  private void sample(String name, String labels, double value) throws IOException {
+    out.write(name);
+    if (!labels.isEmpty()) {
+      out.write("{" + labels + "}");
+    }
+    out.write(" " + format(value) + "\n");
+  }
+
+  private static String label(String name, String value) {
+    return name
+        + "=\""
+        + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")
+        + "\"";
+  }
+
+  private static String format(double value) {
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      return Long.toString((long) value);
+    }
+    return Double.toString(value);
+  }
+}
@@ -24,7 +24,7 @@
 
 package com.angelocvti.contactsbook.model;
 
-import java.util.Calendar;
+import java.time.LocalDate;
 import java.util.Objects;
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotBlank;
@@ -40,6 +40,9 @@ public class Contact {
 
   private final Long id;
 
+  /** The address book of the contact; null for contacts that weren't read from the database. */
+  private final Long bookId;
+
   @NotBlank
   private final String name;
 
@@ -52,20 +55,30 @@ public class Contact {
 
   @NotNull
   @PastOrPresent
-  private final Calendar birthdate;
+  private final LocalDate birthdate;
+
+  /** Incremented on every update; null for contacts that weren't read from the database. */
+  private final Integer version;
 
-  private Contact(Long id, String name, String email, String address, Calendar birthdate) {
+  private Contact(Long id, Long bookId, String name, String email, String address,
+      LocalDate birthdate, Integer version) {
     this.id = id;
+    this.bookId = bookId;
     this.name = name;
     this.email = email;
     this.address = address;
     this.birthdate = birthdate;
+    this.version = version;
   }
 
   public Long getId() {
     return id;
   }
 
+  public Long getBookId() {
+    return bookId;
+  }
+
   public String getName() {
     return name;
   }
@@ -78,10 +91,14 @@ public class Contact {
     return address;
   }
 
-  public Calendar getBirthdate() {
+  public LocalDate getBirthdate() {
     return birthdate;
   }
 
+  public Integer getVersion() {
+    return version;
+  }
+
   public static ContactBuilder builder() {
     return new ContactBuilder();
   }
@@ -89,10 +106,12 @@ public class Contact {
   public static class ContactBuilder {
 
     private Long id;
+    private Long bookId;
     private String name;
     private String email;
     private String address;
-    private Calendar birthdate;
+    private LocalDate birthdate;
+    private Integer version;
 
     private ContactBuilder() {
     }
@@ -102,6 +121,11 @@ public class Contact {
       return this;
     }
 
+    public ContactBuilder withBookId(Long bookId) {
+      this.bookId = Objects.requireNonNull(bookId, "Book id is required.");
+      return this;
+    }
+
     public ContactBuilder withName(String name) {
       this.name = Objects.requireNonNull(name, "Name is required.");
       return this;
@@ -117,22 +141,32 @@ public class Contact {
       return this;
     }
 
-    public ContactBuilder withBirthdate(Calendar birthdate) {
+    public ContactBuilder withBirthdate(LocalDate birthdate) {
       this.birthdate = Objects.requireNonNull(birthdate, "Birthdate is required.");
 
-      if (birthdate.after(Calendar.getInstance())) {
+      if (birthdate.isAfter(LocalDate.now())) {
         throw new IllegalArgumentException("Birthdate needs to be in the past.");
       }
 
       return this;
     }
 
+    /**
+     * Sets the version the contact was read at, so an update only succeeds if nobody changed the
+     * contact in the meantime.
+     */
+    public ContactBuilder withVersion(Integer version) {
+      this.version = Objects.requireNonNull(version, "Version is required.");
+      return this;
+    }
+
     public Contact build() {
       Objects.requireNonNull(this.name, "Name is required.");
       Objects.requireNonNull(this.email, "e-Mail is required.");
       Objects.requireNonNull(this.address, "Address is required.");
       Objects.requireNonNull(this.birthdate, "Birthdate is required.");
-      return new Contact(this.id, this.name, this.email, this.address, this.birthdate);
+      return new Contact(this.id, this.bookId, this.name, this.email, this.address,
+          this.birthdate, this.version);
     }
   }
 }
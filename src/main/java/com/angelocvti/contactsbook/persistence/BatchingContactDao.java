@@ -0,0 +1,205 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import com.angelocvti.contactsbook.exceptions.DaoException;
+import com.angelocvti.contactsbook.model.Contact;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+/**
+ * {@link com.angelocvti.contactsbook.persistence.Dao Dao} decorator that hands the single contact
+ * writes over to the {@link com.angelocvti.contactsbook.persistence.WriteBatcher WriteBatcher} and
+ * waits for their outcome, so they are committed together with the writes of concurrent requests.
+ * Once the write returns it is committed, independently of the unit of work. The writes go to the
+ * book of the unit of work, which the delegate must work on too.
+ *
+ * <p>Batched writes are committed outside the transaction of the unit of work, so they are not
+ * atomic with the rest of the request: a write that returned stays committed even if the unit of
+ * work is rolled back afterwards, and the writes of a request that fails halfway are not undone.
+ * Requests that need several writes to commit together must not go through this Dao.
+ *
+ * <p>A unit of work that already wrote holds locks its own transaction must release first, so its
+ * writes, like the bulk {@link #insertAll(List)} and the reads, go to the delegate.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class BatchingContactDao implements Dao<Contact> {
+
+  private final Dao<Contact> delegate;
+  private final WriteBatcher batcher;
+  private final UnitOfWork unitOfWork;
+
+  private BatchingContactDao(Dao<Contact> delegate, WriteBatcher batcher, UnitOfWork unitOfWork) {
+    this.delegate = delegate;
+    this.batcher = batcher;
+    this.unitOfWork = unitOfWork;
+  }
+
+  @Override
+  public Optional<Contact> findById(final Long id) {
+    return delegate.findById(id);
+  }
+
+  @Override
+  public Optional<Contact> findByEmail(final String email) {
+    return delegate.findByEmail(email);
+  }
+
+  @Override
+  public List<Contact> findAll() {
+    return delegate.findAll();
+  }
+
+  @Override
+  public Page<Contact> findPageAfter(final Long id, final int size) {
+    return delegate.findPageAfter(id, size);
+  }
+
+  @Override
+  public Page<Contact> findPageBefore(final Long id, final int size) {
+    return delegate.findPageBefore(id, size);
+  }
+
+  @Override
+  public Page<Contact> search(final String query, final long offset, final int size) {
+    return delegate.search(query, offset, size);
+  }
+
+  @Override
+  public List<Contact> findUpcomingBirthdays(final LocalDate from, final int days) {
+    return delegate.findUpcomingBirthdays(from, days);
+  }
+
+  @Override
+  public Stream<Contact> streamAll(final int fetchSize) {
+    return delegate.streamAll(fetchSize);
+  }
+
+  @Override
+  public Stream<Contact> streamAfter(final Long id, final int fetchSize) {
+    return delegate.streamAfter(id, fetchSize);
+  }
+
+  @Override
+  public long findRevision() {
+    return delegate.findRevision();
+  }
+
+  @Override
+  public void insert(final Contact contact) {
+    insertAndGetId(contact);
+  }
+
+  @Override
+  public Long insertAndGetId(final Contact contact) {
+    if (unitOfWork.isWriting()) {
+      return delegate.insertAndGetId(contact);
+    }
+    return await(batcher.insert(unitOfWork.getBookId(), contact));
+  }
+
+  @Override
+  public boolean[] insertAll(final List<Contact> contacts) {
+    return delegate.insertAll(contacts);
+  }
+
+  @Override
+  public void update(final Long id, final Contact contact) {
+    if (unitOfWork.isWriting()) {
+      delegate.update(id, contact);
+    } else {
+      await(batcher.update(unitOfWork.getBookId(), id, contact));
+    }
+  }
+
+  @Override
+  public void delete(final Long id) {
+    if (unitOfWork.isWriting()) {
+      delegate.delete(id);
+    } else {
+      await(batcher.delete(unitOfWork.getBookId(), id));
+    }
+  }
+
+  @Override
+  public int deleteAll(final List<Long> ids) {
+    return delegate.deleteAll(ids);
+  }
+
+  /** Waits for the batch holding the write to be flushed, rethrowing the write's own failure. */
+  private <T> T await(CompletableFuture<T> write) {
+    T result;
+    try {
+      result = write.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new DaoException(e.getCause());
+    }
+    unitOfWork.recordWrite();
+    return result;
+  }
+
+  public static BatchingContactDaoBuilder builder() {
+    return new BatchingContactDaoBuilder();
+  }
+
+  public static class BatchingContactDaoBuilder {
+
+    private Dao<Contact> delegate;
+    private WriteBatcher batcher = WriteBatcher.INSTANCE;
+    private UnitOfWork unitOfWork;
+
+    private BatchingContactDaoBuilder() {}
+
+    public BatchingContactDaoBuilder withDelegate(Dao<Contact> delegate) {
+      this.delegate = Objects.requireNonNull(delegate, "Delegate is required.");
+      return this;
+    }
+
+    public BatchingContactDaoBuilder withBatcher(WriteBatcher batcher) {
+      this.batcher = Objects.requireNonNull(batcher, "Batcher is required.");
+      return this;
+    }
+
+    public BatchingContactDaoBuilder withUnitOfWork(UnitOfWork unitOfWork) {
+      this.unitOfWork = Objects.requireNonNull(unitOfWork, "Unit of work is required.");
+      return this;
+    }
+
+    public BatchingContactDao build() {
+      Objects.requireNonNull(delegate, "Delegate is required.");
+      Objects.requireNonNull(unitOfWork, "Unit of work is required.");
+      return new BatchingContactDao(delegate, batcher, unitOfWork);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.MonthDay;
+
+/**
+ * Date arithmetic of the birthday reminders. A birthday is identified by the key month * 100 + day,
+ * the expression indexed by 'contacts_birthday_idx', and falls on February 28 in the years without
+ * a February 29.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class Birthdays {
+
+  public static final int DEFAULT_DAYS = 7;
+  public static final int MAX_DAYS = 365;
+
+  private Birthdays() {}
+
+  /**
+   * Limits the requested number of days to the interval [1, {@link #MAX_DAYS}], so a window never
+   * holds the same birthday twice.
+   *
+   * @param days requested number of days, or null to use the {@link #DEFAULT_DAYS}.
+   * @return the number of days to be used.
+   * @author Angelo Cavalcanti
+   */
+  public static int capDays(Integer days) {
+    if (days == null) {
+      return DEFAULT_DAYS;
+    }
+    return Math.max(1, Math.min(MAX_DAYS, days));
+  }
+
+  /**
+   * Returns the first birthday on or after the given date of someone born on the birthdate.
+   *
+   * @author Angelo Cavalcanti
+   */
+  public static LocalDate nextBirthday(LocalDate birthdate, LocalDate from) {
+    MonthDay birthday = MonthDay.from(birthdate);
+    LocalDate next = birthday.atYear(from.getYear());
+    return next.isBefore(from) ? birthday.atYear(from.getYear() + 1) : next;
+  }
+
+  /**
+   * Ranges of birthday keys of the window of days starting at the given date, as {first start,
+   * first end, second start, second end}. A window that crosses the new year has two ranges, one up
+   * to December 31 and one from January 1; otherwise both ranges are the same.
+   */
+  static int[] keyRanges(LocalDate from, int days) {
+    LocalDate to = from.plusDays(capDays(days) - 1L);
+    int fromKey = key(from);
+    int toKey = key(to);
+    if (to.getMonth() == Month.FEBRUARY && to.getDayOfMonth() == 28 && !to.isLeapYear()) {
+      toKey = key(MonthDay.of(Month.FEBRUARY, 29));
+    }
+    if (toKey >= fromKey) {
+      return new int[] {fromKey, toKey, fromKey, toKey};
+    }
+    return new int[] {
+      fromKey, key(MonthDay.of(Month.DECEMBER, 31)), key(MonthDay.of(Month.JANUARY, 1)), toKey
+    };
+  }
+
+  private static int key(LocalDate date) {
+    return key(MonthDay.from(date));
+  }
+
+  private static int key(MonthDay monthDay) {
+    return monthDay.getMonthValue() * 100 + monthDay.getDayOfMonth();
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import com.angelocvti.contactsbook.exceptions.DaoException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The address books of the table 'books', one per tenant. Every {@link ContactDao} works on the
+ * contacts of a single book, and the table 'contacts' is partitioned by book, so the queries of a
+ * book are pruned to its partition.
+ *
+ * <p>A book with an owner may only be used by the user of that name, as authenticated by the
+ * container; one without an owner by every client. Books are never deleted, nor their owners
+ * changed, so the ones found are remembered and checked without a database round trip from then on.
+ *
+ * @author Angelo Cavalcanti
+ */
+public enum Books {
+  INSTANCE;
+
+  /** The book holding the contacts created before there were books, used when none is chosen. */
+  public static final long DEFAULT_ID = 1;
+
+  /** The owners of the books found, empty for the books without one. */
+  private final Map<Long, Optional<String>> owners = new ConcurrentHashMap<>();
+
+  /**
+   * Tells whether the book with the given id exists and may be used by the given user.
+   *
+   * @param id The primary key of table 'books'.
+   * @param user The name of the authenticated user, or null if the client isn't authenticated.
+   * @return true if the book exists and has no owner or is owned by the user.
+   * @throws DaoException if the book couldn't be read.
+   * @author Angelo Cavalcanti
+   */
+  public boolean isAvailableTo(long id, String user) {
+    Optional<String> owner = owners.get(id);
+    if (owner == null) {
+      owner = findOwner(id);
+      if (owner == null) {
+        return false;
+      }
+      owners.put(id, owner);
+    }
+    return !owner.isPresent() || owner.get().equals(user);
+  }
+
+  /** Reads the owner of the book, returning null if the book doesn't exist. */
+  private static Optional<String> findOwner(long id) {
+    try (Connection connection = ConnectionFactory.INSTANCE.getConnection();
+        PreparedStatement preparedStatement =
+            connection.prepareStatement("SELECT owner FROM books WHERE id = ?")) {
+      preparedStatement.setLong(1, id);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        return resultSet.next() ? Optional.ofNullable(resultSet.getString(1)) : null;
+      }
+    } catch (SQLException e) {
+      throw new DaoException(e);
+    }
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import com.angelocvti.contactsbook.exceptions.DuplicateEmailException;
+import com.angelocvti.contactsbook.model.Contact;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Read-through {@link com.angelocvti.contactsbook.persistence.Dao Dao} decorator that serves {@link
+ * #findById(Long)} and {@link #findByEmail(String)} from a {@link
+ * com.angelocvti.contactsbook.persistence.ContactCache ContactCache} and invalidates the cached
+ * contacts on every write. Listing operations always go to the delegate, while cache misses are
+ * read through the loader, which may differ from the delegate to keep lagging replicas from filling
+ * the cache. The delegate and the loader must work on the book the decorator is built for.
+ *
+ * <p>While the transaction of the delegate holds uncommitted writes, reads skip the cache and go to
+ * the delegate: the cache may still hold the contacts those writes changed, and what the
+ * transaction reads must not be put in the cache shared with others, as it may be rolled back.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class CachingContactDao implements Dao<Contact> {
+
+  private final long bookId;
+  private final Dao<Contact> delegate;
+  private final Dao<Contact> loader;
+  private final ContactCache cache;
+  private final Consumer<Runnable> afterCompletion;
+  private final BooleanSupplier uncommittedWrites;
+
+  private CachingContactDao(
+      long bookId,
+      Dao<Contact> delegate,
+      Dao<Contact> loader,
+      ContactCache cache,
+      Consumer<Runnable> afterCompletion,
+      BooleanSupplier uncommittedWrites) {
+    this.bookId = bookId;
+    this.delegate = delegate;
+    this.loader = loader;
+    this.cache = cache;
+    this.afterCompletion = afterCompletion;
+    this.uncommittedWrites = uncommittedWrites;
+  }
+
+  @Override
+  public Optional<Contact> findById(final Long id) {
+    if (uncommittedWrites.getAsBoolean()) {
+      return delegate.findById(id);
+    }
+    Contact cached = cache.getById(bookId, id);
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+
+    long readToken = cache.beginRead();
+    Optional<Contact> contact = loader.findById(id);
+    contact.ifPresent(found -> cache.put(found, readToken));
+    return contact;
+  }
+
+  @Override
+  public Optional<Contact> findByEmail(final String email) {
+    if (uncommittedWrites.getAsBoolean()) {
+      return delegate.findByEmail(email);
+    }
+    Contact cached = cache.getByEmail(bookId, email);
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+
+    long readToken = cache.beginRead();
+    Optional<Contact> contact = loader.findByEmail(email);
+    contact.ifPresent(found -> cache.put(found, readToken));
+    return contact;
+  }
+
+  @Override
+  public List<Contact> findAll() {
+    return delegate.findAll();
+  }
+
+  @Override
+  public Page<Contact> findPageAfter(final Long id, final int size) {
+    return delegate.findPageAfter(id, size);
+  }
+
+  @Override
+  public Page<Contact> findPageBefore(final Long id, final int size) {
+    return delegate.findPageBefore(id, size);
+  }
+
+  @Override
+  public Page<Contact> search(final String query, final long offset, final int size) {
+    return delegate.search(query, offset, size);
+  }
+
+  @Override
+  public List<Contact> findUpcomingBirthdays(final LocalDate from, final int days) {
+    return delegate.findUpcomingBirthdays(from, days);
+  }
+
+  @Override
+  public Stream<Contact> streamAll(final int fetchSize) {
+    return delegate.streamAll(fetchSize);
+  }
+
+  @Override
+  public Stream<Contact> streamAfter(final Long id, final int fetchSize) {
+    return delegate.streamAfter(id, fetchSize);
+  }
+
+  @Override
+  public long findRevision() {
+    return delegate.findRevision();
+  }
+
+  /**
+   * Persist the contact data, failing without a database round trip when the email is known to be
+   * in use.
+   *
+   * @throws DuplicateEmailException if the e-Mail is already in use by another contact.
+   */
+  @Override
+  public void insert(final Contact contact) {
+    checkEmailNotCached(contact);
+    try {
+      delegate.insert(contact);
+    } finally {
+      invalidate(() -> cache.invalidateEmail(bookId, contact.getEmail()));
+    }
+  }
+
+  @Override
+  public Long insertAndGetId(final Contact contact) {
+    checkEmailNotCached(contact);
+    try {
+      return delegate.insertAndGetId(contact);
+    } finally {
+      invalidate(() -> cache.invalidateEmail(bookId, contact.getEmail()));
+    }
+  }
+
+  @Override
+  public boolean[] insertAll(final List<Contact> contacts) {
+    try {
+      return delegate.insertAll(contacts);
+    } finally {
+      invalidate(
+          () -> contacts.forEach(contact -> cache.invalidateEmail(bookId, contact.getEmail())));
+    }
+  }
+
+  @Override
+  public void update(final Long id, final Contact contact) {
+    Contact sameEmail = cache.getByEmail(bookId, contact.getEmail());
+    if (sameEmail != null && !sameEmail.getId().equals(id)) {
+      throw duplicateEmail(contact);
+    }
+    try {
+      delegate.update(id, contact);
+    } finally {
+      invalidate(
+          () -> {
+            cache.invalidate(id);
+            cache.invalidateEmail(bookId, contact.getEmail());
+          });
+    }
+  }
+
+  @Override
+  public void delete(final Long id) {
+    try {
+      delegate.delete(id);
+    } finally {
+      invalidate(() -> cache.invalidate(id));
+    }
+  }
+
+  @Override
+  public int deleteAll(final List<Long> ids) {
+    try {
+      return delegate.deleteAll(ids);
+    } finally {
+      invalidate(() -> ids.forEach(cache::invalidate));
+    }
+  }
+
+  /**
+   * Invalidates now, so the writing transaction doesn't read stale entries, and again when the
+   * transaction ends, dropping whatever other threads cached before the change was committed.
+   */
+  private void invalidate(Runnable invalidation) {
+    invalidation.run();
+    afterCompletion.accept(invalidation);
+  }
+
+  private void checkEmailNotCached(Contact contact) {
+    if (cache.getByEmail(bookId, contact.getEmail()) != null) {
+      throw duplicateEmail(contact);
+    }
+  }
+
+  private static DuplicateEmailException duplicateEmail(Contact contact) {
+    return new DuplicateEmailException(
+        "The email: " + contact.getEmail() + " is being used by another contact.");
+  }
+
+  public static CachingContactDaoBuilder builder() {
+    return new CachingContactDaoBuilder();
+  }
+
+  public static class CachingContactDaoBuilder {
+
+    private long bookId = Books.DEFAULT_ID;
+    private Dao<Contact> delegate;
+    private Dao<Contact> loader;
+    private ContactCache cache;
+    private Consumer<Runnable> afterCompletion = invalidation -> {};
+    private BooleanSupplier uncommittedWrites = () -> false;
+
+    private CachingContactDaoBuilder() {}
+
+    /**
+     * Sets the book of the contacts the delegate works on. Defaults to {@link Books#DEFAULT_ID}.
+     */
+    public CachingContactDaoBuilder withBookId(long bookId) {
+      this.bookId = bookId;
+      return this;
+    }
+
+    public CachingContactDaoBuilder withDelegate(Dao<Contact> delegate) {
+      this.delegate = Objects.requireNonNull(delegate, "Delegate is required.");
+      return this;
+    }
+
+    /**
+     * Sets the Dao that cache misses are read from, such as one reading the primary database while
+     * the delegate reads from a replica. Defaults to the delegate.
+     */
+    public CachingContactDaoBuilder withLoader(Dao<Contact> loader) {
+      this.loader = Objects.requireNonNull(loader, "Loader is required.");
+      return this;
+    }
+
+    public CachingContactDaoBuilder withCache(ContactCache cache) {
+      this.cache = Objects.requireNonNull(cache, "Cache is required.");
+      return this;
+    }
+
+    /**
+     * Sets where invalidations are deferred to when the delegate writes inside a transaction, such
+     * as {@link UnitOfWork#afterCompletion(Runnable)}. By default writes are assumed to be
+     * committed when the delegate returns.
+     */
+    public CachingContactDaoBuilder withAfterCompletion(Consumer<Runnable> afterCompletion) {
+      this.afterCompletion =
+          Objects.requireNonNull(afterCompletion, "After completion is required.");
+      return this;
+    }
+
+    /**
+     * Sets whether the transaction of the delegate holds uncommitted writes, such as {@link
+     * UnitOfWork#isWriting()}, in which case reads bypass the cache. By default writes are assumed
+     * to be committed when the delegate returns.
+     */
+    public CachingContactDaoBuilder withUncommittedWrites(BooleanSupplier uncommittedWrites) {
+      this.uncommittedWrites =
+          Objects.requireNonNull(uncommittedWrites, "Uncommitted writes is required.");
+      return this;
+    }
+
+    public CachingContactDao build() {
+      Objects.requireNonNull(delegate, "Delegate is required.");
+      Objects.requireNonNull(cache, "Cache is required.");
+      return new CachingContactDao(
+          bookId,
+          delegate,
+          loader == null ? delegate : loader,
+          cache,
+          afterCompletion,
+          uncommittedWrites);
+    }
+  }
+}
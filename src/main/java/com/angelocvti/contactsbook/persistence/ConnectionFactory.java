@@ -24,21 +24,313 @@
 
 package com.angelocvti.contactsbook.persistence;
 
+import com.angelocvti.contactsbook.config.Environment;
 import com.angelocvti.contactsbook.exceptions.ConnectionFactoryException;
+import com.angelocvti.contactsbook.metrics.Metrics;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-/** @author Angelo Cavalcanti */
+/**
+ * Gives access to the pooled connections with the database configured by the environment variable
+ * JDBC_DATABASE_URL. The pool is created on first use and sized by the variables DB_POOL_MIN_SIZE,
+ * DB_POOL_MAX_SIZE, DB_POOL_ACQUIRE_TIMEOUT_MS, DB_POOL_IDLE_TIMEOUT_MS, DB_POOL_LEAK_DETECTION_MS
+ * and DB_POOL_ALIVE_BYPASS_MS; DB_STATEMENT_CACHE_SIZE sets how many prepared statements each
+ * connection keeps open.
+ *
+ * <p>JDBC_REPLICA_URLS may list, separated by commas, the URLs of read replicas of that database.
+ * Each replica gets a pool of its own, sized like the primary one, and {@link #getReadConnection()}
+ * borrows from the healthy replica with the fewest connections in use. A replica whose connections
+ * are all in use is passed over after DB_REPLICA_ACQUIRE_TIMEOUT_MS, zero by default, for the next
+ * one instead of making the read wait the whole acquire timeout. Every DB_REPLICA_HEALTH_CHECK_MS
+ * the replicas are checked: one that can't be reached, or that replays the primary more than
+ * DB_REPLICA_MAX_LAG_MS behind, is left out until a later check passes. When no replica can hand
+ * out a connection the read goes to the primary.
+ *
+ * @author Angelo Cavalcanti
+ */
 public enum ConnectionFactory {
   INSTANCE;
 
+  private static final Logger LOGGER = Logger.getLogger(ConnectionFactory.class.getName());
+
+  /** Replication lag in milliseconds, zero on a primary or a replica that replayed all it got. */
+  private static final String REPLICATION_LAG_SQL =
+      "SELECT CASE WHEN NOT pg_is_in_recovery()"
+          + " OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+          + " ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)"
+          + " END";
+
+  private final List<String> replicaUrls =
+      splitUrls(Environment.getString("JDBC_REPLICA_URLS", ""));
+  private final long replicaAcquireTimeoutMillis =
+      Environment.getLong("DB_REPLICA_ACQUIRE_TIMEOUT_MS", 0);
+  private final LongAdder replicaReads = new LongAdder();
+  private final LongAdder replicaFallbacks = new LongAdder();
+
+  private volatile ConnectionPool pool;
+  private volatile List<Replica> replicas = Collections.emptyList();
+  private ScheduledExecutorService healthChecker;
+
+  /**
+   * Borrows a connection from the pool. The connection must be closed to be given back.
+   *
+   * @return {@link java.sql.Connection Connection} with the database.
+   * @throws com.angelocvti.contactsbook.exceptions.ConnectionFactoryException if no connection
+   *     could be obtained.
+   * @author Angelo Cavalcanti
+   */
   public Connection getConnection() {
+    return borrow(pool()::getConnection);
+  }
+
+  /**
+   * Borrows a connection for reading, from the least loaded healthy replica that has one free or,
+   * when there is none, from the primary. Replicas lag behind the primary, so the connection may
+   * not see the latest writes.
+   *
+   * @return {@link java.sql.Connection Connection} with a replica or the primary database.
+   * @throws com.angelocvti.contactsbook.exceptions.ConnectionFactoryException if no connection
+   *     could be obtained.
+   * @author Angelo Cavalcanti
+   */
+  public Connection getReadConnection() {
+    ConnectionPool primary = pool();
+    List<Replica> candidates = new ArrayList<>(replicas);
+    candidates.removeIf(replica -> !replica.healthy);
+    candidates.sort(Comparator.comparingDouble(Replica::load));
+    for (Replica replica : candidates) {
+      try {
+        Connection connection =
+            borrow(() -> replica.pool.getConnection(replicaAcquireTimeoutMillis));
+        replicaReads.increment();
+        return connection;
+      } catch (ConnectionFactoryException e) {
+        if (e.getCause() instanceof SQLException) {
+          replica.markDown(e);
+        }
+      }
+    }
+    replicaFallbacks.increment();
+    return borrow(primary::getConnection);
+  }
+
+  /**
+   * Opens a connection with the primary database outside the pool, for a session that outlives the
+   * requests, such as one listening to notifications. Closing it closes the connection.
+   *
+   * @return {@link java.sql.Connection Connection} in auto-commit mode.
+   * @throws com.angelocvti.contactsbook.exceptions.ConnectionFactoryException if the connection
+   *     could not be opened.
+   * @author Angelo Cavalcanti
+   */
+  public Connection openConnection() {
+    loadDriver();
     try {
-      String dbUrl = System.getenv("JDBC_DATABASE_URL");
-      return DriverManager.getConnection(dbUrl);
+      return DriverManager.getConnection(Environment.getString("JDBC_DATABASE_URL", null));
     } catch (SQLException e) {
       throw new ConnectionFactoryException(e);
     }
   }
+
+  /** Whether JDBC_REPLICA_URLS lists any replica to read from. */
+  public boolean hasReplicas() {
+    return !replicaUrls.isEmpty();
+  }
+
+  public ConnectionPool.Statistics getStatistics() {
+    return pool().getStatistics();
+  }
+
+  public int getReplicaCount() {
+    return replicaUrls.size();
+  }
+
+  public int getHealthyReplicaCount() {
+    return (int) replicas.stream().filter(replica -> replica.healthy).count();
+  }
+
+  /** Read connections borrowed from a replica. */
+  public long getReplicaReads() {
+    return replicaReads.sum();
+  }
+
+  /** Read connections borrowed from the primary because no replica could hand one out. */
+  public long getReplicaFallbacks() {
+    return replicaFallbacks.sum();
+  }
+
+  public synchronized void shutdown() {
+    if (healthChecker != null) {
+      healthChecker.shutdownNow();
+      healthChecker = null;
+    }
+    replicas.forEach(replica -> replica.pool.close());
+    replicas = Collections.emptyList();
+    if (pool != null) {
+      pool.close();
+      pool = null;
+    }
+  }
+
+  private ConnectionPool pool() {
+    ConnectionPool current = pool;
+    if (current == null) {
+      synchronized (this) {
+        if (pool == null) {
+          loadDriver();
+          startReplicas();
+          pool = createPool(Environment.getString("JDBC_DATABASE_URL", null));
+        }
+        current = pool;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Registers the driver packaged with the application. A container that set up the {@link
+   * java.sql.DriverManager DriverManager} before deploying the application, as Tomcat does, doesn't
+   * find drivers in WEB-INF/lib by itself.
+   */
+  private static void loadDriver() {
+    try {
+      Class.forName("org.postgresql.Driver");
+    } catch (ClassNotFoundException e) {
+      throw new ConnectionFactoryException(e);
+    }
+  }
+
+  private void startReplicas() {
+    if (replicaUrls.isEmpty()) {
+      return;
+    }
+    List<Replica> created = new ArrayList<>();
+    for (String url : replicaUrls) {
+      created.add(new Replica(url, createPool(url)));
+    }
+    replicas = Collections.unmodifiableList(created);
+
+    healthChecker =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "contacts-book-replica-health");
+              thread.setDaemon(true);
+              return thread;
+            });
+    long maxLagMillis = Environment.getLong("DB_REPLICA_MAX_LAG_MS", 10_000);
+    healthChecker.scheduleWithFixedDelay(
+        () -> replicas.forEach(replica -> replica.check(maxLagMillis)),
+        0,
+        Environment.getLong("DB_REPLICA_HEALTH_CHECK_MS", 5_000),
+        TimeUnit.MILLISECONDS);
+  }
+
+  private static Connection borrow(Supplier<Connection> pool) {
+    long start = System.nanoTime();
+    try {
+      return pool.get();
+    } finally {
+      Metrics.INSTANCE.connectionAcquire().record(System.nanoTime() - start);
+    }
+  }
+
+  private static ConnectionPool createPool(String url) {
+    return ConnectionPool.builder()
+        .withUrl(url)
+        .withMinSize(Environment.getInt("DB_POOL_MIN_SIZE", 2))
+        .withMaxSize(Environment.getInt("DB_POOL_MAX_SIZE", 10))
+        .withAcquireTimeoutMillis(Environment.getLong("DB_POOL_ACQUIRE_TIMEOUT_MS", 5_000))
+        .withIdleTimeoutMillis(Environment.getLong("DB_POOL_IDLE_TIMEOUT_MS", 600_000))
+        .withLeakDetectionThresholdMillis(Environment.getLong("DB_POOL_LEAK_DETECTION_MS", 60_000))
+        .withAliveBypassWindowMillis(Environment.getLong("DB_POOL_ALIVE_BYPASS_MS", 500))
+        .withStatementCacheSize(Environment.getInt("DB_STATEMENT_CACHE_SIZE", 32))
+        .build();
+  }
+
+  private static List<String> splitUrls(String urls) {
+    List<String> split = new ArrayList<>();
+    for (String url : urls.split(",")) {
+      if (!url.trim().isEmpty()) {
+        split.add(url.trim());
+      }
+    }
+    return Collections.unmodifiableList(split);
+  }
+
+  /** A read replica with its pool and the outcome of its last health check. */
+  private static final class Replica {
+
+    private final String host;
+    private final ConnectionPool pool;
+    private volatile boolean healthy = true;
+
+    private Replica(String url, ConnectionPool pool) {
+      // Only the part before the query string, which may hold the credentials, is logged.
+      int query = url.indexOf('?');
+      this.host = query < 0 ? url : url.substring(0, query);
+      this.pool = pool;
+    }
+
+    /** Share of the pool in use or waited for, so replicas of different sizes compare fairly. */
+    private double load() {
+      ConnectionPool.Statistics statistics = pool.getStatistics();
+      return (double) (statistics.getActive() + statistics.getWaiters()) / statistics.getMaxSize();
+    }
+
+    private void check(long maxLagMillis) {
+      try (Connection connection = pool.getConnection();
+          Statement statement = connection.createStatement();
+          ResultSet resultSet = statement.executeQuery(REPLICATION_LAG_SQL)) {
+        resultSet.next();
+        long lagMillis = resultSet.getLong(1);
+        if (lagMillis > maxLagMillis) {
+          markDown(lagMillis + " ms behind the primary");
+        } else {
+          markUp();
+        }
+      } catch (SQLException e) {
+        markDown(e);
+      } catch (ConnectionFactoryException e) {
+        if (e.getCause() instanceof SQLException) {
+          markDown(e);
+        }
+        // Otherwise every connection is in use: the replica is busy, not down.
+      }
+    }
+
+    private void markDown(Exception cause) {
+      if (healthy) {
+        healthy = false;
+        LOGGER.log(Level.WARNING, "Read replica " + host + " is down, reading from others.", cause);
+      }
+    }
+
+    private void markDown(String reason) {
+      if (healthy) {
+        healthy = false;
+        LOGGER.warning("Read replica " + host + " is " + reason + ", reading from others.");
+      }
+    }
+
+    private void markUp() {
+      if (!healthy) {
+        healthy = true;
+        LOGGER.info("Read replica " + host + " is back.");
+      }
+    }
+  }
 }
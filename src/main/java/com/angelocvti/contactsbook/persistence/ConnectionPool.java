@@ -0,0 +1,820 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import com.angelocvti.contactsbook.exceptions.ConnectionFactoryException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded pool of JDBC connections.
+ *
+ * <p>The connections handed out by {@link #getConnection()} are proxies: calling {@link
+ * Connection#close()} gives the physical connection back to the pool instead of closing it. Idle
+ * connections are validated before being borrowed, unless they were given back within the alive
+ * bypass window, which spares the busy connections a round trip per borrow; idle connections above
+ * the minimum size are evicted after the idle timeout and connections held longer than the leak
+ * detection threshold are logged together with the stack trace of the code that acquired them.
+ *
+ * <p>Each pooled connection also keeps a bounded LRU cache of the statements prepared through
+ * {@link Connection#prepareStatement(String)}, keyed by SQL text. Closing one of those statements
+ * clears its parameters and keeps it open for the next borrower that prepares the same SQL, so the
+ * hot queries skip parsing and planning on both sides and the driver reaches its server-side
+ * prepare threshold.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class ConnectionPool implements AutoCloseable {
+
+  private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+  private static final long HOUSEKEEPING_PERIOD_MILLIS = 5_000;
+
+  private final String url;
+  private final int minSize;
+  private final int maxSize;
+  private final long acquireTimeoutMillis;
+  private final long idleTimeoutMillis;
+  private final long leakDetectionThresholdMillis;
+  private final int validationTimeoutSeconds;
+  private final long aliveBypassWindowMillis;
+  private final int statementCacheSize;
+
+  private final Semaphore permits;
+  private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+  private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicInteger waiters = new AtomicInteger();
+
+  private final LongAdder acquireCount = new LongAdder();
+  private final LongAdder acquireNanos = new LongAdder();
+  private final AtomicLong maxAcquireNanos = new AtomicLong();
+  private final LongAdder acquireTimeouts = new LongAdder();
+  private final LongAdder leaksDetected = new LongAdder();
+  private final LongAdder statementCacheHits = new LongAdder();
+  private final LongAdder statementCacheMisses = new LongAdder();
+
+  private final ScheduledExecutorService housekeeper;
+
+  private volatile boolean closed;
+
+  private ConnectionPool(ConnectionPoolBuilder builder) {
+    this.url = builder.url;
+    this.minSize = builder.minSize;
+    this.maxSize = builder.maxSize;
+    this.acquireTimeoutMillis = builder.acquireTimeoutMillis;
+    this.idleTimeoutMillis = builder.idleTimeoutMillis;
+    this.leakDetectionThresholdMillis = builder.leakDetectionThresholdMillis;
+    this.validationTimeoutSeconds = builder.validationTimeoutSeconds;
+    this.aliveBypassWindowMillis = builder.aliveBypassWindowMillis;
+    this.statementCacheSize = builder.statementCacheSize;
+    this.permits = new Semaphore(maxSize, true);
+    this.housekeeper =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "contacts-book-pool-housekeeper");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.housekeeper.scheduleWithFixedDelay(
+        this::housekeep, 0, HOUSEKEEPING_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Borrows a connection from the pool, waiting up to the acquire timeout when all the connections
+   * are in use.
+   *
+   * @return {@link java.sql.Connection Connection} that must be closed to be given back to the
+   *     pool.
+   * @throws ConnectionFactoryException if the pool is closed, the acquire timeout expires or a new
+   *     connection can't be opened.
+   * @author Angelo Cavalcanti
+   */
+  public Connection getConnection() {
+    return getConnection(acquireTimeoutMillis);
+  }
+
+  /**
+   * Borrows a connection from the pool, waiting up to the given timeout when all the connections
+   * are in use. A timeout of zero only takes a connection that is free right away, without
+   * overtaking the borrowers already waiting.
+   *
+   * @param timeoutMillis How long to wait for a connection, in milliseconds.
+   * @return {@link java.sql.Connection Connection} that must be closed to be given back to the
+   *     pool.
+   * @throws ConnectionFactoryException if the pool is closed, the timeout expires or a new
+   *     connection can't be opened.
+   * @author Angelo Cavalcanti
+   */
+  public Connection getConnection(long timeoutMillis) {
+    if (closed) {
+      throw new ConnectionFactoryException("The connection pool is closed.");
+    }
+
+    long start = System.nanoTime();
+    boolean acquired;
+    waiters.incrementAndGet();
+    try {
+      acquired = permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ConnectionFactoryException(e);
+    } finally {
+      waiters.decrementAndGet();
+    }
+
+    if (!acquired) {
+      acquireTimeouts.increment();
+      throw new ConnectionFactoryException(
+          "Timed out after " + timeoutMillis + " ms waiting for a database connection.");
+    }
+
+    try {
+      PooledConnection pooled = takeIdleOrCreate();
+      pooled.borrowedAt = System.currentTimeMillis();
+      pooled.acquiredBy =
+          leakDetectionThresholdMillis > 0 ? new Throwable("Connection acquired here") : null;
+      pooled.leakReported = false;
+      borrowed.add(pooled);
+      recordAcquire(System.nanoTime() - start);
+      return (Connection)
+          Proxy.newProxyInstance(
+              ConnectionPool.class.getClassLoader(),
+              new Class<?>[] {Connection.class},
+              new ConnectionHandle(pooled));
+    } catch (RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  public Statistics getStatistics() {
+    long count = acquireCount.sum();
+    return new Statistics(
+        borrowed.size(),
+        idle.size(),
+        size.get(),
+        maxSize,
+        waiters.get(),
+        count,
+        acquireTimeouts.sum(),
+        leaksDetected.sum(),
+        count == 0 ? 0 : acquireNanos.sum() / count,
+        maxAcquireNanos.get(),
+        statementCacheHits.sum(),
+        statementCacheMisses.sum());
+  }
+
+  /** Closes the idle connections; borrowed connections are closed as soon as they are returned. */
+  @Override
+  public void close() {
+    closed = true;
+    housekeeper.shutdownNow();
+    PooledConnection pooled;
+    while ((pooled = idle.pollFirst()) != null) {
+      destroy(pooled);
+    }
+  }
+
+  /**
+   * Takes an idle connection, or opens one if the pool is below its max size. A borrower holds a
+   * permit, so at the max size a connection is idle or being opened by the housekeeper, which
+   * reserves its slots in the size too, and it is waited for.
+   */
+  private PooledConnection takeIdleOrCreate() {
+    while (true) {
+      PooledConnection pooled;
+      while ((pooled = idle.pollFirst()) != null) {
+        if (System.currentTimeMillis() - pooled.lastUsedAt <= aliveBypassWindowMillis
+            || pooled.isValid()) {
+          return pooled;
+        }
+        destroy(pooled);
+      }
+      int current = size.get();
+      if (current < maxSize) {
+        if (size.compareAndSet(current, current + 1)) {
+          return open();
+        }
+        continue;
+      }
+      try {
+        pooled = idle.pollFirst(10, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ConnectionFactoryException(e);
+      }
+      if (pooled != null) {
+        idle.offerFirst(pooled);
+      }
+    }
+  }
+
+  private PooledConnection open() {
+    try {
+      return new PooledConnection(DriverManager.getConnection(url));
+    } catch (SQLException e) {
+      size.decrementAndGet();
+      throw new ConnectionFactoryException(e);
+    } catch (RuntimeException e) {
+      size.decrementAndGet();
+      throw e;
+    }
+  }
+
+  private void release(PooledConnection pooled) {
+    borrowed.remove(pooled);
+    try {
+      if (closed || size.get() > maxSize || !pooled.reset()) {
+        destroy(pooled);
+      } else {
+        pooled.lastUsedAt = System.currentTimeMillis();
+        idle.offerFirst(pooled);
+      }
+    } finally {
+      permits.release();
+    }
+  }
+
+  private void destroy(PooledConnection pooled) {
+    size.decrementAndGet();
+    try {
+      pooled.connection.close();
+    } catch (SQLException e) {
+      LOGGER.log(Level.FINE, "Error closing a pooled connection.", e);
+    }
+  }
+
+  private void recordAcquire(long nanos) {
+    acquireCount.increment();
+    acquireNanos.add(nanos);
+    maxAcquireNanos.accumulateAndGet(nanos, Math::max);
+  }
+
+  private void housekeep() {
+    try {
+      evictIdle();
+      detectLeaks();
+      fillToMinSize();
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Connection pool housekeeping failed.", e);
+    }
+  }
+
+  private void evictIdle() {
+    long now = System.currentTimeMillis();
+    Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+    while (oldestFirst.hasNext() && size.get() > minSize) {
+      PooledConnection pooled = oldestFirst.next();
+      if (now - pooled.lastUsedAt > idleTimeoutMillis && idle.remove(pooled)) {
+        destroy(pooled);
+      }
+    }
+  }
+
+  private void detectLeaks() {
+    if (leakDetectionThresholdMillis <= 0) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    for (PooledConnection pooled : borrowed) {
+      Throwable acquiredBy = pooled.acquiredBy;
+      if (!pooled.leakReported
+          && acquiredBy != null
+          && now - pooled.borrowedAt > leakDetectionThresholdMillis) {
+        pooled.leakReported = true;
+        leaksDetected.increment();
+        LOGGER.log(
+            Level.WARNING,
+            "Connection held for more than " + leakDetectionThresholdMillis + " ms, possible leak.",
+            acquiredBy);
+      }
+    }
+  }
+
+  private void fillToMinSize() {
+    while (!closed) {
+      int current = size.get();
+      if (current >= minSize) {
+        return;
+      }
+      if (size.compareAndSet(current, current + 1)) {
+        PooledConnection pooled = open();
+        pooled.lastUsedAt = System.currentTimeMillis();
+        idle.offerLast(pooled);
+      }
+    }
+  }
+
+  public static ConnectionPoolBuilder builder() {
+    return new ConnectionPoolBuilder();
+  }
+
+  private final class PooledConnection {
+
+    private final Connection connection;
+    private volatile long lastUsedAt;
+    private volatile long borrowedAt;
+    private volatile Throwable acquiredBy;
+    private volatile boolean leakReported;
+
+    /** Only used by the borrower; the idle deque hands the connection over between threads. */
+    private final Map<String, CachedStatement> statements =
+        new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+            if (size() <= statementCacheSize) {
+              return false;
+            }
+            CachedStatement evicted = eldest.getValue();
+            evicted.evicted = true;
+            if (!evicted.inUse) {
+              evicted.closeQuietly();
+            }
+            return true;
+          }
+        };
+
+    private PooledConnection(Connection connection) {
+      this.connection = connection;
+    }
+
+    /**
+     * Takes the cached statement for the SQL, preparing and caching it on a miss. Returns null when
+     * the cached statement is already in use, e.g. by an open cursor.
+     */
+    private CachedStatement checkOut(String sql) throws SQLException {
+      CachedStatement cached = statements.get(sql);
+      if (cached == null) {
+        statementCacheMisses.increment();
+        cached = new CachedStatement(sql, connection.prepareStatement(sql));
+        statements.put(sql, cached);
+      } else if (cached.inUse) {
+        statementCacheMisses.increment();
+        return null;
+      } else {
+        statementCacheHits.increment();
+      }
+      cached.inUse = true;
+      return cached;
+    }
+
+    private void checkIn(CachedStatement cached) {
+      cached.inUse = false;
+      if (cached.evicted || cached.broken || !cached.reset()) {
+        statements.remove(cached.sql, cached);
+        cached.closeQuietly();
+      }
+    }
+
+    private boolean isValid() {
+      try {
+        return connection.isValid(validationTimeoutSeconds);
+      } catch (SQLException e) {
+        return false;
+      }
+    }
+
+    private boolean reset() {
+      try {
+        if (!connection.getAutoCommit()) {
+          connection.rollback();
+          connection.setAutoCommit(true);
+        }
+        if (connection.isReadOnly()) {
+          connection.setReadOnly(false);
+        }
+        connection.clearWarnings();
+        return true;
+      } catch (SQLException e) {
+        return false;
+      }
+    }
+  }
+
+  /** Handle given to the callers, valid until it is closed. */
+  private final class ConnectionHandle implements InvocationHandler {
+
+    private final PooledConnection pooled;
+    private final List<StatementHandle> openStatements = new ArrayList<>();
+    private volatile boolean closed;
+
+    private ConnectionHandle(PooledConnection pooled) {
+      this.pooled = pooled;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "close":
+          if (!closed) {
+            closed = true;
+            for (StatementHandle statement : new ArrayList<>(openStatements)) {
+              statement.close();
+            }
+            release(pooled);
+          }
+          return null;
+        case "prepareStatement":
+          if (!closed && statementCacheSize > 0 && args.length == 1) {
+            return prepareCached((Connection) proxy, (String) args[0]);
+          }
+          return invokeOnConnection(method, args);
+        case "isClosed":
+          return closed || pooled.connection.isClosed();
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "Pooled " + pooled.connection;
+        default:
+          return invokeOnConnection(method, args);
+      }
+    }
+
+    private Object invokeOnConnection(Method method, Object[] args) throws Throwable {
+      if (closed) {
+        throw new SQLException("The connection was already given back to the pool.");
+      }
+      try {
+        return method.invoke(pooled.connection, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+
+    private PreparedStatement prepareCached(Connection proxy, String sql) throws SQLException {
+      CachedStatement cached = pooled.checkOut(sql);
+      if (cached == null) {
+        return pooled.connection.prepareStatement(sql);
+      }
+      StatementHandle handle = new StatementHandle(this, proxy, cached);
+      openStatements.add(handle);
+      return (PreparedStatement)
+          Proxy.newProxyInstance(
+              ConnectionPool.class.getClassLoader(),
+              new Class<?>[] {PreparedStatement.class},
+              handle);
+    }
+  }
+
+  /** A prepared statement kept open in the cache of its pooled connection. */
+  private static final class CachedStatement {
+
+    private final String sql;
+    private final PreparedStatement statement;
+    private boolean inUse;
+    private boolean evicted;
+    private boolean broken;
+
+    private CachedStatement(String sql, PreparedStatement statement) {
+      this.sql = sql;
+      this.statement = statement;
+    }
+
+    /** Puts the statement back in the state of a freshly prepared one. */
+    private boolean reset() {
+      try {
+        ResultSet resultSet = statement.getResultSet();
+        if (resultSet != null) {
+          resultSet.close();
+        }
+        statement.clearParameters();
+        statement.clearBatch();
+        statement.clearWarnings();
+        if (statement.getFetchSize() != 0) {
+          statement.setFetchSize(0);
+        }
+        if (statement.getMaxRows() != 0) {
+          statement.setMaxRows(0);
+        }
+        if (statement.getQueryTimeout() != 0) {
+          statement.setQueryTimeout(0);
+        }
+        return true;
+      } catch (SQLException e) {
+        return false;
+      }
+    }
+
+    private void closeQuietly() {
+      try {
+        statement.close();
+      } catch (SQLException e) {
+        LOGGER.log(Level.FINE, "Error closing a cached statement.", e);
+      }
+    }
+  }
+
+  /**
+   * Handle given to the callers for a cached statement: closing it gives the statement back to the
+   * cache. A statement that fails is closed instead of being reused.
+   */
+  private static final class StatementHandle implements InvocationHandler {
+
+    private final ConnectionHandle connectionHandle;
+    private final Connection connectionProxy;
+    private final CachedStatement cached;
+    private boolean closed;
+
+    private StatementHandle(
+        ConnectionHandle connectionHandle, Connection connectionProxy, CachedStatement cached) {
+      this.connectionHandle = connectionHandle;
+      this.connectionProxy = connectionProxy;
+      this.cached = cached;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "close":
+          close();
+          return null;
+        case "isClosed":
+          return closed || cached.statement.isClosed();
+        case "getConnection":
+          return connectionProxy;
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "Cached " + cached.statement;
+        default:
+          if (closed) {
+            throw new SQLException("The statement is closed.");
+          }
+          try {
+            return method.invoke(cached.statement, args);
+          } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException) {
+              cached.broken = true;
+            }
+            throw e.getCause();
+          }
+      }
+    }
+
+    private void close() {
+      if (!closed) {
+        closed = true;
+        connectionHandle.openStatements.remove(this);
+        connectionHandle.pooled.checkIn(cached);
+      }
+    }
+  }
+
+  /** Point-in-time view of the pool usage. */
+  public static final class Statistics {
+
+    private final int active;
+    private final int idle;
+    private final int total;
+    private final int maxSize;
+    private final int waiters;
+    private final long acquireCount;
+    private final long acquireTimeouts;
+    private final long leaksDetected;
+    private final long averageAcquireNanos;
+    private final long maxAcquireNanos;
+    private final long statementCacheHits;
+    private final long statementCacheMisses;
+
+    private Statistics(
+        int active,
+        int idle,
+        int total,
+        int maxSize,
+        int waiters,
+        long acquireCount,
+        long acquireTimeouts,
+        long leaksDetected,
+        long averageAcquireNanos,
+        long maxAcquireNanos,
+        long statementCacheHits,
+        long statementCacheMisses) {
+      this.active = active;
+      this.idle = idle;
+      this.total = total;
+      this.maxSize = maxSize;
+      this.waiters = waiters;
+      this.acquireCount = acquireCount;
+      this.acquireTimeouts = acquireTimeouts;
+      this.leaksDetected = leaksDetected;
+      this.averageAcquireNanos = averageAcquireNanos;
+      this.maxAcquireNanos = maxAcquireNanos;
+      this.statementCacheHits = statementCacheHits;
+      this.statementCacheMisses = statementCacheMisses;
+    }
+
+    public int getActive() {
+      return active;
+    }
+
+    public int getIdle() {
+      return idle;
+    }
+
+    public int getTotal() {
+      return total;
+    }
+
+    public int getMaxSize() {
+      return maxSize;
+    }
+
+    public int getWaiters() {
+      return waiters;
+    }
+
+    public long getAcquireCount() {
+      return acquireCount;
+    }
+
+    public long getAcquireTimeouts() {
+      return acquireTimeouts;
+    }
+
+    public long getLeaksDetected() {
+      return leaksDetected;
+    }
+
+    public long getAverageAcquireNanos() {
+      return averageAcquireNanos;
+    }
+
+    public long getMaxAcquireNanos() {
+      return maxAcquireNanos;
+    }
+
+    public long getStatementCacheHits() {
+      return statementCacheHits;
+    }
+
+    public long getStatementCacheMisses() {
+      return statementCacheMisses;
+    }
+
+    @Override
+    public String toString() {
+      return "active="
+          + active
+          + ", idle="
+          + idle
+          + ", total="
+          + total
+          + "/"
+          + maxSize
+          + ", waiters="
+          + waiters
+          + ", acquired="
+          + acquireCount
+          + ", timeouts="
+          + acquireTimeouts
+          + ", leaks="
+          + leaksDetected
+          + ", avgAcquire="
+          + TimeUnit.NANOSECONDS.toMicros(averageAcquireNanos)
+          + "us, maxAcquire="
+          + TimeUnit.NANOSECONDS.toMicros(maxAcquireNanos)
+          + "us, statementCacheHits="
+          + statementCacheHits
+          + ", statementCacheMisses="
+          + statementCacheMisses;
+    }
+  }
+
+  public static class ConnectionPoolBuilder {
+
+    private String url;
+    private int minSize = 2;
+    private int maxSize = 10;
+    private long acquireTimeoutMillis = 5_000;
+    private long idleTimeoutMillis = 600_000;
+    private long leakDetectionThresholdMillis = 60_000;
+    private int validationTimeoutSeconds = 5;
+    private long aliveBypassWindowMillis = 500;
+    private int statementCacheSize = 32;
+
+    private ConnectionPoolBuilder() {}
+
+    public ConnectionPoolBuilder withUrl(String url) {
+      this.url = Objects.requireNonNull(url, "URL is required.");
+      return this;
+    }
+
+    public ConnectionPoolBuilder withMinSize(int minSize) {
+      this.minSize = minSize;
+      return this;
+    }
+
+    public ConnectionPoolBuilder withMaxSize(int maxSize) {
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    public ConnectionPoolBuilder withAcquireTimeoutMillis(long acquireTimeoutMillis) {
+      this.acquireTimeoutMillis = acquireTimeoutMillis;
+      return this;
+    }
+
+    public ConnectionPoolBuilder withIdleTimeoutMillis(long idleTimeoutMillis) {
+      this.idleTimeoutMillis = idleTimeoutMillis;
+      return this;
+    }
+
+    /** A threshold of zero disables the leak detection. */
+    public ConnectionPoolBuilder withLeakDetectionThresholdMillis(
+        long leakDetectionThresholdMillis) {
+      this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+      return this;
+    }
+
+    public ConnectionPoolBuilder withValidationTimeoutSeconds(int validationTimeoutSeconds) {
+      this.validationTimeoutSeconds = validationTimeoutSeconds;
+      return this;
+    }
+
+    /**
+     * Connections given back less than this long ago are borrowed again without being validated;
+     * zero validates every borrow.
+     */
+    public ConnectionPoolBuilder withAliveBypassWindowMillis(long aliveBypassWindowMillis) {
+      this.aliveBypassWindowMillis = aliveBypassWindowMillis;
+      return this;
+    }
+
+    /** Statements cached per connection; zero disables the statement cache. */
+    public ConnectionPoolBuilder withStatementCacheSize(int statementCacheSize) {
+      this.statementCacheSize = statementCacheSize;
+      return this;
+    }
+
+    public ConnectionPool build() {
+      Objects.requireNonNull(url, "URL is required.");
+      if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+        throw new IllegalArgumentException(
+            "Pool sizes must satisfy 0 <= min size <= max size and max size >= 1.");
+      }
+      if (acquireTimeoutMillis < 0
+          || idleTimeoutMillis < 0
+          || validationTimeoutSeconds < 0
+          || aliveBypassWindowMillis < 0) {
+        throw new IllegalArgumentException("Pool timeouts can't be negative.");
+      }
+      if (statementCacheSize < 0) {
+        throw new IllegalArgumentException("The statement cache size can't be negative.");
+      }
+      return new ConnectionPool(this);
+    }
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import com.angelocvti.contactsbook.model.Contact;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of contacts indexed by id and by book and email (ignoring case), shared by all the
+ * address books: the ids are unique across books, and a contact is only returned to a reader of its
+ * own book. Entries are evicted in least recently used order when the cache is full and expire
+ * after the time to live. Both indexes are updated under the same lock, so a contact is never
+ * reachable by email after it was invalidated by id.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class ContactCache {
+
+  private final int maxSize;
+  private final long timeToLiveNanos;
+
+  private final LinkedHashMap<Long, Entry> byId;
+  private final Map<String, Long> idByEmail = new HashMap<>();
+
+  private long invalidations;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  private ContactCache(int maxSize, long timeToLiveNanos) {
+    this.maxSize = maxSize;
+    this.timeToLiveNanos = timeToLiveNanos;
+    this.byId = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  public synchronized Contact getById(long bookId, Long id) {
+    return lookup(bookId, id);
+  }
+
+  public synchronized Contact getByEmail(long bookId, String email) {
+    return lookup(bookId, idByEmail.get(emailKey(bookId, email)));
+  }
+
+  /**
+   * Marks the start of a database read whose result may be cached afterwards with {@link
+   * #put(Contact, long)}.
+   *
+   * @return token identifying the state of the cache before the read.
+   * @author Angelo Cavalcanti
+   */
+  public synchronized long beginRead() {
+    return invalidations;
+  }
+
+  /**
+   * Caches the contact read from the database, unless an invalidation happened since the read
+   * started, in which case the contact may already be stale.
+   *
+   * @param contact {@link com.angelocvti.contactsbook.model.Contact Contact} read from the
+   *     database, with its id and book id.
+   * @param readToken value returned by {@link #beginRead()} before the read.
+   * @author Angelo Cavalcanti
+   */
+  public synchronized void put(Contact contact, long readToken) {
+    Objects.requireNonNull(contact.getId(), "Id is required.");
+    Objects.requireNonNull(contact.getBookId(), "Book id is required.");
+    if (readToken != invalidations) {
+      return;
+    }
+
+    remove(contact.getId());
+    byId.put(contact.getId(), new Entry(contact, System.nanoTime() + timeToLiveNanos));
+    idByEmail.put(emailKey(contact.getBookId(), contact.getEmail()), contact.getId());
+
+    Iterator<Map.Entry<Long, Entry>> leastRecentlyUsed = byId.entrySet().iterator();
+    while (byId.size() > maxSize) {
+      Entry evicted = leastRecentlyUsed.next().getValue();
+      leastRecentlyUsed.remove();
+      idByEmail.remove(emailKey(evicted.contact.getBookId(), evicted.contact.getEmail()));
+      evictions++;
+    }
+  }
+
+  /** Removes the contact with the given id, together with its email index. */
+  public synchronized void invalidate(Long id) {
+    invalidations++;
+    remove(id);
+  }
+
+  /** Removes the contact of the book that uses the given email, together with its id index. */
+  public synchronized void invalidateEmail(long bookId, String email) {
+    invalidations++;
+    Long id = idByEmail.remove(emailKey(bookId, email));
+    if (id != null) {
+      remove(id);
+    }
+  }
+
+  public synchronized Statistics getStatistics() {
+    return new Statistics(byId.size(), maxSize, hits, misses, evictions);
+  }
+
+  private Contact lookup(long bookId, Long id) {
+    Entry entry = id == null ? null : byId.get(id);
+    if (entry == null || entry.contact.getBookId() != bookId) {
+      misses++;
+      return null;
+    }
+    if (System.nanoTime() - entry.expiresAt > 0) {
+      remove(id);
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.contact;
+  }
+
+  private void remove(Long id) {
+    Entry entry = byId.remove(id);
+    if (entry != null) {
+      idByEmail.remove(emailKey(entry.contact.getBookId(), entry.contact.getEmail()), id);
+    }
+  }
+
+  private static String emailKey(long bookId, String email) {
+    return email == null ? null : bookId + " " + email.toLowerCase(Locale.ROOT);
+  }
+
+  public static ContactCacheBuilder builder() {
+    return new ContactCacheBuilder();
+  }
+
+  private static final class Entry {
+
+    private final Contact contact;
+    private final long expiresAt;
+
+    private Entry(Contact contact, long expiresAt) {
+      this.contact = contact;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /** Point-in-time view of the cache usage. */
+  public static final class Statistics {
+
+    private final int size;
+    private final int maxSize;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    private Statistics(int size, int maxSize, long hits, long misses, long evictions) {
+      this.size = size;
+      this.maxSize = maxSize;
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+    }
+
+    public int getSize() {
+      return size;
+    }
+
+    public int getMaxSize() {
+      return maxSize;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public long getMisses() {
+      return misses;
+    }
+
+    public long getEvictions() {
+      return evictions;
+    }
+
+    public double getHitRate() {
+      long requests = hits + misses;
+      return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+      return "size="
+          + size
+          + "/"
+          + maxSize
+          + ", hits="
+          + hits
+          + ", misses="
+          + misses
+          + ", evictions="
+          + evictions;
+    }
+  }
+
+  public static class ContactCacheBuilder {
+
+    private int maxSize = 10_000;
+    private long timeToLiveSeconds = 60;
+
+    private ContactCacheBuilder() {}
+
+    public ContactCacheBuilder withMaxSize(int maxSize) {
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    public ContactCacheBuilder withTimeToLiveSeconds(long timeToLiveSeconds) {
+      this.timeToLiveSeconds = timeToLiveSeconds;
+      return this;
+    }
+
+    public ContactCache build() {
+      if (maxSize < 1 || timeToLiveSeconds < 1) {
+        throw new IllegalArgumentException("Cache size and time to live must be positive.");
+      }
+      return new ContactCache(maxSize, TimeUnit.SECONDS.toNanos(timeToLiveSeconds));
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import com.angelocvti.contactsbook.model.Contact;
+
+/**
+ * A change to the contacts of an address book, published by {@link ContactChanges}.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class ContactChange {
+
+  /** What happened to the contact. */
+  public enum Type {
+    CREATED,
+    UPDATED,
+    DELETED,
+    /**
+     * Too many contacts changed at once to tell them apart: everything shown must be read again.
+     */
+    RELOAD
+  }
+
+  private final Type type;
+  private final Long bookId;
+  private final Long contactId;
+  private final Contact contact;
+
+  private ContactChange(Type type, Long bookId, Long contactId, Contact contact) {
+    this.type = type;
+    this.bookId = bookId;
+    this.contactId = contactId;
+    this.contact = contact;
+  }
+
+  /** A created or updated contact, as it was read right after the change was committed. */
+  static ContactChange of(Type type, Contact contact) {
+    return new ContactChange(type, contact.getBookId(), contact.getId(), contact);
+  }
+
+  static ContactChange deleted(long bookId, long contactId) {
+    return new ContactChange(Type.DELETED, bookId, contactId, null);
+  }
+
+  /** A reload of the book, or of every book when the book id is null. */
+  static ContactChange reload(Long bookId) {
+    return new ContactChange(Type.RELOAD, bookId, null, null);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  /** The book whose contacts changed, null for a reload of every book. */
+  public Long getBookId() {
+    return bookId;
+  }
+
+  /** The id of the contact, null for a reload. */
+  public Long getContactId() {
+    return contactId;
+  }
+
+  /** The contact created or updated, null for the other types. */
+  public Contact getContact() {
+    return contact;
+  }
+}
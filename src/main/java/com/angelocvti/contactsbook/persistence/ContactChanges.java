@@ -0,0 +1,228 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import com.angelocvti.contactsbook.exceptions.ConnectionFactoryException;
+import com.angelocvti.contactsbook.exceptions.DaoException;
+import com.angelocvti.contactsbook.model.Contact;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+/**
+ * Publishes the changes to the contacts to the listeners of their address book, as the database
+ * announces them on the channel 'contact_changes' (see migrations/08-contact-changes.sql). One
+ * connection outside the pool LISTENs for the whole application, from the first subscription until
+ * the shutdown, so the writes of every instance of the application are heard. A created or updated
+ * contact is read once on that connection, and only when its book has listeners, so the change
+ * carries the contact as committed. It is read past the cache, which the writer may not have
+ * invalidated yet.
+ *
+ * <p>The listeners are called on the listening thread, one change after the other, and must not
+ * block. When the connection is lost it is opened again, waiting up to 30 seconds between attempts,
+ * and every listener is sent a reload, since changes may have been missed meanwhile.
+ *
+ * @author Angelo Cavalcanti
+ */
+public enum ContactChanges {
+  INSTANCE;
+
+  private static final Logger LOGGER = Logger.getLogger(ContactChanges.class.getName());
+
+  private static final String CHANNEL = "contact_changes";
+  private static final int POLL_MILLIS = 10_000;
+  private static final long MAX_RETRY_MILLIS = 30_000;
+
+  private final Map<Long, Set<Listener>> listeners = new ConcurrentHashMap<>();
+  private Thread thread;
+  private volatile boolean running;
+  private volatile Connection connection;
+
+  /** Receives the changes of the contacts of a book. */
+  @FunctionalInterface
+  public interface Listener {
+
+    /** Called on the listening thread, must return without blocking. */
+    void onChange(ContactChange change);
+  }
+
+  /**
+   * Starts sending the changes of the book to the listener, listening to the database if nobody was
+   * yet.
+   *
+   * @param bookId The book whose changes are sent.
+   * @param listener The listener, called with every change of the book and the reloads of all.
+   * @return {@link java.lang.Runnable Runnable} that stops sending the changes to the listener.
+   * @author Angelo Cavalcanti
+   */
+  public synchronized Runnable subscribe(long bookId, Listener listener) {
+    listeners.compute(
+        bookId,
+        (id, subscribed) -> {
+          Set<Listener> updated = subscribed == null ? ConcurrentHashMap.newKeySet() : subscribed;
+          updated.add(listener);
+          return updated;
+        });
+    if (thread == null) {
+      running = true;
+      thread = new Thread(this::listen, "contacts-book-changes");
+      thread.setDaemon(true);
+      thread.start();
+    }
+    return () ->
+        listeners.computeIfPresent(
+            bookId,
+            (id, subscribed) -> {
+              subscribed.remove(listener);
+              return subscribed.isEmpty() ? null : subscribed;
+            });
+  }
+
+  public synchronized void shutdown() {
+    running = false;
+    if (thread != null) {
+      // Wakes the thread up from its wait for notifications.
+      closeQuietly(connection);
+      thread.interrupt();
+      thread = null;
+    }
+    listeners.clear();
+  }
+
+  private void listen() {
+    long retryMillis = 1_000;
+    boolean reconnecting = false;
+    while (running) {
+      try (Connection listening = ConnectionFactory.INSTANCE.openConnection()) {
+        connection = listening;
+        try (Statement statement = listening.createStatement()) {
+          statement.execute("LISTEN " + CHANNEL);
+        }
+        if (reconnecting) {
+          LOGGER.info("Listening to the contact changes again.");
+          publish(ContactChange.reload(null));
+        }
+        retryMillis = 1_000;
+        PGConnection pgConnection = listening.unwrap(PGConnection.class);
+        while (running) {
+          PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+          if (notifications != null) {
+            for (PGNotification notification : notifications) {
+              publish(listening, notification.getParameter());
+            }
+          }
+        }
+      } catch (SQLException | ConnectionFactoryException | DaoException e) {
+        if (!running) {
+          return;
+        }
+        LOGGER.log(
+            Level.WARNING,
+            "Listening to the contact changes failed, retrying in " + retryMillis + " ms.",
+            e);
+        reconnecting = true;
+        try {
+          Thread.sleep(retryMillis);
+        } catch (InterruptedException interrupted) {
+          return;
+        }
+        retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+      }
+    }
+  }
+
+  /** Publishes the change announced by a payload such as 'updated 1 42' or 'reload 1'. */
+  private void publish(Connection listening, String payload) {
+    String[] parts = payload.split(" ");
+    ContactChange.Type type;
+    try {
+      type = ContactChange.Type.valueOf(parts[0].toUpperCase(Locale.ROOT));
+      if (type == ContactChange.Type.RELOAD) {
+        publish(ContactChange.reload(parts.length > 1 ? Long.valueOf(parts[1]) : null));
+        return;
+      }
+      long bookId = Long.parseLong(parts[1]);
+      long contactId = Long.parseLong(parts[2]);
+      if (!listeners.containsKey(bookId)) {
+        return;
+      }
+      if (type == ContactChange.Type.DELETED) {
+        publish(ContactChange.deleted(bookId, contactId));
+        return;
+      }
+      Optional<Contact> contact =
+          ContactDao.builder()
+              .withBookId(bookId)
+              .withConnection(listening)
+              .build()
+              .findById(contactId);
+      // A contact deleted since it was announced is sent as deleted, its last change.
+      publish(
+          contact.isPresent()
+              ? ContactChange.of(type, contact.get())
+              : ContactChange.deleted(bookId, contactId));
+    } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+      LOGGER.warning("Ignoring the unexpected contact change '" + payload + "'.");
+    }
+  }
+
+  private void publish(ContactChange change) {
+    Collection<Set<Listener>> recipients =
+        change.getBookId() == null
+            ? listeners.values()
+            : Collections.singleton(
+                listeners.getOrDefault(change.getBookId(), Collections.emptySet()));
+    for (Set<Listener> bookListeners : recipients) {
+      for (Listener listener : bookListeners) {
+        try {
+          listener.onChange(change);
+        } catch (RuntimeException e) {
+          LOGGER.log(Level.WARNING, "A contact change listener failed.", e);
+        }
+      }
+    }
+  }
+
+  private static void closeQuietly(Connection connection) {
+    if (connection != null) {
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        // Closing anyway.
+      }
+    }
+  }
+}
@@ -24,33 +24,68 @@
 
 package com.angelocvti.contactsbook.persistence;
 
+import com.angelocvti.contactsbook.exceptions.ContactConflictException;
 import com.angelocvti.contactsbook.exceptions.ContactNotFoundException;
 import com.angelocvti.contactsbook.exceptions.DaoException;
 import com.angelocvti.contactsbook.exceptions.DuplicateEmailException;
 import com.angelocvti.contactsbook.model.Contact;
 import java.sql.Connection;
-import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * Implementation of CRUD operations defined in {@link com.angelocvti.contactsbook.persistence.Dao}.
+ * Implementation of CRUD operations defined in {@link com.angelocvti.contactsbook.persistence.Dao}
+ * on the contacts of one address book, see {@link Books}. Every statement filters on the book, so
+ * it only touches the partition of the table 'contacts' holding that book. The read-only operations
+ * may run on a connection of their own, such as one with a read replica, see {@link
+ * ContactDaoBuilder#withReadConnectionSupplier(Supplier)}.
  *
  * @author Angelo Cavalcanti
  */
 public final class ContactDao implements Dao<Contact> {
 
-  private final Connection connection;
+  private static final String UNIQUE_VIOLATION = "23505";
 
-  private ContactDao(Connection connection) {
-    this.connection = connection;
+  /** Shortest search text that can be matched with the trigram index. */
+  public static final int SEARCH_MIN_LENGTH = 3;
+
+  /** Deepest offset reachable when paging through search results. */
+  public static final long SEARCH_MAX_OFFSET = 1_000;
+
+  /** Indexed expression searched by {@link #search(String, long, int)}. */
+  private static final String SEARCH_DOCUMENT = "(name || ' ' || email || ' ' || address)";
+
+  /** Indexed expression of the birthday, month * 100 + day, see {@link Birthdays}. */
+  private static final String BIRTHDAY_KEY =
+      "CAST(EXTRACT(MONTH FROM birthdate) * 100 + EXTRACT(DAY FROM birthdate) AS INTEGER)";
+
+  /** Number of rows fetched from the server cursor per round trip by {@link #streamAll()}. */
+  public static final int DEFAULT_FETCH_SIZE = 500;
+
+  private final long bookId;
+  private final Supplier<Connection> connectionSupplier;
+  private final Supplier<Connection> readConnectionSupplier;
+
+  private ContactDao(
+      long bookId,
+      Supplier<Connection> connectionSupplier,
+      Supplier<Connection> readConnectionSupplier) {
+    this.bookId = bookId;
+    this.connectionSupplier = connectionSupplier;
+    this.readConnectionSupplier = readConnectionSupplier;
   }
 
   /**
@@ -65,19 +100,12 @@ public final class ContactDao implements Dao<Contact> {
     Contact contact = null;
     try {
       PreparedStatement preparedStatement =
-          this.connection.prepareStatement("SELECT * FROM contacts WHERE id = ?");
-      preparedStatement.setLong(1, id);
+          readConnection().prepareStatement("SELECT * FROM contacts WHERE book_id = ? AND id = ?");
+      preparedStatement.setLong(1, bookId);
+      preparedStatement.setLong(2, id);
       ResultSet resultSet = preparedStatement.executeQuery();
       while (resultSet.next()) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(resultSet.getDate("birthDate"));
-        contact =
-            Contact.builder()
-                .withName(resultSet.getString("name"))
-                .withEmail(resultSet.getString("email"))
-                .withAddress(resultSet.getString("address"))
-                .withBirthdate(calendar)
-                .build();
+        contact = toContact(resultSet);
       }
       resultSet.close();
       preparedStatement.close();
@@ -88,7 +116,7 @@ public final class ContactDao implements Dao<Contact> {
   }
 
   /**
-   * Reads contact data with the given email.
+   * Reads contact data with the given email, ignoring case.
    *
    * @param email {@link java.lang.String String} instance with the email value from the column
    *     'email' of table 'contacts'.
@@ -101,20 +129,14 @@ public final class ContactDao implements Dao<Contact> {
     Contact contact = null;
     try {
       PreparedStatement preparedStatement =
-          this.connection.prepareStatement("SELECT * FROM contacts WHERE email = ?");
-      preparedStatement.setString(1, email);
+          readConnection()
+              .prepareStatement(
+                  "SELECT * FROM contacts WHERE book_id = ? AND lower(email) = lower(?)");
+      preparedStatement.setLong(1, bookId);
+      preparedStatement.setString(2, email);
       ResultSet resultSet = preparedStatement.executeQuery();
       while (resultSet.next()) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(resultSet.getDate("birthDate"));
-        contact =
-            Contact.builder()
-                .withId(Long.valueOf(resultSet.getString("id")))
-                .withName(resultSet.getString("name"))
-                .withEmail(resultSet.getString("email"))
-                .withAddress(resultSet.getString("address"))
-                .withBirthdate(calendar)
-                .build();
+        contact = toContact(resultSet);
       }
       resultSet.close();
       preparedStatement.close();
@@ -136,20 +158,11 @@ public final class ContactDao implements Dao<Contact> {
     List<Contact> contacts = new ArrayList<>();
     try {
       PreparedStatement preparedStatement =
-          this.connection.prepareStatement("SELECT * FROM contacts");
+          readConnection().prepareStatement("SELECT * FROM contacts WHERE book_id = ?");
+      preparedStatement.setLong(1, bookId);
       ResultSet resultSet = preparedStatement.executeQuery();
       while (resultSet.next()) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(resultSet.getDate("birthDate"));
-        Contact contact =
-            Contact.builder()
-                .withId(resultSet.getLong("id"))
-                .withName(resultSet.getString("name"))
-                .withEmail(resultSet.getString("email"))
-                .withAddress(resultSet.getString("address"))
-                .withBirthdate(calendar)
-                .build();
-        contacts.add(contact);
+        contacts.add(toContact(resultSet));
       }
       resultSet.close();
       preparedStatement.close();
@@ -160,38 +173,314 @@ public final class ContactDao implements Dao<Contact> {
   }
 
   /**
-   * Persist the contact data.
+   * Searches the contacts whose name, email or address contain the given text, ignoring case. The
+   * matches are found through the trigram index 'contacts_search_idx' and ranked by word similarity
+   * with the text, ties broken by id so that neighbour pages never repeat or miss a contact.
    *
-   * @param contact {@link com.angelocvti.contactsbook.model.Contact Contact} instance containing
-   *     the contact data.
-   * @throws DuplicateEmailException if the e-Mail is already in use by another contact.
+   * @param query The text to be searched, with at least {@link #SEARCH_MIN_LENGTH} characters.
+   * @param offset Number of results to skip, limited to {@link #SEARCH_MAX_OFFSET}.
+   * @param size The page size, limited to {@link Page#MAX_SIZE}.
+   * @return {@link com.angelocvti.contactsbook.persistence.Page Page} with the contacts found,
+   *     whose cursors are the offsets of the neighbour pages.
+   * @throws IllegalArgumentException if the query is too short to use the index.
    * @author Angelo Cavalcanti
    */
-  public void insert(final Contact contact) {
-    Optional<Contact> contactOptional = findByEmail(contact.getEmail());
+  public Page<Contact> search(final String query, final long offset, final int size) {
+    String text = query == null ? "" : query.trim();
+    if (text.length() < SEARCH_MIN_LENGTH) {
+      throw new IllegalArgumentException(
+          "The search needs at least " + SEARCH_MIN_LENGTH + " characters.");
+    }
+
+    int limit = Page.capSize(size);
+    long start = Math.max(0, Math.min(offset, SEARCH_MAX_OFFSET));
+    List<Contact> contacts = new ArrayList<>(limit + 1);
+
+    try (PreparedStatement preparedStatement =
+        readConnection()
+            .prepareStatement(
+                "SELECT * FROM contacts WHERE book_id = ? AND "
+                    + SEARCH_DOCUMENT
+                    + " ILIKE ? ORDER BY ? <<-> "
+                    + SEARCH_DOCUMENT
+                    + ", id LIMIT ? OFFSET ?")) {
+      preparedStatement.setLong(1, bookId);
+      preparedStatement.setString(2, "%" + escapeLike(text) + "%");
+      preparedStatement.setString(3, text);
+      preparedStatement.setInt(4, limit + 1);
+      preparedStatement.setLong(5, start);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          contacts.add(toContact(resultSet));
+        }
+      }
+    } catch (SQLException e) {
+      throw new DaoException(e);
+    }
+
+    boolean hasNext = contacts.size() > limit && start + limit <= SEARCH_MAX_OFFSET;
+    if (contacts.size() > limit) {
+      contacts.remove(limit);
+    }
+    Long previousCursor = start > 0 ? Math.max(0, start - limit) : null;
+    Long nextCursor = hasNext ? start + limit : null;
+    return new Page<>(contacts, previousCursor, nextCursor);
+  }
+
+  /**
+   * Reads the contacts whose birthday falls in the window of days starting at the given date,
+   * ordered by the date of the birthday. The window may cross the new year, and the contacts born
+   * on February 29 have their birthday on February 28 in the other years. The contacts are read
+   * with range scans of the expression index 'contacts_birthday_idx', whatever the year of birth.
+   *
+   * @param from The first day of the window.
+   * @param days The number of days in the window, limited to {@link Birthdays#MAX_DAYS}.
+   * @return {@link java.util.List List} with the contacts found.
+   * @author Angelo Cavalcanti
+   */
+  public List<Contact> findUpcomingBirthdays(final LocalDate from, final int days) {
+    int[] ranges = Birthdays.keyRanges(from, days);
+    List<Contact> contacts = new ArrayList<>();
+    try (PreparedStatement preparedStatement =
+        readConnection()
+            .prepareStatement(
+                "SELECT * FROM contacts WHERE book_id = ? AND ("
+                    + BIRTHDAY_KEY
+                    + " BETWEEN ? AND ? OR "
+                    + BIRTHDAY_KEY
+                    + " BETWEEN ? AND ?) ORDER BY "
+                    + BIRTHDAY_KEY
+                    + " < ?, "
+                    + BIRTHDAY_KEY
+                    + ", id")) {
+      preparedStatement.setLong(1, bookId);
+      for (int i = 0; i < ranges.length; i++) {
+        preparedStatement.setInt(i + 2, ranges[i]);
+      }
+      preparedStatement.setInt(ranges.length + 2, ranges[0]);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          contacts.add(toContact(resultSet));
+        }
+      }
+    } catch (SQLException e) {
+      throw new DaoException(e);
+    }
+    return contacts;
+  }
+
+  /**
+   * Streams all contacts data with the {@link #DEFAULT_FETCH_SIZE}.
+   *
+   * @see #streamAll(int)
+   * @author Angelo Cavalcanti
+   */
+  public Stream<Contact> streamAll() {
+    return streamAll(DEFAULT_FETCH_SIZE);
+  }
+
+  /**
+   * Streams all contacts data from a server side cursor, so only {@code fetchSize} rows are held in
+   * memory at a time no matter the size of the table.
+   *
+   * <p>The cursor needs a transaction, so if the connection is in auto-commit mode it is switched
+   * off until the stream is closed. The stream must be closed (e.g. with try-with-resources) to
+   * close the statement and the result set and to end that transaction; the connection itself is
+   * still released by whoever provided it.
+   *
+   * @param fetchSize Number of rows fetched per round trip.
+   * @return {@link java.util.stream.Stream Stream} with one {@link
+   *     com.angelocvti.contactsbook.model.Contact Contact} instance for each contact in the table
+   *     'contacts'.
+   * @author Angelo Cavalcanti
+   */
+  public Stream<Contact> streamAll(final int fetchSize) {
+    return stream("SELECT * FROM contacts WHERE book_id = ?", fetchSize, bookId);
+  }
+
+  /**
+   * Streams, ordered by id, the data of the contacts whose id is greater than the given one. Has
+   * the same cursor semantics as {@link #streamAll(int)}.
+   *
+   * @param id The id after which the contacts are streamed, or null to stream all contacts.
+   * @param fetchSize Number of rows fetched per round trip.
+   * @return {@link java.util.stream.Stream Stream} with one {@link
+   *     com.angelocvti.contactsbook.model.Contact Contact} instance for each contact found.
+   * @author Angelo Cavalcanti
+   */
+  public Stream<Contact> streamAfter(final Long id, final int fetchSize) {
+    return stream(
+        "SELECT * FROM contacts WHERE book_id = ? AND id > ? ORDER BY id",
+        fetchSize,
+        bookId,
+        id == null ? Long.MIN_VALUE : id);
+  }
 
-    if (contactOptional.isPresent()) {
-      throw new DuplicateEmailException(
-          "The email: " + contact.getEmail() + " is being used by another contact.");
+  private Stream<Contact> stream(String sql, int fetchSize, Object... parameters) {
+    Connection connection = readConnection();
+    boolean autoCommit;
+    try {
+      autoCommit = connection.getAutoCommit();
+      if (autoCommit) {
+        connection.setAutoCommit(false);
+      }
+    } catch (SQLException e) {
+      throw new DaoException(e);
     }
 
+    PreparedStatement preparedStatement = null;
     try {
-      PreparedStatement preparedStatement =
-          connection.prepareStatement(
-              "INSERT INTO contacts (name, email ,address, birthdate) VALUES (?,?,?,?)");
-      preparedStatement.setString(1, contact.getName());
-      preparedStatement.setString(2, contact.getEmail());
-      preparedStatement.setString(3, contact.getAddress());
-      preparedStatement.setDate(4, new Date(contact.getBirthdate().getTimeInMillis()));
-      preparedStatement.execute();
-      preparedStatement.close();
+      preparedStatement = connection.prepareStatement(sql);
+      for (int i = 0; i < parameters.length; i++) {
+        preparedStatement.setObject(i + 1, parameters[i]);
+      }
+      preparedStatement.setFetchSize(fetchSize);
+      ResultSet resultSet = preparedStatement.executeQuery();
+      PreparedStatement statement = preparedStatement;
+      return StreamSupport.stream(new ContactSpliterator(resultSet), false)
+          .onClose(() -> closeCursor(connection, resultSet, statement, autoCommit));
+    } catch (SQLException e) {
+      closeCursor(connection, null, preparedStatement, autoCommit);
+      throw new DaoException(e);
+    }
+  }
+
+  private static void closeCursor(
+      Connection connection,
+      ResultSet resultSet,
+      PreparedStatement preparedStatement,
+      boolean autoCommit) {
+    try {
+      if (resultSet != null) {
+        resultSet.close();
+      }
+      if (preparedStatement != null) {
+        preparedStatement.close();
+      }
+      if (autoCommit) {
+        connection.rollback();
+        connection.setAutoCommit(true);
+      }
+    } catch (SQLException e) {
+      throw new DaoException(e);
+    }
+  }
+
+  /**
+   * Reads the revision of the contacts of the book, a counter incremented by every statement that
+   * writes to them, kept as the sum of the slots bumped by different connections. Two reads
+   * returning the same revision saw the same contacts, so it can tell clients whether their copy is
+   * still current without reading any contact.
+   *
+   * @return the current revision, 0 for a book whose contacts were never written.
+   * @author Angelo Cavalcanti
+   */
+  public long findRevision() {
+    try (PreparedStatement preparedStatement =
+        readConnection()
+            .prepareStatement(
+                "SELECT COALESCE(SUM(revision), 0) FROM contacts_revision WHERE book_id = ?")) {
+      preparedStatement.setLong(1, bookId);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        return resultSet.next() ? resultSet.getLong(1) : 0;
+      }
     } catch (SQLException e) {
       throw new DaoException(e);
     }
   }
 
   /**
-   * Persist the contact data and return the id assigned to the contact.
+   * Reads one page of contacts ordered by id, starting right after the given id. Uses keyset
+   * pagination, so the cost of reading a page doesn't depend on how deep the page is.
+   *
+   * @param id The id after which the page starts, or null to read the first page.
+   * @param size The page size, limited to {@link Page#MAX_SIZE}.
+   * @return {@link com.angelocvti.contactsbook.persistence.Page Page} with the contacts and the
+   *     cursors of the neighbour pages.
+   * @author Angelo Cavalcanti
+   */
+  public Page<Contact> findPageAfter(final Long id, final int size) {
+    int limit = Page.capSize(size);
+    List<Contact> contacts =
+        findPage(
+            "SELECT * FROM contacts WHERE book_id = ? AND id > ? ORDER BY id LIMIT ?",
+            id,
+            Long.MIN_VALUE,
+            limit);
+
+    boolean hasNext = contacts.size() > limit;
+    if (hasNext) {
+      contacts.remove(limit);
+    }
+
+    Long previousCursor = id != null && !contacts.isEmpty() ? contacts.get(0).getId() : null;
+    Long nextCursor = hasNext ? contacts.get(contacts.size() - 1).getId() : null;
+    return new Page<>(contacts, previousCursor, nextCursor);
+  }
+
+  /**
+   * Reads one page of contacts ordered by id, ending right before the given id.
+   *
+   * @param id The id before which the page ends, or null to read the last page.
+   * @param size The page size, limited to {@link Page#MAX_SIZE}.
+   * @return {@link com.angelocvti.contactsbook.persistence.Page Page} with the contacts and the
+   *     cursors of the neighbour pages.
+   * @author Angelo Cavalcanti
+   */
+  public Page<Contact> findPageBefore(final Long id, final int size) {
+    int limit = Page.capSize(size);
+    List<Contact> contacts =
+        findPage(
+            "SELECT * FROM contacts WHERE book_id = ? AND id < ? ORDER BY id DESC LIMIT ?",
+            id,
+            Long.MAX_VALUE,
+            limit);
+
+    boolean hasPrevious = contacts.size() > limit;
+    if (hasPrevious) {
+      contacts.remove(limit);
+    }
+    Collections.reverse(contacts);
+
+    Long previousCursor = hasPrevious ? contacts.get(0).getId() : null;
+    Long nextCursor =
+        id != null && !contacts.isEmpty() ? contacts.get(contacts.size() - 1).getId() : null;
+    return new Page<>(contacts, previousCursor, nextCursor);
+  }
+
+  private List<Contact> findPage(String sql, Long id, long defaultId, int limit) {
+    List<Contact> contacts = new ArrayList<>(limit + 1);
+    try (PreparedStatement preparedStatement = readConnection().prepareStatement(sql)) {
+      preparedStatement.setLong(1, bookId);
+      preparedStatement.setLong(2, id == null ? defaultId : id);
+      preparedStatement.setInt(3, limit + 1);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          contacts.add(toContact(resultSet));
+        }
+      }
+    } catch (SQLException e) {
+      throw new DaoException(e);
+    }
+    return contacts;
+  }
+
+  /**
+   * Persist the contact data.
+   *
+   * @param contact {@link com.angelocvti.contactsbook.model.Contact Contact} instance containing
+   *     the contact data.
+   * @throws DuplicateEmailException if the e-Mail is already in use by another contact.
+   * @author Angelo Cavalcanti
+   */
+  public void insert(final Contact contact) {
+    insertAndGetId(contact);
+  }
+
+  /**
+   * Persist the contact data and return the id assigned to the contact. The e-Mail duplicated in
+   * the book is detected by the unique index on the columns 'book_id' and 'email' in the same
+   * statement, so there is a single round trip and no race between concurrent inserts.
    *
    * @param contact {@link com.angelocvti.contactsbook.model.Contact Contact} instance containing
    *     the contact data.
@@ -200,74 +489,118 @@ public final class ContactDao implements Dao<Contact> {
    * @author Angelo Cavalcanti
    */
   public Long insertAndGetId(final Contact contact) {
-    Optional<Contact> contactOptional = findByEmail(contact.getEmail());
-
-    if (contactOptional.isPresent()) {
-      throw new DuplicateEmailException(
-          "The email: " + contact.getEmail() + " is being used by another contact.");
+    try (PreparedStatement preparedStatement =
+        connection()
+            .prepareStatement(
+                "INSERT INTO contacts (book_id, name, email, address, birthdate)"
+                    + " VALUES (?,?,?,?,?)"
+                    + " ON CONFLICT (book_id, (lower(email))) DO NOTHING RETURNING id")) {
+      preparedStatement.setLong(1, bookId);
+      preparedStatement.setString(2, contact.getName());
+      preparedStatement.setString(3, contact.getEmail());
+      preparedStatement.setString(4, contact.getAddress());
+      preparedStatement.setObject(5, contact.getBirthdate());
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        if (!resultSet.next()) {
+          throw duplicateEmail(contact);
+        }
+        return resultSet.getLong(1);
+      }
+    } catch (SQLException e) {
+      throw new DaoException(e);
     }
+  }
 
-    Long id;
+  /**
+   * Persist the data of several contacts with a single JDBC batch in one transaction. Contacts
+   * whose e-Mail is already in use, including by an earlier contact of the same batch, are skipped
+   * instead of failing the whole batch.
+   *
+   * @param contacts {@link java.util.List List} of {@link com.angelocvti.contactsbook.model.Contact
+   *     Contact} instances containing the contacts data.
+   * @return for each contact, in the same order, true if it was inserted or false if its e-Mail is
+   *     already in use.
+   * @author Angelo Cavalcanti
+   */
+  public boolean[] insertAll(final List<Contact> contacts) {
+    boolean[] inserted = new boolean[contacts.size()];
+    if (contacts.isEmpty()) {
+      return inserted;
+    }
 
     try {
-      PreparedStatement preparedStatement =
+      Connection connection = connection();
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try (PreparedStatement preparedStatement =
           connection.prepareStatement(
-              "INSERT INTO contacts (name, email ,address, birthdate) VALUES (?,?,?,?)",
-              Statement.RETURN_GENERATED_KEYS);
-      preparedStatement.setString(1, contact.getName());
-      preparedStatement.setString(2, contact.getEmail());
-      preparedStatement.setString(3, contact.getAddress());
-      preparedStatement.setDate(4, new Date(contact.getBirthdate().getTimeInMillis()));
-      preparedStatement.execute();
-      ResultSet resultSet = preparedStatement.getGeneratedKeys();
-      if (resultSet.next()) {
-        id = resultSet.getLong(1);
-        preparedStatement.close();
-      } else {
-        throw new SQLException("No generated keys found.");
+              "INSERT INTO contacts (book_id, name, email, address, birthdate)"
+                  + " VALUES (?,?,?,?,?)"
+                  + " ON CONFLICT (book_id, (lower(email))) DO NOTHING")) {
+        for (Contact contact : contacts) {
+          preparedStatement.setLong(1, bookId);
+          preparedStatement.setString(2, contact.getName());
+          preparedStatement.setString(3, contact.getEmail());
+          preparedStatement.setString(4, contact.getAddress());
+          preparedStatement.setObject(5, contact.getBirthdate());
+          preparedStatement.addBatch();
+        }
+        int[] updateCounts = preparedStatement.executeBatch();
+        for (int i = 0; i < updateCounts.length; i++) {
+          inserted[i] = updateCounts[i] > 0;
+        }
+        if (autoCommit) {
+          connection.commit();
+        }
+      } catch (SQLException e) {
+        if (autoCommit) {
+          connection.rollback();
+        }
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
       }
     } catch (SQLException e) {
       throw new DaoException(e);
     }
-    return id;
+    return inserted;
   }
 
   /**
-   * Update the contact data.
+   * Update the contact data and increment its version, in a single statement. When the contact
+   * carries a version the update only happens if the stored contact is still at that version, so
+   * concurrent edits can't overwrite each other; otherwise the contact is overwritten.
    *
    * @param id The id of the contact that will be updated (the primary key of table 'contacts').
    * @param contact {@link com.angelocvti.contactsbook.model.Contact Contact} instance containing
    *     the contact new data.
    * @throws ContactNotFoundException if no contacts were found with the given id.
+   * @throws ContactConflictException if the contact was changed since it was read.
    * @throws DuplicateEmailException if the e-Mail is already in use by another contact.
    * @author Angelo Cavalcanti
    */
   public void update(final Long id, final Contact contact) {
-    Optional<Contact> contactOptional = findById(id);
-
-    if (!contactOptional.isPresent()) {
-      throw new ContactNotFoundException("No contact was found.");
-    } else {
-      Optional<Contact> persistedContactWithSameEmail = findByEmail(contact.getEmail());
-      if (persistedContactWithSameEmail.isPresent()
-          && !persistedContactWithSameEmail.get().getId().equals(id)) {
-        throw new DuplicateEmailException(
-            "The email: " + contact.getEmail() + " is being used by another contact.");
-      }
-    }
-
-    try {
-      PreparedStatement preparedStatement =
-          this.connection.prepareStatement(
-              "UPDATE contacts SET name = ?, email = ?, address = ?, birthdate = ? WHERE id = ?");
+    String sql =
+        "UPDATE contacts SET name = ?, email = ?, address = ?, birthdate = ?,"
+            + " version = version + 1 WHERE book_id = ? AND id = ?"
+            + (contact.getVersion() == null ? "" : " AND version = ?");
+    try (PreparedStatement preparedStatement = connection().prepareStatement(sql)) {
       preparedStatement.setString(1, contact.getName());
       preparedStatement.setString(2, contact.getEmail());
       preparedStatement.setString(3, contact.getAddress());
-      preparedStatement.setDate(4, new Date(contact.getBirthdate().getTimeInMillis()));
-      preparedStatement.setLong(5, id);
-      preparedStatement.execute();
-      preparedStatement.close();
+      preparedStatement.setObject(4, contact.getBirthdate());
+      preparedStatement.setLong(5, bookId);
+      preparedStatement.setLong(6, id);
+      if (contact.getVersion() != null) {
+        preparedStatement.setInt(7, contact.getVersion());
+      }
+      if (preparedStatement.executeUpdate() == 0) {
+        throw updateFailure(id, contact.getVersion());
+      }
     } catch (SQLException e) {
+      if (UNIQUE_VIOLATION.equals(e.getSQLState())) {
+        throw duplicateEmail(contact);
+      }
       throw new DaoException(e);
     }
   }
@@ -280,41 +613,164 @@ public final class ContactDao implements Dao<Contact> {
    * @author Angelo Cavalcanti
    */
   public void delete(final Long id) {
-    Optional<Contact> contactOptional = findById(id);
-
-    if (!contactOptional.isPresent()) {
-      throw new ContactNotFoundException("No contact was found.");
+    try (PreparedStatement preparedStatement =
+        connection().prepareStatement("DELETE FROM contacts WHERE book_id = ? AND id = ?")) {
+      preparedStatement.setLong(1, bookId);
+      preparedStatement.setLong(2, id);
+      if (preparedStatement.executeUpdate() == 0) {
+        throw new ContactNotFoundException("No contact was found.");
+      }
+    } catch (SQLException e) {
+      throw new DaoException(e);
     }
+  }
 
-    try {
-      PreparedStatement preparedStatement =
-          this.connection.prepareStatement("DELETE FROM contacts WHERE id= ?");
-      preparedStatement.setLong(1, id);
-      preparedStatement.execute();
-      preparedStatement.close();
+  /**
+   * Delete the data of several contacts with a single statement. Ids of contacts that don't exist
+   * are skipped.
+   *
+   * @param ids The primary keys of table 'contacts'.
+   * @return the number of contacts deleted.
+   * @author Angelo Cavalcanti
+   */
+  public int deleteAll(final List<Long> ids) {
+    if (ids.isEmpty()) {
+      return 0;
+    }
+    Connection connection = connection();
+    try (PreparedStatement preparedStatement =
+        connection.prepareStatement("DELETE FROM contacts WHERE book_id = ? AND id = ANY(?)")) {
+      preparedStatement.setLong(1, bookId);
+      preparedStatement.setArray(2, connection.createArrayOf("bigint", ids.toArray()));
+      return preparedStatement.executeUpdate();
     } catch (SQLException e) {
       throw new DaoException(e);
     }
   }
 
+  /** Tells apart, once an update matched no rows, a missing contact from a stale version. */
+  private DaoException updateFailure(Long id, Integer expectedVersion) throws SQLException {
+    try (PreparedStatement preparedStatement =
+        connection()
+            .prepareStatement("SELECT version FROM contacts WHERE book_id = ? AND id = ?")) {
+      preparedStatement.setLong(1, bookId);
+      preparedStatement.setLong(2, id);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        if (!resultSet.next()) {
+          return new ContactNotFoundException("No contact was found.");
+        }
+        return new ContactConflictException(
+            "The contact was changed by someone else (version "
+                + expectedVersion
+                + " was edited but it is now at version "
+                + resultSet.getInt(1)
+                + "). Reload it and try again.");
+      }
+    }
+  }
+
+  private Connection connection() {
+    return connectionSupplier.get();
+  }
+
+  private Connection readConnection() {
+    return readConnectionSupplier.get();
+  }
+
+  private static String escapeLike(String text) {
+    return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+  }
+
+  static DuplicateEmailException duplicateEmail(Contact contact) {
+    return new DuplicateEmailException(
+        "The email: " + contact.getEmail() + " is being used by another contact.");
+  }
+
+  private static Contact toContact(ResultSet resultSet) throws SQLException {
+    return Contact.builder()
+        .withId(resultSet.getLong("id"))
+        .withBookId(resultSet.getLong("book_id"))
+        .withName(resultSet.getString("name"))
+        .withEmail(resultSet.getString("email"))
+        .withAddress(resultSet.getString("address"))
+        .withBirthdate(resultSet.getObject("birthdate", LocalDate.class))
+        .withVersion(resultSet.getInt("version"))
+        .build();
+  }
+
+  /** Maps each row of the result set to a contact while the stream is consumed. */
+  private static final class ContactSpliterator extends Spliterators.AbstractSpliterator<Contact> {
+
+    private final ResultSet resultSet;
+
+    private ContactSpliterator(ResultSet resultSet) {
+      super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+      this.resultSet = resultSet;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Contact> action) {
+      try {
+        if (!resultSet.next()) {
+          return false;
+        }
+        action.accept(toContact(resultSet));
+        return true;
+      } catch (SQLException e) {
+        throw new DaoException(e);
+      }
+    }
+  }
+
   public static ContactDaoBuilder builder() {
     return new ContactDaoBuilder();
   }
 
   public static class ContactDaoBuilder {
 
-    private Connection connection;
+    private long bookId = Books.DEFAULT_ID;
+    private Supplier<Connection> connection;
+    private Supplier<Connection> readConnection;
 
     private ContactDaoBuilder() {}
 
+    /** Sets the book whose contacts are read and written. Defaults to {@link Books#DEFAULT_ID}. */
+    public ContactDaoBuilder withBookId(long bookId) {
+      this.bookId = bookId;
+      return this;
+    }
+
+    /** Sets the connection used by every operation. */
     public ContactDaoBuilder withConnection(Connection connection) {
-      this.connection = Objects.requireNonNull(connection, "Connection is required.");
+      Objects.requireNonNull(connection, "Connection is required.");
+      return withConnectionSupplier(() -> connection);
+    }
+
+    /**
+     * Sets where the connection is taken from, on each operation, so it is only borrowed once the
+     * Dao is actually used. It is also used for reading unless a read connection supplier is set.
+     */
+    public ContactDaoBuilder withConnectionSupplier(Supplier<Connection> connection) {
+      this.connection = Objects.requireNonNull(connection, "Connection supplier is required.");
+      return this;
+    }
+
+    /**
+     * Sets where the read-only operations take their connection from, such as {@link
+     * UnitOfWork#getReadConnection()}, which may lead to a read replica.
+     */
+    public ContactDaoBuilder withReadConnectionSupplier(Supplier<Connection> readConnection) {
+      this.readConnection =
+          Objects.requireNonNull(readConnection, "Read connection supplier is required.");
       return this;
     }
 
     public ContactDao build() {
       Objects.requireNonNull(connection, "Connection is required.");
-      return new ContactDao(this.connection);
+      return new ContactDao(
+          this.bookId,
+          this.connection,
+          this.readConnection == null ? this.connection : this.readConnection);
     }
   }
 }
@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import com.angelocvti.contactsbook.config.Environment;
+import com.angelocvti.contactsbook.model.Contact;
+import java.sql.Connection;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Creates the {@link com.angelocvti.contactsbook.persistence.Dao Dao} used by the servlets. When
+ * the environment variable CONTACT_CACHE_MAX_SIZE is greater than zero the {@link
+ * com.angelocvti.contactsbook.persistence.ContactDao ContactDao} is decorated by a {@link
+ * com.angelocvti.contactsbook.persistence.CachingContactDao CachingContactDao} sharing one cache,
+ * whose entries live for CONTACT_CACHE_TTL_SECONDS. The database calls are always timed by an
+ * {@link com.angelocvti.contactsbook.persistence.InstrumentedContactDao InstrumentedContactDao}, so
+ * cache hits don't count as queries. When the {@link
+ * com.angelocvti.contactsbook.persistence.WriteBatcher WriteBatcher} is enabled, the writes of a
+ * unit of work are batched by a {@link com.angelocvti.contactsbook.persistence.BatchingContactDao
+ * BatchingContactDao} under the instrumentation, so their time includes the wait for the batch.
+ * Those writes commit outside the unit of work, so the cache drops what they changed as soon as
+ * their batch commits, before the writers return. Every Dao works on one address book, and the
+ * cache is shared by all of them. A unit of work that has written reads past the cache until it
+ * completes, so its uncommitted rows never reach it.
+ *
+ * @author Angelo Cavalcanti
+ */
+public enum ContactDaoFactory {
+  INSTANCE;
+
+  private final ContactCache cache = createCache();
+
+  ContactDaoFactory() {
+    if (cache != null) {
+      WriteBatcher.INSTANCE.addListener(this::invalidate);
+    }
+  }
+
+  /** Creates a Dao of the book whose writes are committed by the caller-managed connection. */
+  public Dao<Contact> create(Connection connection, long bookId) {
+    Dao<Contact> contactDao =
+        instrumented(ContactDao.builder().withBookId(bookId).withConnection(connection).build());
+    return cache == null
+        ? contactDao
+        : cached(bookId, contactDao, contactDao, invalidation -> {}, () -> false);
+  }
+
+  /**
+   * Creates a Dao of the book of the unit of work, bound to its transaction, whose reads go through
+   * {@link UnitOfWork#getReadConnection()}.
+   */
+  public Dao<Contact> create(UnitOfWork unitOfWork) {
+    long bookId = unitOfWork.getBookId();
+    Dao<Contact> contactDao =
+        ContactDao.builder()
+            .withBookId(bookId)
+            .withConnectionSupplier(unitOfWork::getWriteConnection)
+            .withReadConnectionSupplier(unitOfWork::getReadConnection)
+            .build();
+    if (WriteBatcher.INSTANCE.isEnabled()) {
+      contactDao =
+          BatchingContactDao.builder().withDelegate(contactDao).withUnitOfWork(unitOfWork).build();
+    }
+    if (cache == null) {
+      return instrumented(contactDao);
+    }
+    // Misses are read from the primary: a replica that hasn't replayed a write yet would put back
+    // the entries the write invalidated.
+    Dao<Contact> loader =
+        instrumented(
+            ContactDao.builder()
+                .withBookId(bookId)
+                .withConnectionSupplier(unitOfWork::getConnection)
+                .build());
+    return cached(
+        bookId,
+        instrumented(contactDao),
+        loader,
+        unitOfWork::afterCompletion,
+        unitOfWork::isWriting);
+  }
+
+  private Dao<Contact> cached(
+      long bookId,
+      Dao<Contact> contactDao,
+      Dao<Contact> loader,
+      Consumer<Runnable> afterCompletion,
+      BooleanSupplier uncommittedWrites) {
+    return CachingContactDao.builder()
+        .withBookId(bookId)
+        .withDelegate(contactDao)
+        .withLoader(loader)
+        .withCache(cache)
+        .withAfterCompletion(afterCompletion)
+        .withUncommittedWrites(uncommittedWrites)
+        .build();
+  }
+
+  private void invalidate(long bookId, Long contactId, Contact contact) {
+    cache.invalidate(contactId);
+    if (contact != null) {
+      cache.invalidateEmail(bookId, contact.getEmail());
+    }
+  }
+
+  private static Dao<Contact> instrumented(Dao<Contact> contactDao) {
+    return InstrumentedContactDao.builder().withDelegate(contactDao).build();
+  }
+
+  public Optional<ContactCache.Statistics> getCacheStatistics() {
+    return Optional.ofNullable(cache).map(ContactCache::getStatistics);
+  }
+
+  private static ContactCache createCache() {
+    int maxSize = Environment.getInt("CONTACT_CACHE_MAX_SIZE", 0);
+    if (maxSize <= 0) {
+      return null;
+    }
+    return ContactCache.builder()
+        .withMaxSize(maxSize)
+        .withTimeToLiveSeconds(Environment.getLong("CONTACT_CACHE_TTL_SECONDS", 60))
+        .build();
+  }
+}
@@ -24,8 +24,10 @@
 
 package com.angelocvti.contactsbook.persistence;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /** @author Angelo Cavalcanti */
 public interface Dao<T> {
@@ -35,11 +37,29 @@ public interface Dao<T> {
 
   List<T> findAll();
 
+  Page<T> findPageAfter(Long id, int size);
+
+  Page<T> findPageBefore(Long id, int size);
+
+  Page<T> search(String query, long offset, int size);
+
+  List<T> findUpcomingBirthdays(LocalDate from, int days);
+
+  Stream<T> streamAll(int fetchSize);
+
+  Stream<T> streamAfter(Long id, int fetchSize);
+
+  long findRevision();
+
   void insert(T t);
 
   Long insertAndGetId(T t);
 
+  boolean[] insertAll(List<T> ts);
+
   void update(Long id, T t);
 
   void delete(Long id);
+
+  int deleteAll(List<Long> ids);
 }
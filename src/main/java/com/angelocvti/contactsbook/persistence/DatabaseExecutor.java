@@ -0,0 +1,128 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import com.angelocvti.contactsbook.config.Environment;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of threads that run the database work of the requests, so the container threads are
+ * not blocked on JDBC calls. By default it has as many threads as the connection pool has
+ * connections, since more threads would only wait for a connection, and its queue holds up to 100
+ * tasks; both are set by the environment variables DB_EXECUTOR_THREADS and DB_EXECUTOR_QUEUE_SIZE.
+ * Work submitted while the queue is full is rejected instead of piling up.
+ *
+ * @author Angelo Cavalcanti
+ */
+public enum DatabaseExecutor {
+  INSTANCE;
+
+  private final LongAdder rejected = new LongAdder();
+
+  private volatile ThreadPoolExecutor executor;
+
+  /**
+   * Runs the task on one of the database threads.
+   *
+   * @throws RejectedExecutionException if the queue is full or the executor was shut down.
+   * @author Angelo Cavalcanti
+   */
+  public void execute(Runnable task) {
+    executor().execute(task);
+  }
+
+  public int getActiveCount() {
+    return executor().getActiveCount();
+  }
+
+  public int getQueueSize() {
+    return executor().getQueue().size();
+  }
+
+  public int getMaxThreads() {
+    return executor().getMaximumPoolSize();
+  }
+
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  /** Stops accepting work and waits a few seconds for the running tasks to finish. */
+  public synchronized void shutdown() {
+    if (executor != null) {
+      executor.shutdown();
+      try {
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      executor = null;
+    }
+  }
+
+  private ThreadPoolExecutor executor() {
+    ThreadPoolExecutor current = executor;
+    if (current == null) {
+      synchronized (this) {
+        if (executor == null) {
+          executor = createExecutor();
+        }
+        current = executor;
+      }
+    }
+    return current;
+  }
+
+  private ThreadPoolExecutor createExecutor() {
+    int threads =
+        Environment.getInt("DB_EXECUTOR_THREADS", Environment.getInt("DB_POOL_MAX_SIZE", 10));
+    int queueSize = Environment.getInt("DB_EXECUTOR_QUEUE_SIZE", 100);
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadPoolExecutor created =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueSize),
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "contacts-book-db-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            },
+            (task, pool) -> {
+              rejected.increment();
+              throw new RejectedExecutionException("The database executor is saturated.");
+            });
+    created.allowCoreThreadTimeOut(true);
+    return created;
+  }
+}
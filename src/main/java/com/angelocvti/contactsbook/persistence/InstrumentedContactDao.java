@@ -0,0 +1,199 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import com.angelocvti.contactsbook.metrics.Metrics;
+import com.angelocvti.contactsbook.metrics.OperationMetrics;
+import com.angelocvti.contactsbook.model.Contact;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * {@link com.angelocvti.contactsbook.persistence.Dao Dao} decorator that records the latency,
+ * failures and rows returned of every call in the {@link
+ * com.angelocvti.contactsbook.metrics.Metrics Metrics} registry, under the name of the method. For
+ * streams the latency is the time to open the cursor and the rows are counted as they are consumed.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class InstrumentedContactDao implements Dao<Contact> {
+
+  private final Dao<Contact> delegate;
+
+  private InstrumentedContactDao(Dao<Contact> delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public Optional<Contact> findById(final Long id) {
+    return time("findById", () -> delegate.findById(id), found -> found.isPresent() ? 1 : 0);
+  }
+
+  @Override
+  public Optional<Contact> findByEmail(final String email) {
+    return time(
+        "findByEmail", () -> delegate.findByEmail(email), found -> found.isPresent() ? 1 : 0);
+  }
+
+  @Override
+  public List<Contact> findAll() {
+    return time("findAll", delegate::findAll, List::size);
+  }
+
+  @Override
+  public Page<Contact> findPageAfter(final Long id, final int size) {
+    return time(
+        "findPageAfter", () -> delegate.findPageAfter(id, size), InstrumentedContactDao::rows);
+  }
+
+  @Override
+  public Page<Contact> findPageBefore(final Long id, final int size) {
+    return time(
+        "findPageBefore", () -> delegate.findPageBefore(id, size), InstrumentedContactDao::rows);
+  }
+
+  @Override
+  public Page<Contact> search(final String query, final long offset, final int size) {
+    return time("search", () -> delegate.search(query, offset, size), InstrumentedContactDao::rows);
+  }
+
+  @Override
+  public List<Contact> findUpcomingBirthdays(final LocalDate from, final int days) {
+    return time(
+        "findUpcomingBirthdays", () -> delegate.findUpcomingBirthdays(from, days), List::size);
+  }
+
+  @Override
+  public Stream<Contact> streamAll(final int fetchSize) {
+    return stream("streamAll", () -> delegate.streamAll(fetchSize));
+  }
+
+  @Override
+  public Stream<Contact> streamAfter(final Long id, final int fetchSize) {
+    return stream("streamAfter", () -> delegate.streamAfter(id, fetchSize));
+  }
+
+  @Override
+  public long findRevision() {
+    return time("findRevision", delegate::findRevision, revision -> 1);
+  }
+
+  @Override
+  public void insert(final Contact contact) {
+    time(
+        "insert",
+        () -> {
+          delegate.insert(contact);
+          return null;
+        },
+        nothing -> 0);
+  }
+
+  @Override
+  public Long insertAndGetId(final Contact contact) {
+    return time("insertAndGetId", () -> delegate.insertAndGetId(contact), id -> 0);
+  }
+
+  @Override
+  public boolean[] insertAll(final List<Contact> contacts) {
+    return time("insertAll", () -> delegate.insertAll(contacts), inserted -> 0);
+  }
+
+  @Override
+  public void update(final Long id, final Contact contact) {
+    time(
+        "update",
+        () -> {
+          delegate.update(id, contact);
+          return null;
+        },
+        nothing -> 0);
+  }
+
+  @Override
+  public void delete(final Long id) {
+    time(
+        "delete",
+        () -> {
+          delegate.delete(id);
+          return null;
+        },
+        nothing -> 0);
+  }
+
+  @Override
+  public int deleteAll(final List<Long> ids) {
+    return time("deleteAll", () -> delegate.deleteAll(ids), deleted -> deleted);
+  }
+
+  private static <R> R time(String operation, Supplier<R> call, ToLongFunction<R> rows) {
+    OperationMetrics metrics = Metrics.INSTANCE.dao(operation);
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      R result = call.get();
+      failed = false;
+      metrics.addRows(rows.applyAsLong(result));
+      return result;
+    } finally {
+      metrics.record(System.nanoTime() - start, failed);
+    }
+  }
+
+  private static Stream<Contact> stream(String operation, Supplier<Stream<Contact>> call) {
+    OperationMetrics metrics = Metrics.INSTANCE.dao(operation);
+    return time(operation, call, opened -> 0).peek(contact -> metrics.addRows(1));
+  }
+
+  private static long rows(Page<Contact> page) {
+    return page.getItems().size();
+  }
+
+  public static InstrumentedContactDaoBuilder builder() {
+    return new InstrumentedContactDaoBuilder();
+  }
+
+  public static class InstrumentedContactDaoBuilder {
+
+    private Dao<Contact> delegate;
+
+    private InstrumentedContactDaoBuilder() {}
+
+    public InstrumentedContactDaoBuilder withDelegate(Dao<Contact> delegate) {
+      this.delegate = Objects.requireNonNull(delegate, "Delegate is required.");
+      return this;
+    }
+
+    public InstrumentedContactDao build() {
+      Objects.requireNonNull(delegate, "Delegate is required.");
+      return new InstrumentedContactDao(delegate);
+    }
+  }
+}
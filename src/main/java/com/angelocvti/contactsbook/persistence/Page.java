@@ -0,0 +1,80 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset paginated query. The cursors are the keys to be used to read the next or the
+ * previous page, or null when there is no such page.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class Page<T> {
+
+  public static final int DEFAULT_SIZE = 25;
+  public static final int MAX_SIZE = 100;
+
+  private final List<T> items;
+  private final Long previousCursor;
+  private final Long nextCursor;
+
+  public Page(List<T> items, Long previousCursor, Long nextCursor) {
+    this.items = Collections.unmodifiableList(items);
+    this.previousCursor = previousCursor;
+    this.nextCursor = nextCursor;
+  }
+
+  /**
+   * Limits the requested page size to the interval [1, {@link #MAX_SIZE}].
+   *
+   * @param size requested page size, or null to use the {@link #DEFAULT_SIZE}.
+   * @return the page size to be used.
+   * @author Angelo Cavalcanti
+   */
+  public static int capSize(Integer size) {
+    if (size == null) {
+      return DEFAULT_SIZE;
+    }
+    return Math.max(1, Math.min(MAX_SIZE, size));
+  }
+
+  public List<T> getItems() {
+    return items;
+  }
+
+  public Long getPreviousCursor() {
+    return previousCursor;
+  }
+
+  public Long getNextCursor() {
+    return nextCursor;
+  }
+
+  public boolean isEmpty() {
+    return items.isEmpty();
+  }
+}
@@ -0,0 +1,319 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import com.angelocvti.contactsbook.exceptions.DaoException;
+import com.angelocvti.contactsbook.model.Contact;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * One transaction shared by every Dao used while handling a request. The connection is borrowed
+ * lazily, on the first call to {@link #getConnection()}, with auto-commit off, and is given back to
+ * the pool by {@link #commit()} or {@link #rollback()}; using the unit of work again afterwards
+ * starts a new transaction.
+ *
+ * <p>When read replicas are configured, reads made before anything is written go through {@link
+ * #getReadConnection()} to a read-only transaction on a replica. Once the transaction writes, or
+ * when the unit of work is built to read from the primary, reads join the primary transaction so
+ * they see its writes.
+ *
+ * <p>The unit of work works on the contacts of one address book, see {@link Books}.
+ *
+ * <p>Not thread safe: a unit of work belongs to one request.
+ *
+ * @author Angelo Cavalcanti
+ */
+public final class UnitOfWork implements AutoCloseable {
+
+  private final long bookId;
+  private final Supplier<Connection> connectionSupplier;
+  private final Supplier<Connection> readConnectionSupplier;
+  private final Runnable writeListener;
+  private final List<Runnable> afterCompletion = new ArrayList<>();
+
+  private Connection connection;
+  private Connection readConnection;
+  private boolean writing;
+  private boolean primaryReads;
+  private Dao<Contact> contacts;
+
+  private UnitOfWork(UnitOfWorkBuilder builder) {
+    this.bookId = builder.bookId;
+    this.connectionSupplier = builder.connectionSupplier;
+    this.readConnectionSupplier = builder.readConnectionSupplier();
+    this.primaryReads = builder.primaryReads;
+    this.writeListener = builder.writeListener;
+  }
+
+  /**
+   * Returns the connection of the current transaction, beginning one if needed. Reads that must see
+   * the latest committed data use it too.
+   *
+   * @return {@link java.sql.Connection Connection} in manual commit mode. It must not be closed by
+   *     the caller.
+   * @author Angelo Cavalcanti
+   */
+  public Connection getConnection() {
+    if (connection == null) {
+      Connection borrowed = connectionSupplier.get();
+      try {
+        borrowed.setAutoCommit(false);
+      } catch (SQLException e) {
+        closeQuietly(borrowed);
+        throw new DaoException(e);
+      }
+      connection = borrowed;
+    }
+    return connection;
+  }
+
+  /**
+   * Returns the connection of the current transaction, like {@link #getConnection()}, marking the
+   * transaction as one that writes.
+   *
+   * @return {@link java.sql.Connection Connection} in manual commit mode. It must not be closed by
+   *     the caller.
+   * @author Angelo Cavalcanti
+   */
+  public Connection getWriteConnection() {
+    Connection primary = getConnection();
+    if (!writing) {
+      writing = true;
+      writeListener.run();
+    }
+    return primary;
+  }
+
+  /**
+   * Returns the connection to read with: a replica, in a read-only transaction begun if needed, as
+   * long as the current transaction hasn't borrowed a primary connection and no write was recorded,
+   * or else the primary one.
+   *
+   * @return {@link java.sql.Connection Connection} in manual commit mode. It must not be closed by
+   *     the caller.
+   * @author Angelo Cavalcanti
+   */
+  public Connection getReadConnection() {
+    if (connection != null || primaryReads || readConnectionSupplier == null) {
+      return getConnection();
+    }
+    if (readConnection == null) {
+      Connection borrowed = readConnectionSupplier.get();
+      try {
+        borrowed.setAutoCommit(false);
+        borrowed.setReadOnly(true);
+      } catch (SQLException e) {
+        closeQuietly(borrowed);
+        throw new DaoException(e);
+      }
+      readConnection = borrowed;
+    }
+    return readConnection;
+  }
+
+  /** The address book whose contacts the unit of work reads and writes. */
+  public long getBookId() {
+    return bookId;
+  }
+
+  /** Contact Dao of the book, bound to the current transaction. */
+  public Dao<Contact> contacts() {
+    if (contacts == null) {
+      contacts = ContactDaoFactory.INSTANCE.create(this);
+    }
+    return contacts;
+  }
+
+  /** Registers an action to run once the current transaction is committed or rolled back. */
+  public void afterCompletion(Runnable action) {
+    afterCompletion.add(action);
+  }
+
+  /** Whether the current transaction borrowed its connection for writing. */
+  public boolean isWriting() {
+    return writing;
+  }
+
+  /**
+   * Records a write committed outside of the transaction, such as one flushed by the {@link
+   * WriteBatcher}, so the write listener learns about it and the reads that follow see it.
+   */
+  public void recordWrite() {
+    primaryReads = true;
+    writeListener.run();
+  }
+
+  public boolean isActive() {
+    return connection != null || readConnection != null;
+  }
+
+  /**
+   * Commits the current transaction, if any, and releases its connections.
+   *
+   * @throws DaoException if the commit fails; the transaction is rolled back.
+   * @author Angelo Cavalcanti
+   */
+  public void commit() {
+    if (!isActive()) {
+      return;
+    }
+    try {
+      if (connection != null) {
+        connection.commit();
+      }
+      if (readConnection != null) {
+        readConnection.commit();
+      }
+    } catch (SQLException e) {
+      rollback();
+      throw new DaoException(e);
+    }
+    if (writing) {
+      writeListener.run();
+    }
+    complete();
+  }
+
+  /** Rolls back the current transaction, if any, and releases its connections. */
+  public void rollback() {
+    if (!isActive()) {
+      return;
+    }
+    try {
+      if (connection != null) {
+        connection.rollback();
+      }
+      if (readConnection != null) {
+        readConnection.rollback();
+      }
+    } catch (SQLException e) {
+      throw new DaoException(e);
+    } finally {
+      complete();
+    }
+  }
+
+  /** Rolls back whatever was not committed. */
+  @Override
+  public void close() {
+    rollback();
+  }
+
+  private void complete() {
+    if (connection != null) {
+      closeQuietly(connection);
+    }
+    if (readConnection != null) {
+      closeQuietly(readConnection);
+    }
+    connection = null;
+    readConnection = null;
+    writing = false;
+    contacts = null;
+    List<Runnable> actions = new ArrayList<>(afterCompletion);
+    afterCompletion.clear();
+    actions.forEach(Runnable::run);
+  }
+
+  private static void closeQuietly(Connection connection) {
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      // The pool discards connections it can't reset.
+    }
+  }
+
+  public static UnitOfWorkBuilder builder() {
+    return new UnitOfWorkBuilder();
+  }
+
+  public static class UnitOfWorkBuilder {
+
+    private long bookId = Books.DEFAULT_ID;
+    private Supplier<Connection> connectionSupplier = ConnectionFactory.INSTANCE::getConnection;
+    private Supplier<Connection> readConnectionSupplier;
+    private boolean primaryReads;
+    private Runnable writeListener = () -> {};
+
+    private UnitOfWorkBuilder() {}
+
+    /** Sets the book whose contacts are used. Defaults to {@link Books#DEFAULT_ID}. */
+    public UnitOfWorkBuilder withBookId(long bookId) {
+      this.bookId = bookId;
+      return this;
+    }
+
+    public UnitOfWorkBuilder withConnectionSupplier(Supplier<Connection> connectionSupplier) {
+      this.connectionSupplier =
+          Objects.requireNonNull(connectionSupplier, "Connection supplier is required.");
+      return this;
+    }
+
+    /**
+     * Sets where read connections are borrowed from. Defaults to {@link
+     * ConnectionFactory#getReadConnection()} when read replicas are configured; otherwise reads use
+     * the primary transaction.
+     */
+    public UnitOfWorkBuilder withReadConnectionSupplier(
+        Supplier<Connection> readConnectionSupplier) {
+      this.readConnectionSupplier =
+          Objects.requireNonNull(readConnectionSupplier, "Read connection supplier is required.");
+      return this;
+    }
+
+    /** Makes every read use the primary transaction, e.g. right after the client wrote. */
+    public UnitOfWorkBuilder withPrimaryReads(boolean primaryReads) {
+      this.primaryReads = primaryReads;
+      return this;
+    }
+
+    /**
+     * Sets an action run when a transaction first borrows its connection for writing and again when
+     * that transaction commits, to remember when the client last wrote.
+     */
+    public UnitOfWorkBuilder withWriteListener(Runnable writeListener) {
+      this.writeListener = Objects.requireNonNull(writeListener, "Write listener is required.");
+      return this;
+    }
+
+    public UnitOfWork build() {
+      return new UnitOfWork(this);
+    }
+
+    private Supplier<Connection> readConnectionSupplier() {
+      if (readConnectionSupplier != null) {
+        return readConnectionSupplier;
+      }
+      return ConnectionFactory.INSTANCE.hasReplicas()
+          ? ConnectionFactory.INSTANCE::getReadConnection
+          : null;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import com.angelocvti.contactsbook.model.Contact;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps, for each address book, the list of the birthdays of the next {@link
+ * Birthdays#DEFAULT_DAYS} days, the one the reminders ask for all day long. A book's list is
+ * computed on its first request of the day, the one of the {@link Books#DEFAULT_ID default book}
+ * when the application starts and right after every midnight, and is served as long as the revision
+ * of the contacts of the book is the one it was read at, so a change to the contacts is seen by the
+ * next request.
+ *
+ * @author Angelo Cavalcanti
+ */
+public enum UpcomingBirthdays {
+  INSTANCE;
+
+  private static final Logger LOGGER = Logger.getLogger(UpcomingBirthdays.class.getName());
+
+  private final Map<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Reads the contacts of the book of the unit of work whose birthday falls in the window of days
+   * starting at the given date, answering from the daily list when it is today's window and the
+   * contacts didn't change.
+   *
+   * @see Dao#findUpcomingBirthdays(LocalDate, int)
+   * @author Angelo Cavalcanti
+   */
+  public List<Contact> find(UnitOfWork unitOfWork, LocalDate from, int days) {
+    Dao<Contact> contactDao = unitOfWork.contacts();
+    int window = Birthdays.capDays(days);
+    LocalDate today = LocalDate.now();
+    if (!from.equals(today) || window != Birthdays.DEFAULT_DAYS) {
+      return contactDao.findUpcomingBirthdays(from, window);
+    }
+
+    long revision = contactDao.findRevision();
+    Snapshot current = snapshots.get(unitOfWork.getBookId());
+    if (current != null && current.date.equals(today) && current.revision == revision) {
+      return current.contacts;
+    }
+    List<Contact> contacts =
+        Collections.unmodifiableList(contactDao.findUpcomingBirthdays(today, window));
+    snapshots.put(unitOfWork.getBookId(), new Snapshot(today, revision, contacts));
+    return contacts;
+  }
+
+  /** Computes today's list now and schedules its computation after every midnight. */
+  public synchronized void start() {
+    if (scheduler == null) {
+      scheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              runnable -> {
+                Thread thread = new Thread(runnable, "contacts-book-birthdays");
+                thread.setDaemon(true);
+                return thread;
+              });
+      scheduler.execute(this::refresh);
+    }
+  }
+
+  public synchronized void shutdown() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+    snapshots.clear();
+  }
+
+  private void refresh() {
+    // Yesterday's lists are dropped, the other books compute theirs when asked.
+    snapshots.clear();
+    try (UnitOfWork unitOfWork = UnitOfWork.builder().build()) {
+      find(unitOfWork, LocalDate.now(), Birthdays.DEFAULT_DAYS);
+      unitOfWork.commit();
+    } catch (RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Computing the upcoming birthdays failed.", e);
+    } finally {
+      scheduleNextRefresh();
+    }
+  }
+
+  /** Schedules one run at a time, so the delay is recomputed across daylight saving changes. */
+  private synchronized void scheduleNextRefresh() {
+    if (scheduler != null && !scheduler.isShutdown()) {
+      ZonedDateTime now = ZonedDateTime.now();
+      ZonedDateTime midnight = now.toLocalDate().plusDays(1).atStartOfDay(now.getZone());
+      scheduler.schedule(
+          this::refresh, Duration.between(now, midnight).toMillis() + 1, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private static final class Snapshot {
+
+    private final LocalDate date;
+    private final long revision;
+    private final List<Contact> contacts;
+
+    private Snapshot(LocalDate date, long revision, List<Contact> contacts) {
+      this.date = date;
+      this.revision = revision;
+      this.contacts = contacts;
+    }
+  }
+}
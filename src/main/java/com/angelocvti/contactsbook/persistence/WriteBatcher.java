@@ -0,0 +1,516 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.persistence;
+
+import com.angelocvti.contactsbook.config.Environment;
+import com.angelocvti.contactsbook.exceptions.ContactConflictException;
+import com.angelocvti.contactsbook.exceptions.ContactNotFoundException;
+import com.angelocvti.contactsbook.exceptions.DaoException;
+import com.angelocvti.contactsbook.metrics.Metrics;
+import com.angelocvti.contactsbook.metrics.OperationMetrics;
+import com.angelocvti.contactsbook.model.Contact;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Group commit for the single contact writes. Concurrent inserts, updates and deletes are queued
+ * and flushed together, in one transaction on one connection, so a burst of writes pays for one
+ * commit instead of one each. A flush takes whatever is queued, up to WRITE_BATCH_MAX_SIZE writes,
+ * waiting up to WRITE_BATCH_MAX_DELAY_MS for more when the batch isn't full. Batching is off unless
+ * WRITE_BATCH_MAX_SIZE is greater than one.
+ *
+ * <p>The inserts of a batch run as a single statement over arrays of values, the updates as one
+ * JDBC batch and the deletes as a single statement per address book, so the writes of every book
+ * share the batch while each delete is still pruned to the partition of its book. If any of them
+ * fails the transaction is rolled back and the writes are run again one by one, each behind a
+ * savepoint, so a write that fails, e.g. on a duplicated email, fails alone. Every caller gets the
+ * outcome of its own write through its future, completed once the batch is committed. The listeners
+ * hear of the committed writes before any caller does, so what they keep about the contacts, such
+ * as a cache, is up to date by the time a writer returns.
+ *
+ * <p>The flusher writes through a connection of its own, opened outside the pool and kept open
+ * between batches, so the database gets one connection more than the pool holds. A request waiting
+ * for its write may hold a pooled connection meanwhile, and if every connection of the pool were
+ * held that way a flusher borrowing from it would wait for one until the acquire timeout, failing
+ * the batch. A connection that fails is closed, and the next batch opens another one.
+ *
+ * @author Angelo Cavalcanti
+ */
+public enum WriteBatcher {
+  INSTANCE;
+
+  private static final Logger LOGGER = Logger.getLogger(WriteBatcher.class.getName());
+
+  private static final String INSERT_ALL =
+      "INSERT INTO contacts (book_id, name, email, address, birthdate)"
+          + " SELECT book_id, name, email, address, birthdate"
+          + " FROM unnest(?, ?, ?, ?, CAST(? AS date[])) WITH ORDINALITY"
+          + " AS batch (book_id, name, email, address, birthdate, position)"
+          + " ORDER BY position"
+          + " ON CONFLICT (book_id, (lower(email))) DO NOTHING RETURNING id, book_id, email";
+
+  private static final String UPDATE =
+      "UPDATE contacts SET name = ?, email = ?, address = ?, birthdate = ?,"
+          + " version = version + 1 WHERE book_id = ? AND id = ?";
+
+  private static final String DELETE_ALL =
+      "DELETE FROM contacts WHERE book_id = ? AND id = ANY(?) RETURNING id";
+
+  private final int maxSize = Environment.getInt("WRITE_BATCH_MAX_SIZE", 0);
+  private final long maxDelayNanos =
+      TimeUnit.MILLISECONDS.toNanos(Environment.getLong("WRITE_BATCH_MAX_DELAY_MS", 1));
+  private final BlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  private Thread flusher;
+  private volatile boolean stopped;
+
+  /** Only used by the flusher thread. */
+  private Connection connection;
+
+  /** Listener of the writes committed by the flusher. */
+  public interface Listener {
+
+    /**
+     * Called on the flusher thread once the write is committed, before its caller is told.
+     *
+     * @param bookId The book of the contact written.
+     * @param contactId The id of the contact inserted, updated or deleted.
+     * @param contact The contact as written, null for a delete.
+     */
+    void onCommit(long bookId, Long contactId, Contact contact);
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 1;
+  }
+
+  /** Tells the listener of every write committed from now on. */
+  public void addListener(Listener listener) {
+    listeners.add(Objects.requireNonNull(listener, "Listener is required."));
+  }
+
+  /**
+   * Queues the insert of a contact into the given book.
+   *
+   * @return future of the id assigned to the contact, failed with a {@link
+   *     com.angelocvti.contactsbook.exceptions.DuplicateEmailException DuplicateEmailException} if
+   *     the e-Mail is already in use in the book.
+   * @author Angelo Cavalcanti
+   */
+  public CompletableFuture<Long> insert(long bookId, Contact contact) {
+    return submit(new Write(Kind.INSERT, bookId, null, contact));
+  }
+
+  /**
+   * Queues the update of a contact of the given book, with the same semantics as {@link
+   * ContactDao#update(Long, Contact)}.
+   *
+   * @return future completed once the update is committed, or failed with the exception the update
+   *     threw.
+   * @author Angelo Cavalcanti
+   */
+  public CompletableFuture<Void> update(long bookId, Long id, Contact contact) {
+    return submit(new Write(Kind.UPDATE, bookId, id, contact)).thenApply(ignored -> null);
+  }
+
+  /**
+   * Queues the delete of a contact of the given book.
+   *
+   * @return future completed once the delete is committed, or failed with a {@link
+   *     com.angelocvti.contactsbook.exceptions.ContactNotFoundException ContactNotFoundException}.
+   * @author Angelo Cavalcanti
+   */
+  public CompletableFuture<Void> delete(long bookId, Long id) {
+    return submit(new Write(Kind.DELETE, bookId, id, null)).thenApply(ignored -> null);
+  }
+
+  /** Stops the flusher, failing the writes still queued. */
+  public synchronized void shutdown() {
+    stopped = true;
+    if (flusher != null) {
+      flusher.interrupt();
+      try {
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      flusher = null;
+    }
+    failQueued();
+  }
+
+  private CompletableFuture<Long> submit(Write write) {
+    if (!isEnabled()) {
+      throw new IllegalStateException("Write batching is disabled.");
+    }
+    start();
+    queue.add(write);
+    if (stopped) {
+      failQueued();
+    }
+    return write.future;
+  }
+
+  private synchronized void start() {
+    if (flusher == null && !stopped) {
+      flusher = new Thread(this::flushLoop, "contacts-book-write-batcher");
+      flusher.setDaemon(true);
+      flusher.start();
+    }
+  }
+
+  private void flushLoop() {
+    try {
+      while (!stopped) {
+        List<Write> batch;
+        try {
+          batch = nextBatch();
+        } catch (InterruptedException e) {
+          break;
+        }
+        flush(batch);
+      }
+    } finally {
+      closeConnection();
+    }
+  }
+
+  /** Waits for a write, then collects the writes that follow it within the delay. */
+  private List<Write> nextBatch() throws InterruptedException {
+    List<Write> batch = new ArrayList<>(maxSize);
+    batch.add(queue.take());
+    queue.drainTo(batch, maxSize - batch.size());
+    long deadline = System.nanoTime() + maxDelayNanos;
+    while (batch.size() < maxSize) {
+      long remaining = deadline - System.nanoTime();
+      Write next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+      if (next == null) {
+        break;
+      }
+      batch.add(next);
+      queue.drainTo(batch, maxSize - batch.size());
+    }
+    return batch;
+  }
+
+  private void flush(List<Write> batch) {
+    OperationMetrics metrics = Metrics.INSTANCE.dao("writeBatch");
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      Connection connection = connection();
+      try {
+        runBatched(connection, batch);
+        connection.commit();
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        LOGGER.log(Level.FINE, "Batched writes failed, running them one by one.", e);
+        runOneByOne(connection, batch);
+        connection.commit();
+      }
+      batch.forEach(this::notifyListeners);
+      batch.forEach(Write::complete);
+      failed = false;
+    } catch (SQLException | RuntimeException e) {
+      closeConnection();
+      DaoException failure = e instanceof DaoException ? (DaoException) e : new DaoException(e);
+      batch.forEach(write -> write.future.completeExceptionally(failure));
+    } finally {
+      metrics.addRows(batch.size());
+      metrics.record(System.nanoTime() - start, failed);
+    }
+  }
+
+  private void notifyListeners(Write write) {
+    if (write.failure != null) {
+      return;
+    }
+    Long contactId = write.kind == Kind.INSERT ? write.result : write.id;
+    for (Listener listener : listeners) {
+      try {
+        listener.onCommit(write.bookId, contactId, write.contact);
+      } catch (RuntimeException e) {
+        LOGGER.log(Level.WARNING, "A listener of the committed writes failed.", e);
+      }
+    }
+  }
+
+  private Connection connection() throws SQLException {
+    if (connection == null) {
+      connection = ConnectionFactory.INSTANCE.openConnection();
+      connection.setAutoCommit(false);
+    }
+    return connection;
+  }
+
+  private void closeConnection() {
+    if (connection != null) {
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        LOGGER.log(Level.FINE, "Closing the connection of the write batcher failed.", e);
+      }
+      connection = null;
+    }
+  }
+
+  private void runBatched(Connection connection, List<Write> batch) throws SQLException {
+    List<Write> inserts = new ArrayList<>();
+    List<Write> updates = new ArrayList<>();
+    List<Write> deletes = new ArrayList<>();
+    for (Write write : batch) {
+      write.reset();
+      if (write.kind == Kind.INSERT) {
+        inserts.add(write);
+      } else if (write.kind == Kind.UPDATE) {
+        updates.add(write);
+      } else {
+        deletes.add(write);
+      }
+    }
+    insertAll(connection, inserts);
+    updateAll(connection, updates);
+    deleteAll(connection, deletes);
+  }
+
+  private static void insertAll(Connection connection, List<Write> inserts) throws SQLException {
+    if (inserts.isEmpty()) {
+      return;
+    }
+    int size = inserts.size();
+    Long[] bookIds = new Long[size];
+    String[] names = new String[size];
+    String[] emails = new String[size];
+    String[] addresses = new String[size];
+    String[] birthdates = new String[size];
+    for (int i = 0; i < size; i++) {
+      Contact contact = inserts.get(i).contact;
+      bookIds[i] = inserts.get(i).bookId;
+      names[i] = contact.getName();
+      emails[i] = contact.getEmail();
+      addresses[i] = contact.getAddress();
+      birthdates[i] = contact.getBirthdate() == null ? null : contact.getBirthdate().toString();
+    }
+
+    Map<String, Long> inserted = new HashMap<>();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_ALL)) {
+      preparedStatement.setArray(1, connection.createArrayOf("bigint", bookIds));
+      preparedStatement.setArray(2, connection.createArrayOf("varchar", names));
+      preparedStatement.setArray(3, connection.createArrayOf("varchar", emails));
+      preparedStatement.setArray(4, connection.createArrayOf("varchar", addresses));
+      preparedStatement.setArray(5, connection.createArrayOf("varchar", birthdates));
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          inserted.put(
+              resultSet.getLong("book_id") + " " + resultSet.getString("email"),
+              resultSet.getLong("id"));
+        }
+      }
+    }
+    // Only the first of the contacts of a book sharing an e-Mail was inserted, the rows went in by
+    // position.
+    for (Write write : inserts) {
+      Long id = inserted.remove(write.bookId + " " + write.contact.getEmail());
+      if (id != null) {
+        write.result = id;
+      } else {
+        write.failure = ContactDao.duplicateEmail(write.contact);
+      }
+    }
+  }
+
+  private static void updateAll(Connection connection, List<Write> updates) throws SQLException {
+    List<Write> unversioned = new ArrayList<>();
+    List<Write> versioned = new ArrayList<>();
+    for (Write write : updates) {
+      (write.contact.getVersion() == null ? unversioned : versioned).add(write);
+    }
+
+    List<Write> unmatched = new ArrayList<>();
+    executeUpdates(connection, UPDATE, unversioned, unmatched);
+    executeUpdates(connection, UPDATE + " AND version = ?", versioned, unmatched);
+
+    // Tell a missing contact from a stale version, which doesn't abort the transaction; anything
+    // else sends the batch to the one by one path.
+    for (Write write : unmatched) {
+      run(connection, write);
+      if (write.failure != null
+          && !(write.failure instanceof ContactNotFoundException
+              || write.failure instanceof ContactConflictException)) {
+        throw write.failure;
+      }
+    }
+  }
+
+  private static void executeUpdates(
+      Connection connection, String sql, List<Write> updates, List<Write> unmatched)
+      throws SQLException {
+    if (updates.isEmpty()) {
+      return;
+    }
+    try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+      for (Write write : updates) {
+        Contact contact = write.contact;
+        preparedStatement.setString(1, contact.getName());
+        preparedStatement.setString(2, contact.getEmail());
+        preparedStatement.setString(3, contact.getAddress());
+        preparedStatement.setObject(4, contact.getBirthdate());
+        preparedStatement.setLong(5, write.bookId);
+        preparedStatement.setLong(6, write.id);
+        if (contact.getVersion() != null) {
+          preparedStatement.setInt(7, contact.getVersion());
+        }
+        preparedStatement.addBatch();
+      }
+      int[] updateCounts = preparedStatement.executeBatch();
+      for (int i = 0; i < updateCounts.length; i++) {
+        if (updateCounts[i] == 0) {
+          unmatched.add(updates.get(i));
+        }
+      }
+    }
+  }
+
+  private static void deleteAll(Connection connection, List<Write> deletes) throws SQLException {
+    if (deletes.isEmpty()) {
+      return;
+    }
+    Map<Long, List<Write>> byBook = new LinkedHashMap<>();
+    for (Write write : deletes) {
+      byBook.computeIfAbsent(write.bookId, bookId -> new ArrayList<>()).add(write);
+    }
+    List<Long> deleted = new ArrayList<>();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(DELETE_ALL)) {
+      for (Map.Entry<Long, List<Write>> book : byBook.entrySet()) {
+        Long[] ids = book.getValue().stream().map(write -> write.id).toArray(Long[]::new);
+        preparedStatement.setLong(1, book.getKey());
+        preparedStatement.setArray(2, connection.createArrayOf("bigint", ids));
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+          while (resultSet.next()) {
+            deleted.add(resultSet.getLong(1));
+          }
+        }
+      }
+    }
+    // The same contact deleted twice in a batch is only found by the first delete.
+    for (Write write : deletes) {
+      if (!deleted.remove(write.id)) {
+        write.failure = new ContactNotFoundException("No contact was found.");
+      }
+    }
+  }
+
+  private static void runOneByOne(Connection connection, List<Write> batch) throws SQLException {
+    for (Write write : batch) {
+      write.reset();
+      Savepoint savepoint = connection.setSavepoint();
+      run(connection, write);
+      if (write.failure == null) {
+        connection.releaseSavepoint(savepoint);
+      } else {
+        connection.rollback(savepoint);
+      }
+    }
+  }
+
+  private static void run(Connection connection, Write write) {
+    ContactDao contactDao =
+        ContactDao.builder().withBookId(write.bookId).withConnection(connection).build();
+    try {
+      if (write.kind == Kind.INSERT) {
+        write.result = contactDao.insertAndGetId(write.contact);
+      } else if (write.kind == Kind.UPDATE) {
+        contactDao.update(write.id, write.contact);
+      } else {
+        contactDao.delete(write.id);
+      }
+    } catch (RuntimeException e) {
+      write.failure = e;
+    }
+  }
+
+  private void failQueued() {
+    Write write;
+    while ((write = queue.poll()) != null) {
+      write.future.completeExceptionally(new DaoException("The write batcher is shut down."));
+    }
+  }
+
+  private enum Kind {
+    INSERT,
+    UPDATE,
+    DELETE
+  }
+
+  /** A queued write with the outcome it had in the current attempt to flush it. */
+  private static final class Write {
+
+    private final Kind kind;
+    private final long bookId;
+    private final Long id;
+    private final Contact contact;
+    private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+    private Long result;
+    private RuntimeException failure;
+
+    private Write(Kind kind, long bookId, Long id, Contact contact) {
+      this.kind = kind;
+      this.bookId = bookId;
+      this.id = id;
+      this.contact = contact;
+    }
+
+    private void reset() {
+      result = null;
+      failure = null;
+    }
+
+    private void complete() {
+      if (failure == null) {
+        future.complete(result);
+      } else {
+        future.completeExceptionally(failure);
+      }
+    }
+  }
+}
@@ -24,48 +24,73 @@
 
 package com.angelocvti.contactsbook.servlet;
 
+import com.angelocvti.contactsbook.format.ContactFormats;
 import com.angelocvti.contactsbook.model.Contact;
-import com.angelocvti.contactsbook.persistence.ConnectionFactory;
-import com.angelocvti.contactsbook.persistence.ContactDao;
+import com.angelocvti.contactsbook.persistence.UnitOfWork;
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** @author Angelo Cavalcanti */
+/**
+ * Adds the contact of the form and redirects to the list, or, when the request accepts JSON,
+ * answers 201 with the contact created.
+ *
+ * @author Angelo Cavalcanti
+ */
 @WebServlet(
     name = "AddContact",
-    urlPatterns = {"/addContact"})
+    urlPatterns = {"/addContact"},
+    asyncSupported = true)
 public class AddContactServlet extends HttpServlet {
 
   @Override
   protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    AsyncRequests.dispatch(request, response, AddContactServlet::add);
+  }
+
+  private static String add(HttpServletRequest request, HttpServletResponse response)
       throws IOException {
-    Calendar birthdate;
+    LocalDate birthdate;
     try {
-      Date date = new SimpleDateFormat("dd/MM/yyyy").parse(request.getParameter("birthdate"));
-      birthdate = Calendar.getInstance();
-      birthdate.setTime(date);
-    } catch (ParseException e) {
-      return;
+      birthdate =
+          LocalDate.parse(request.getParameter("birthdate"), ContactFormats.BIRTHDATE_FORMATTER);
+    } catch (DateTimeParseException e) {
+      if (ContactsApiServlet.acceptsJson(request)) {
+        ContactsApiServlet.writeError(
+            response, HttpServletResponse.SC_BAD_REQUEST, "The birthdate must be like 31/12/1990.");
+      }
+      return null;
     }
 
-    ContactDao.builder()
-        .withConnection(ConnectionFactory.INSTANCE.getConnection())
-        .build()
-        .insert(
-            Contact.builder()
-                .withName(request.getParameter("name"))
-                .withEmail(request.getParameter("email"))
-                .withAddress(request.getParameter("address"))
-                .withBirthdate(birthdate)
-                .build());
+    UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+    Contact.ContactBuilder contact =
+        Contact.builder()
+            .withName(request.getParameter("name"))
+            .withEmail(request.getParameter("email"))
+            .withAddress(request.getParameter("address"))
+            .withBirthdate(birthdate);
+    if (!ContactsApiServlet.acceptsJson(request)) {
+      unitOfWork.contacts().insert(contact.build());
+      unitOfWork.commit();
+      response.sendRedirect(request.getContextPath() + "/listContact");
+      return null;
+    }
 
-    response.sendRedirect(request.getContextPath() + "/listContact");
+    try {
+      Long id = unitOfWork.contacts().insertAndGetId(contact.build());
+      unitOfWork.commit();
+      response.setStatus(HttpServletResponse.SC_CREATED);
+      response.setHeader("Location", request.getContextPath() + "/api/contacts/" + id);
+      ContactsApiServlet.writeContact(response, contact.withId(id).withVersion(0).build());
+    } catch (RuntimeException e) {
+      ContactsApiServlet.sendError(unitOfWork, response, e);
+    }
+    return null;
   }
 }
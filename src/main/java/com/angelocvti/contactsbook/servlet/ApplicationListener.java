@@ -0,0 +1,73 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import com.angelocvti.contactsbook.dedup.Deduplication;
+import com.angelocvti.contactsbook.persistence.ConnectionFactory;
+import com.angelocvti.contactsbook.persistence.ContactChanges;
+import com.angelocvti.contactsbook.persistence.DatabaseExecutor;
+import com.angelocvti.contactsbook.persistence.UpcomingBirthdays;
+import com.angelocvti.contactsbook.persistence.WriteBatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Publishes the application wide attributes used by the JSPs (the fingerprinted URLs of the static
+ * assets, by path) and releases the application resources when the web application is stopped or
+ * redeployed. Starts the daily computation of the upcoming birthdays.
+ *
+ * @author Angelo Cavalcanti
+ */
+@WebListener
+public class ApplicationListener implements ServletContextListener {
+
+  private static final String STATIC_ASSETS = StaticAssets.class.getName();
+
+  static StaticAssets staticAssets(ServletContext context) {
+    return (StaticAssets) context.getAttribute(STATIC_ASSETS);
+  }
+
+  @Override
+  public void contextInitialized(ServletContextEvent event) {
+    ServletContext context = event.getServletContext();
+    StaticAssets assets = StaticAssets.scan(context);
+    context.setAttribute(STATIC_ASSETS, assets);
+    context.setAttribute("assets", assets.getUrls());
+
+    UpcomingBirthdays.INSTANCE.start();
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent event) {
+    UpcomingBirthdays.INSTANCE.shutdown();
+    Deduplication.INSTANCE.shutdown();
+    ContactChanges.INSTANCE.shutdown();
+    DatabaseExecutor.INSTANCE.shutdown();
+    WriteBatcher.INSTANCE.shutdown();
+    ConnectionFactory.INSTANCE.shutdown();
+  }
+}
@@ -0,0 +1,532 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import com.angelocvti.contactsbook.config.Environment;
+import com.angelocvti.contactsbook.persistence.DatabaseExecutor;
+import com.angelocvti.contactsbook.persistence.UnitOfWork;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Hands the handling of a request over to the {@link
+ * com.angelocvti.contactsbook.persistence.DatabaseExecutor DatabaseExecutor}, releasing the
+ * container thread while the database work runs. The servlets and filters in the chain must support
+ * asynchronous processing.
+ *
+ * <p>The unit of work of the request is committed when the handler returns and always closed on the
+ * database thread. A request that can't be queued, or that is still queued when the timeout set by
+ * ASYNC_REQUEST_TIMEOUT_MS expires, is answered 503 with a Retry-After of
+ * ASYNC_RETRY_AFTER_SECONDS, so an overloaded application sheds load instead of queueing it.
+ *
+ * <p>A request whose handler is still running when the timeout expires is answered 503 too, unless
+ * its response was already committed, and completed right away, so no container thread waits for
+ * the handler. The handler writes through a wrapper that the timeout detaches from the response:
+ * from then on what it writes is dropped, and when it returns what it left uncommitted is rolled
+ * back and its result ignored. The handlers that commit before writing their response may still
+ * commit after the timeout, so a 503 doesn't tell the client that nothing was written. A handler
+ * that already returned when the timeout expires is waited for, as it is only committing and
+ * handing the response over.
+ *
+ * @author Angelo Cavalcanti
+ */
+final class AsyncRequests {
+
+  private static final long TIMEOUT_MILLIS =
+      Environment.getLong("ASYNC_REQUEST_TIMEOUT_MS", 30_000);
+  private static final int RETRY_AFTER_SECONDS = Environment.getInt("ASYNC_RETRY_AFTER_SECONDS", 1);
+  private static final String FAILURE = AsyncRequests.class.getName() + ".failure";
+
+  private static final int QUEUED = 0;
+  private static final int RUNNING = 1;
+  private static final int FINISHING = 2;
+  private static final int DONE = 3;
+
+  /** Handles a request on a database thread. */
+  @FunctionalInterface
+  interface Handler {
+
+    /**
+     * @return the path to dispatch the request to, for a JSP to render the response, or null if the
+     *     handler has written the response itself.
+     */
+    String handle(HttpServletRequest request, HttpServletResponse response) throws IOException;
+  }
+
+  private AsyncRequests() {}
+
+  static void dispatch(HttpServletRequest request, HttpServletResponse response, Handler handler)
+      throws ServletException {
+    Throwable failure = (Throwable) request.getAttribute(FAILURE);
+    if (failure != null) {
+      request.removeAttribute(FAILURE);
+      // The container unwraps the cause to find the error page and expose the exception to it.
+      throw new ServletException(failure);
+    }
+
+    UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+    AsyncContext asyncContext = request.startAsync(request, response);
+    asyncContext.setTimeout(TIMEOUT_MILLIS);
+
+    AtomicInteger state = new AtomicInteger(QUEUED);
+    CountDownLatch finished = new CountDownLatch(1);
+    DetachableResponse handlerResponse = new DetachableResponse(response);
+    asyncContext.addListener(
+        new AsyncListener() {
+          @Override
+          public void onTimeout(AsyncEvent event) {
+            int previous = state.getAndUpdate(current -> current == FINISHING ? FINISHING : DONE);
+            if (previous == FINISHING) {
+              awaitUninterruptibly(finished);
+              return;
+            }
+            if (previous == DONE) {
+              return;
+            }
+            // Waits for a write in progress at most, never for the handler.
+            handlerResponse.detach();
+            if (!response.isCommitted()) {
+              response.reset();
+              unavailable(response);
+            }
+            asyncContext.complete();
+          }
+
+          @Override
+          public void onComplete(AsyncEvent event) {}
+
+          @Override
+          public void onError(AsyncEvent event) {}
+
+          @Override
+          public void onStartAsync(AsyncEvent event) {}
+        });
+
+    try {
+      DatabaseExecutor.INSTANCE.execute(
+          () ->
+              run(
+                  request,
+                  response,
+                  handlerResponse,
+                  handler,
+                  unitOfWork,
+                  asyncContext,
+                  state,
+                  finished));
+    } catch (RejectedExecutionException e) {
+      state.set(DONE);
+      unitOfWork.close();
+      unavailable(response);
+      asyncContext.complete();
+    }
+  }
+
+  private static void run(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      HttpServletResponse handlerResponse,
+      Handler handler,
+      UnitOfWork unitOfWork,
+      AsyncContext asyncContext,
+      AtomicInteger state,
+      CountDownLatch finished) {
+    if (!state.compareAndSet(QUEUED, RUNNING)) {
+      unitOfWork.close();
+      return;
+    }
+    String path = null;
+    Throwable failure = null;
+    try {
+      path = handler.handle(request, handlerResponse);
+    } catch (Throwable e) {
+      failure = e;
+    }
+    if (!state.compareAndSet(RUNNING, FINISHING)) {
+      // Answered 503 meanwhile, and maybe already serving another request: the uncommitted work is
+      // rolled back and the result dropped.
+      unitOfWork.close();
+      return;
+    }
+
+    try {
+      if (failure == null) {
+        try {
+          unitOfWork.commit();
+        } catch (Throwable e) {
+          failure = e;
+        }
+      }
+      try {
+        unitOfWork.close();
+      } catch (RuntimeException e) {
+        failure = failure == null ? e : failure;
+      }
+
+      if (failure != null) {
+        dispatchError(request, response, asyncContext, failure);
+      } else if (path != null) {
+        asyncContext.dispatch(path);
+      } else {
+        complete(response, asyncContext);
+      }
+    } finally {
+      state.set(DONE);
+      finished.countDown();
+    }
+  }
+
+  /**
+   * Dispatches the request back to its servlet to rethrow the failure on a container thread, so the
+   * error page configured for it is rendered as for a synchronous request.
+   */
+  private static void dispatchError(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      AsyncContext asyncContext,
+      Throwable failure) {
+    if (response.isCommitted()) {
+      request.getServletContext().log("Error handling " + request.getRequestURI(), failure);
+      complete(response, asyncContext);
+      return;
+    }
+    response.reset();
+    request.setAttribute(FAILURE, failure);
+    asyncContext.dispatch();
+  }
+
+  /** Completes a request whose response was written by its handler. */
+  private static void complete(HttpServletResponse response, AsyncContext asyncContext) {
+    try {
+      CompressionFilter.finish(response);
+    } catch (IOException e) {
+      // The client went away, there is nobody left to send the rest of the body to.
+    } finally {
+      asyncContext.complete();
+    }
+  }
+
+  private static void unavailable(HttpServletResponse response) {
+    response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    response.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        latch.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * The response a handler writes to, until the timeout detaches it: from then on the writes and
+   * header changes are dropped. Every change holds the wrapper's lock, so detaching waits for the
+   * one in progress, if any, and nothing reaches the response afterwards.
+   */
+  private static final class DetachableResponse extends HttpServletResponseWrapper {
+
+    private boolean detached;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    private DetachableResponse(HttpServletResponse response) {
+      super(response);
+    }
+
+    private synchronized void detach() {
+      detached = true;
+    }
+
+    @Override
+    public synchronized ServletOutputStream getOutputStream() throws IOException {
+      if (outputStream == null) {
+        outputStream = new DetachableOutputStream(super.getOutputStream());
+      }
+      return outputStream;
+    }
+
+    @Override
+    public synchronized PrintWriter getWriter() throws IOException {
+      if (writer == null) {
+        writer = new PrintWriter(new DetachableWriter(super.getWriter()));
+      }
+      return writer;
+    }
+
+    @Override
+    public synchronized void addCookie(Cookie cookie) {
+      if (!detached) {
+        super.addCookie(cookie);
+      }
+    }
+
+    @Override
+    public synchronized void sendError(int status, String message) throws IOException {
+      if (!detached) {
+        super.sendError(status, message);
+      }
+    }
+
+    @Override
+    public synchronized void sendError(int status) throws IOException {
+      if (!detached) {
+        super.sendError(status);
+      }
+    }
+
+    @Override
+    public synchronized void sendRedirect(String location) throws IOException {
+      if (!detached) {
+        super.sendRedirect(location);
+      }
+    }
+
+    @Override
+    public synchronized void setDateHeader(String name, long date) {
+      if (!detached) {
+        super.setDateHeader(name, date);
+      }
+    }
+
+    @Override
+    public synchronized void addDateHeader(String name, long date) {
+      if (!detached) {
+        super.addDateHeader(name, date);
+      }
+    }
+
+    @Override
+    public synchronized void setHeader(String name, String value) {
+      if (!detached) {
+        super.setHeader(name, value);
+      }
+    }
+
+    @Override
+    public synchronized void addHeader(String name, String value) {
+      if (!detached) {
+        super.addHeader(name, value);
+      }
+    }
+
+    @Override
+    public synchronized void setIntHeader(String name, int value) {
+      if (!detached) {
+        super.setIntHeader(name, value);
+      }
+    }
+
+    @Override
+    public synchronized void addIntHeader(String name, int value) {
+      if (!detached) {
+        super.addIntHeader(name, value);
+      }
+    }
+
+    @Override
+    public synchronized void setStatus(int status) {
+      if (!detached) {
+        super.setStatus(status);
+      }
+    }
+
+    @Override
+    public synchronized void setCharacterEncoding(String charset) {
+      if (!detached) {
+        super.setCharacterEncoding(charset);
+      }
+    }
+
+    @Override
+    public synchronized void setContentLength(int length) {
+      if (!detached) {
+        super.setContentLength(length);
+      }
+    }
+
+    @Override
+    public synchronized void setContentLengthLong(long length) {
+      if (!detached) {
+        super.setContentLengthLong(length);
+      }
+    }
+
+    @Override
+    public synchronized void setContentType(String type) {
+      if (!detached) {
+        super.setContentType(type);
+      }
+    }
+
+    @Override
+    public synchronized void setBufferSize(int size) {
+      if (!detached) {
+        super.setBufferSize(size);
+      }
+    }
+
+    @Override
+    public synchronized void flushBuffer() throws IOException {
+      if (!detached) {
+        super.flushBuffer();
+      }
+    }
+
+    @Override
+    public synchronized void resetBuffer() {
+      if (!detached) {
+        super.resetBuffer();
+      }
+    }
+
+    @Override
+    public synchronized void reset() {
+      if (!detached) {
+        super.reset();
+      }
+    }
+
+    @Override
+    public synchronized void setLocale(Locale locale) {
+      if (!detached) {
+        super.setLocale(locale);
+      }
+    }
+
+    private final class DetachableOutputStream extends ServletOutputStream {
+
+      private final ServletOutputStream target;
+
+      private DetachableOutputStream(ServletOutputStream target) {
+        this.target = target;
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+        synchronized (DetachableResponse.this) {
+          if (!detached) {
+            target.write(b);
+          }
+        }
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        synchronized (DetachableResponse.this) {
+          if (!detached) {
+            target.write(b, off, len);
+          }
+        }
+      }
+
+      @Override
+      public void flush() throws IOException {
+        synchronized (DetachableResponse.this) {
+          if (!detached) {
+            target.flush();
+          }
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        synchronized (DetachableResponse.this) {
+          if (!detached) {
+            target.close();
+          }
+        }
+      }
+
+      @Override
+      public boolean isReady() {
+        return target.isReady();
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        target.setWriteListener(writeListener);
+      }
+    }
+
+    private final class DetachableWriter extends Writer {
+
+      private final Writer target;
+
+      private DetachableWriter(Writer target) {
+        this.target = target;
+      }
+
+      @Override
+      public void write(char[] buffer, int offset, int length) throws IOException {
+        synchronized (DetachableResponse.this) {
+          if (!detached) {
+            target.write(buffer, offset, length);
+          }
+        }
+      }
+
+      @Override
+      public void flush() throws IOException {
+        synchronized (DetachableResponse.this) {
+          if (!detached) {
+            target.flush();
+          }
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        synchronized (DetachableResponse.this) {
+          if (!detached) {
+            target.close();
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import com.angelocvti.contactsbook.format.ContactFormats;
+import com.angelocvti.contactsbook.format.JsonWriter;
+import com.angelocvti.contactsbook.model.Contact;
+import com.angelocvti.contactsbook.persistence.Birthdays;
+import com.angelocvti.contactsbook.persistence.UnitOfWork;
+import com.angelocvti.contactsbook.persistence.UpcomingBirthdays;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * JSON API of the birthday reminders: GET /api/birthdays?from=&amp;days= lists the contacts whose
+ * birthday falls in the window of days (7 by default, at most 365) starting at the ISO date 'from'
+ * (today by default), in the order of their birthdays:
+ *
+ * <pre>
+ * {"from":"2020-12-28","days":7,"birthdays":[{"date":"2020-12-30","age":30,"contact":{...}}]}
+ * </pre>
+ *
+ * @author Angelo Cavalcanti
+ */
+@WebServlet(
+    name = "BirthdaysApi",
+    urlPatterns = {"/api/birthdays"},
+    asyncSupported = true)
+public class BirthdaysApiServlet extends HttpServlet {
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    AsyncRequests.dispatch(request, response, BirthdaysApiServlet::list);
+  }
+
+  private static String list(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    LocalDate from;
+    int days;
+    try {
+      String fromParameter = request.getParameter("from");
+      String daysParameter = request.getParameter("days");
+      from = fromParameter == null ? LocalDate.now() : LocalDate.parse(fromParameter);
+      days = Birthdays.capDays(daysParameter == null ? null : Integer.valueOf(daysParameter));
+    } catch (DateTimeParseException | NumberFormatException e) {
+      ContactsApiServlet.writeError(
+          response, HttpServletResponse.SC_BAD_REQUEST, "Invalid 'from' or 'days' parameter.");
+      return null;
+    }
+
+    UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+    List<Contact> contacts = UpcomingBirthdays.INSTANCE.find(unitOfWork, from, days);
+    unitOfWork.commit();
+
+    response.setHeader("Cache-Control", "no-cache");
+    JsonWriter jsonWriter = new JsonWriter(ContactsApiServlet.openJson(response));
+    jsonWriter
+        .beginObject()
+        .name("from")
+        .value(from.toString())
+        .name("days")
+        .value(days)
+        .name("birthdays")
+        .beginArray();
+    for (Contact contact : contacts) {
+      LocalDate birthday = Birthdays.nextBirthday(contact.getBirthdate(), from);
+      jsonWriter
+          .beginObject()
+          .name("date")
+          .value(birthday.toString())
+          .name("age")
+          .value(birthday.getYear() - contact.getBirthdate().getYear());
+      ContactFormats.writeJson(jsonWriter.name("contact"), contact);
+      jsonWriter.endObject();
+    }
+    jsonWriter.endArray().endObject().flush();
+    return null;
+  }
+}
@@ -0,0 +1,356 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Compresses the text responses (pages, style sheets, scripts, JSON and CSV) with gzip for the
+ * clients that accept it. Whether to compress is decided when the body starts to be written, once
+ * the content type is known, so responses without a body, already encoded, binary or shorter than
+ * {@value #MIN_LENGTH} bytes are sent as they are. A strong ETag is made weak when the body is
+ * compressed, as the compressed bytes differ from the ones it was computed from.
+ *
+ * <p>An asynchronous request is finished by the ASYNC dispatch that renders it, or by {@link
+ * #finish(ServletResponse)} when it is completed without one. A body written without blocking, once
+ * a {@link WriteListener} is set, is sent as it is: the compressor can turn one write into several,
+ * and the container refuses a write while the previous one is pending. The listener and {@link
+ * ServletOutputStream#isReady()} are the container's own.
+ *
+ * @author Angelo Cavalcanti
+ */
+public class CompressionFilter extends HttpFilter {
+
+  private static final int MIN_LENGTH = 1024;
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Writes what is left of the compressed body of the response, if it was compressed by this
+   * filter.
+   *
+   * @author Angelo Cavalcanti
+   */
+  static void finish(ServletResponse response) throws IOException {
+    CompressingResponse compressing = unwrap(response);
+    if (compressing != null) {
+      compressing.finish();
+    }
+  }
+
+  @Override
+  protected void doFilter(
+      HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    CompressingResponse compressing = unwrap(response);
+    if (compressing == null) {
+      compressing = new CompressingResponse(response, acceptsGzip(request));
+      response = compressing;
+    }
+    chain.doFilter(request, response);
+    if (!request.isAsyncStarted()) {
+      compressing.finish();
+    }
+  }
+
+  private static CompressingResponse unwrap(ServletResponse response) {
+    while (response instanceof ServletResponseWrapper) {
+      if (response instanceof CompressingResponse) {
+        return (CompressingResponse) response;
+      }
+      response = ((ServletResponseWrapper) response).getResponse();
+    }
+    return null;
+  }
+
+  /** True if Accept-Encoding lists gzip, or *, with a quality other than zero. */
+  private static boolean acceptsGzip(HttpServletRequest request) {
+    String acceptEncoding = request.getHeader("Accept-Encoding");
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parameters = coding.split(";");
+      String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+      if (name.equals("gzip") || name.equals("x-gzip") || name.equals("*")) {
+        for (int i = 1; i < parameters.length; i++) {
+          String parameter = parameters[i].trim().toLowerCase(Locale.ROOT);
+          if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+            return false;
+          }
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isCompressible(String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+    String type = contentType.toLowerCase(Locale.ROOT);
+    return (type.startsWith("text/") && !type.startsWith("text/event-stream"))
+        || type.startsWith("application/json")
+        || type.startsWith("application/x-ndjson")
+        || type.startsWith("application/javascript")
+        || type.startsWith("application/xml")
+        || type.startsWith("image/svg+xml");
+  }
+
+  private static final class CompressingResponse extends HttpServletResponseWrapper {
+
+    private final boolean acceptsGzip;
+
+    private boolean nonBlocking;
+    private long contentLength = -1;
+    private OutputStream target;
+    private GZIPOutputStream gzip;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    private CompressingResponse(HttpServletResponse response, boolean acceptsGzip) {
+      super(response);
+      this.acceptsGzip = acceptsGzip;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (writer != null) {
+        throw new IllegalStateException("getWriter() has already been called.");
+      }
+      if (outputStream == null) {
+        outputStream = new CompressingOutputStream();
+      }
+      return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      if (writer == null) {
+        if (outputStream != null) {
+          throw new IllegalStateException("getOutputStream() has already been called.");
+        }
+        // Like the container's own writer, fixes the charset of the response.
+        setCharacterEncoding(getCharacterEncoding());
+        outputStream = new CompressingOutputStream();
+        writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+      }
+      return writer;
+    }
+
+    @Override
+    public void setContentLength(int length) {
+      setContentLengthLong(length);
+    }
+
+    @Override
+    public void setContentLengthLong(long length) {
+      if (target == null) {
+        contentLength = length;
+      } else if (gzip == null) {
+        super.setContentLengthLong(length);
+      }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+      if ("Content-Length".equalsIgnoreCase(name)) {
+        setContentLengthLong(value == null ? -1 : Long.parseLong(value));
+      } else {
+        super.setHeader(name, value);
+      }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+      if ("Content-Length".equalsIgnoreCase(name)) {
+        setContentLengthLong(Long.parseLong(value));
+      } else {
+        super.addHeader(name, value);
+      }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+      if ("Content-Length".equalsIgnoreCase(name)) {
+        setContentLengthLong(value);
+      } else {
+        super.setIntHeader(name, value);
+      }
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+      if ("Content-Length".equalsIgnoreCase(name)) {
+        setContentLengthLong(value);
+      } else {
+        super.addIntHeader(name, value);
+      }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      if (writer != null) {
+        writer.flush();
+      } else if (outputStream != null) {
+        outputStream.flush();
+      }
+      super.flushBuffer();
+    }
+
+    @Override
+    public void reset() {
+      super.reset();
+      discard();
+      contentLength = -1;
+    }
+
+    @Override
+    public void resetBuffer() {
+      super.resetBuffer();
+      discard();
+    }
+
+    /** Forgets the body written so far, which the container has just thrown away. */
+    private void discard() {
+      target = null;
+      gzip = null;
+      outputStream = null;
+      writer = null;
+    }
+
+    private void finish() throws IOException {
+      if (writer != null) {
+        writer.flush();
+      }
+      if (gzip != null) {
+        gzip.finish();
+      } else if (target == null && contentLength >= 0 && !isCommitted()) {
+        super.setContentLengthLong(contentLength);
+      }
+    }
+
+    /** Decides whether to compress, the first time the body is written or flushed. */
+    private OutputStream target() throws IOException {
+      if (target == null) {
+        boolean compressible = isCompressible(getContentType());
+        if (compressible) {
+          super.addHeader("Vary", "Accept-Encoding");
+        }
+        int status = getStatus();
+        if (acceptsGzip
+            && compressible
+            && !nonBlocking
+            && !isCommitted()
+            && getHeader("Content-Encoding") == null
+            && (contentLength < 0 || contentLength >= MIN_LENGTH)
+            && status != SC_NO_CONTENT
+            && status != SC_NOT_MODIFIED) {
+          String etag = getHeader("ETag");
+          if (etag != null && !etag.startsWith("W/")) {
+            super.setHeader("ETag", "W/" + etag);
+          }
+          super.setHeader("Content-Encoding", "gzip");
+          gzip = new GZIPOutputStream(super.getOutputStream(), BUFFER_SIZE, true);
+          target = gzip;
+        } else {
+          if (contentLength >= 0) {
+            super.setContentLengthLong(contentLength);
+          }
+          target = super.getOutputStream();
+        }
+      }
+      return target;
+    }
+
+    /** Sends the rest of the body as it is, through the container's non-blocking stream. */
+    private void setWriteListener(WriteListener writeListener) {
+      if (gzip != null) {
+        throw new IllegalStateException(
+            "Non-blocking writes can't follow a body that is being compressed.");
+      }
+      nonBlocking = true;
+      try {
+        super.getOutputStream().setWriteListener(writeListener);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private final class CompressingOutputStream extends ServletOutputStream {
+
+      @Override
+      public void write(int b) throws IOException {
+        target().write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        target().write(b, off, len);
+      }
+
+      @Override
+      public void flush() throws IOException {
+        target().flush();
+      }
+
+      @Override
+      public void close() throws IOException {
+        finish();
+        getResponse().getOutputStream().close();
+      }
+
+      @Override
+      public boolean isReady() {
+        try {
+          return getResponse().getOutputStream().isReady();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        CompressingResponse.this.setWriteListener(writeListener);
+      }
+    }
+  }
+}
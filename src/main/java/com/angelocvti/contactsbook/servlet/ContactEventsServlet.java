@@ -0,0 +1,142 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import com.angelocvti.contactsbook.persistence.ContactChanges;
+import com.angelocvti.contactsbook.persistence.UnitOfWork;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Change feed of the contacts: GET /api/events streams, as server-sent events, the changes of the
+ * contacts of the address book chosen for the request, whoever made them. Each event is named after
+ * the change and carries JSON data:
+ *
+ * <pre>
+ * event: updated
+ * data: {"id":42,"name":"Ana","email":"ana@mail.com","address":"Rua A, 1","birthdate":"1990-12-31","version":3}
+ *
+ * event: deleted
+ * data: {"id":42}
+ * </pre>
+ *
+ * <p>"created" events carry the contact like "updated" ones do, and a "reload" event tells that too
+ * many contacts changed to be told apart, so the client must read what it shows again. The stream
+ * is kept open with a comment every 20 seconds.
+ *
+ * @see ContactChanges
+ * @author Angelo Cavalcanti
+ */
+@WebServlet(
+    name = "ContactEvents",
+    urlPatterns = {"/api/events"},
+    asyncSupported = true)
+public class ContactEventsServlet extends HttpServlet {
+
+  private static final long PING_SECONDS = 20;
+  private static final long RETRY_MILLIS = 3_000;
+
+  private final Set<EventStream> streams = ConcurrentHashMap.newKeySet();
+  private ScheduledExecutorService pinger;
+
+  @Override
+  public void init() {
+    pinger =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "contacts-book-event-pings");
+              thread.setDaemon(true);
+              return thread;
+            });
+    pinger.scheduleWithFixedDelay(
+        () -> streams.forEach(EventStream::ping), PING_SECONDS, PING_SECONDS, TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void destroy() {
+    pinger.shutdownNow();
+    streams.forEach(EventStream::close);
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+    long bookId = unitOfWork.getBookId();
+    // The stream never touches the database; an asynchronous request closes its own unit of work.
+    unitOfWork.close();
+
+    // Without arguments the unwrapped response is used, so no wrapper stands between the events
+    // and the connection.
+    AsyncContext asyncContext = request.startAsync();
+    asyncContext.setTimeout(0);
+    HttpServletResponse stream = (HttpServletResponse) asyncContext.getResponse();
+    stream.setContentType("text/event-stream");
+    stream.setCharacterEncoding("UTF-8");
+    stream.setHeader("Cache-Control", "no-cache");
+    stream.setHeader("X-Accel-Buffering", "no");
+
+    EventStream eventStream = new EventStream(asyncContext, stream.getOutputStream(), RETRY_MILLIS);
+    asyncContext.addListener(
+        new AsyncListener() {
+          @Override
+          public void onComplete(AsyncEvent event) {
+            eventStream.close();
+          }
+
+          @Override
+          public void onTimeout(AsyncEvent event) {
+            eventStream.close();
+          }
+
+          @Override
+          public void onError(AsyncEvent event) {
+            eventStream.close();
+          }
+
+          @Override
+          public void onStartAsync(AsyncEvent event) {}
+        });
+    Runnable unsubscribe = ContactChanges.INSTANCE.subscribe(bookId, eventStream);
+    streams.add(eventStream);
+    eventStream.onClose(
+        () -> {
+          unsubscribe.run();
+          streams.remove(eventStream);
+        });
+    stream.getOutputStream().setWriteListener(eventStream);
+  }
+}
@@ -0,0 +1,360 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import com.angelocvti.contactsbook.exceptions.ContactConflictException;
+import com.angelocvti.contactsbook.exceptions.ContactNotFoundException;
+import com.angelocvti.contactsbook.exceptions.DuplicateEmailException;
+import com.angelocvti.contactsbook.format.ContactFormats;
+import com.angelocvti.contactsbook.format.JsonReader;
+import com.angelocvti.contactsbook.format.JsonWriter;
+import com.angelocvti.contactsbook.model.Contact;
+import com.angelocvti.contactsbook.persistence.Dao;
+import com.angelocvti.contactsbook.persistence.Page;
+import com.angelocvti.contactsbook.persistence.UnitOfWork;
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Optional;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * JSON API over the contacts:
+ *
+ * <ul>
+ *   <li>GET /api/contacts?after=&amp;before=&amp;size= lists one page, ordered by id;
+ *   <li>GET /api/contacts?q=&amp;offset=&amp;size= lists one page of the contacts matching the
+ *       search text, best match first, with the offsets of the neighbouring pages as cursors;
+ *   <li>GET /api/contacts/{id} reads one contact;
+ *   <li>POST /api/contacts creates a contact and answers 201 with its location;
+ *   <li>PUT /api/contacts/{id} updates a contact, only if still at the version sent, if any;
+ *   <li>DELETE /api/contacts/{id} deletes a contact.
+ * </ul>
+ *
+ * <p>The contacts are those of the address book chosen for the request, see {@link
+ * TransactionFilter}. GET responses carry a strong ETag, the book and the revision of its contacts.
+ * A request for a page whose If-None-Match holds the current revision is answered 304 after reading
+ * that counter, so polling an unchanged book costs one indexed read and no serialization. A request
+ * for one contact is only answered 304 once the contact was found, so that neither a matching tag
+ * nor "*" hides that it doesn't exist.
+ *
+ * @author Angelo Cavalcanti
+ */
+@WebServlet(
+    name = "ContactsApi",
+    urlPatterns = {"/api/contacts", "/api/contacts/*"},
+    asyncSupported = true)
+public class ContactsApiServlet extends HttpServlet {
+
+  private static final String CONTENT_TYPE = "application/json";
+  private static final int MAX_BODY_CHARS = 16 * 1024;
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    AsyncRequests.dispatch(request, response, ContactsApiServlet::get);
+  }
+
+  private static String get(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+    try {
+      Long id = pathId(request);
+      Dao<Contact> contactDao = unitOfWork.contacts();
+      String etag = "\"" + unitOfWork.getBookId() + "-" + contactDao.findRevision() + "\"";
+      response.setHeader("ETag", etag);
+      response.setHeader("Cache-Control", "no-cache");
+      boolean notModified = matches(request.getHeader("If-None-Match"), etag);
+
+      if (id == null) {
+        if (notModified) {
+          unitOfWork.commit();
+          response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+          return null;
+        }
+        Page<Contact> page = findPage(request, contactDao);
+        unitOfWork.commit();
+        writePage(openJson(response), page);
+      } else {
+        // The revision is the book's, so it can match for a contact that doesn't exist.
+        Optional<Contact> contact = contactDao.findById(id);
+        unitOfWork.commit();
+        if (!contact.isPresent()) {
+          throw new ContactNotFoundException("No contact was found.");
+        }
+        if (notModified) {
+          response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+          return null;
+        }
+        JsonWriter jsonWriter = new JsonWriter(openJson(response));
+        ContactFormats.writeJson(jsonWriter, contact.get());
+        jsonWriter.flush();
+      }
+    } catch (RuntimeException e) {
+      sendError(unitOfWork, response, e);
+    }
+    return null;
+  }
+
+  @Override
+  protected void doPost(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    AsyncRequests.dispatch(request, response, ContactsApiServlet::post);
+  }
+
+  private static String post(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+    try {
+      if (request.getPathInfo() != null && !"/".equals(request.getPathInfo())) {
+        methodNotAllowed(response, "GET, PUT, DELETE");
+        return null;
+      }
+      Contact.ContactBuilder contact = ContactFormats.readJson(readBody(request));
+      Long id = unitOfWork.contacts().insertAndGetId(contact.build());
+      unitOfWork.commit();
+
+      response.setStatus(HttpServletResponse.SC_CREATED);
+      response.setHeader("Location", request.getContextPath() + "/api/contacts/" + id);
+      JsonWriter jsonWriter = new JsonWriter(openJson(response));
+      ContactFormats.writeJson(jsonWriter, contact.withId(id).withVersion(0).build());
+      jsonWriter.flush();
+    } catch (RuntimeException e) {
+      sendError(unitOfWork, response, e);
+    } catch (IOException e) {
+      sendError(unitOfWork, response, new IllegalArgumentException(e.getMessage(), e));
+    }
+    return null;
+  }
+
+  @Override
+  protected void doPut(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    AsyncRequests.dispatch(request, response, ContactsApiServlet::put);
+  }
+
+  private static String put(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+    try {
+      Long id = pathId(request);
+      if (id == null) {
+        methodNotAllowed(response, "GET, POST");
+        return null;
+      }
+      Contact contact = ContactFormats.readJson(readBody(request)).build();
+      unitOfWork.contacts().update(id, contact);
+      unitOfWork.commit();
+      response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    } catch (RuntimeException e) {
+      sendError(unitOfWork, response, e);
+    } catch (IOException e) {
+      sendError(unitOfWork, response, new IllegalArgumentException(e.getMessage(), e));
+    }
+    return null;
+  }
+
+  @Override
+  protected void doDelete(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    AsyncRequests.dispatch(request, response, ContactsApiServlet::delete);
+  }
+
+  private static String delete(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+    try {
+      Long id = pathId(request);
+      if (id == null) {
+        methodNotAllowed(response, "GET, POST");
+        return null;
+      }
+      unitOfWork.contacts().delete(id);
+      unitOfWork.commit();
+      response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    } catch (RuntimeException e) {
+      sendError(unitOfWork, response, e);
+    }
+    return null;
+  }
+
+  private static Page<Contact> findPage(HttpServletRequest request, Dao<Contact> contactDao) {
+    String query = request.getParameter("q");
+    String after = request.getParameter("after");
+    String before = request.getParameter("before");
+    String size = request.getParameter("size");
+    int pageSize = Page.capSize(size == null ? null : Integer.valueOf(size));
+    if (query != null) {
+      String offset = request.getParameter("offset");
+      return contactDao.search(query, offset == null ? 0 : Long.parseLong(offset), pageSize);
+    }
+    return before != null
+        ? contactDao.findPageBefore(Long.valueOf(before), pageSize)
+        : contactDao.findPageAfter(after == null ? null : Long.valueOf(after), pageSize);
+  }
+
+  /**
+   * The page as the JSON document served by GET /api/contacts, for the list page to start from
+   * without requesting it.
+   */
+  static String toJson(Page<Contact> page) {
+    StringWriter writer = new StringWriter();
+    try {
+      writePage(writer, page);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return writer.toString();
+  }
+
+  private static void writePage(Writer writer, Page<Contact> page) throws IOException {
+    JsonWriter jsonWriter = new JsonWriter(writer);
+    jsonWriter.beginObject().name("contacts").beginArray();
+    for (Contact contact : page.getItems()) {
+      ContactFormats.writeJson(jsonWriter, contact);
+    }
+    jsonWriter
+        .endArray()
+        .name("previousCursor")
+        .value(page.getPreviousCursor())
+        .name("nextCursor")
+        .value(page.getNextCursor())
+        .endObject()
+        .flush();
+  }
+
+  /** The id after /api/contacts/, or null for the collection itself. */
+  private static Long pathId(HttpServletRequest request) {
+    String pathInfo = request.getPathInfo();
+    if (pathInfo == null || "/".equals(pathInfo)) {
+      return null;
+    }
+    try {
+      return Long.valueOf(pathInfo.substring(1));
+    } catch (NumberFormatException e) {
+      throw new ContactNotFoundException("No contact was found.");
+    }
+  }
+
+  /** Weak comparison of If-None-Match, as required for GET: a W/ prefix is ignored. */
+  private static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals("*") || tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Object readBody(HttpServletRequest request) throws IOException {
+    return readBody(request, MAX_BODY_CHARS);
+  }
+
+  /** Reads the JSON document of the request body, of at most the given number of characters. */
+  static Object readBody(HttpServletRequest request, int maxChars) throws IOException {
+    if (request.getCharacterEncoding() == null) {
+      request.setCharacterEncoding("UTF-8");
+    }
+    char[] buffer = new char[maxChars];
+    int length = 0;
+    try (Reader reader = request.getReader()) {
+      int read;
+      while ((read = reader.read(buffer, length, buffer.length - length)) > 0) {
+        length += read;
+        if (length == buffer.length && reader.read() != -1) {
+          throw new IllegalArgumentException(
+              "The request body is larger than " + maxChars + " characters.");
+        }
+      }
+    }
+    return new JsonReader(new CharArrayReader(buffer, 0, length)).readDocument();
+  }
+
+  /**
+   * Whether the request asks for JSON, as the list page does when it sends its forms in the
+   * background, rather than for the page to go to next.
+   */
+  static boolean acceptsJson(HttpServletRequest request) {
+    String accept = request.getHeader("Accept");
+    return accept != null && accept.contains(CONTENT_TYPE);
+  }
+
+  /** Writes the contact as the JSON body of the response. */
+  static void writeContact(HttpServletResponse response, Contact contact) throws IOException {
+    JsonWriter jsonWriter = new JsonWriter(openJson(response));
+    ContactFormats.writeJson(jsonWriter, contact);
+    jsonWriter.flush();
+  }
+
+  static Writer openJson(HttpServletResponse response) throws IOException {
+    response.setContentType(CONTENT_TYPE);
+    response.setCharacterEncoding("UTF-8");
+    return response.getWriter();
+  }
+
+  private static void methodNotAllowed(HttpServletResponse response, String allow)
+      throws IOException {
+    response.setHeader("Allow", allow);
+    writeError(response, HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Method not allowed.");
+  }
+
+  static void sendError(UnitOfWork unitOfWork, HttpServletResponse response, RuntimeException e)
+      throws IOException {
+    unitOfWork.rollback();
+    int status;
+    if (e instanceof ContactNotFoundException) {
+      status = HttpServletResponse.SC_NOT_FOUND;
+    } else if (e instanceof ContactConflictException || e instanceof DuplicateEmailException) {
+      status = HttpServletResponse.SC_CONFLICT;
+    } else if (e instanceof IllegalArgumentException) {
+      status = HttpServletResponse.SC_BAD_REQUEST;
+    } else {
+      throw e;
+    }
+    response.setHeader("ETag", null);
+    writeError(response, status, e.getMessage());
+  }
+
+  static void writeError(HttpServletResponse response, int status, String message)
+      throws IOException {
+    response.setStatus(status);
+    JsonWriter jsonWriter = new JsonWriter(openJson(response));
+    jsonWriter.beginObject().name("error").value(message).endObject().flush();
+  }
+}
@@ -24,27 +24,47 @@
 
 package com.angelocvti.contactsbook.servlet;
 
-import com.angelocvti.contactsbook.persistence.ConnectionFactory;
-import com.angelocvti.contactsbook.persistence.ContactDao;
+import com.angelocvti.contactsbook.persistence.UnitOfWork;
 import java.io.IOException;
+import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** @author Angelo Cavalcanti */
+/**
+ * Deletes the contact and redirects to the list, or, when the request accepts JSON, answers 204.
+ *
+ * @author Angelo Cavalcanti
+ */
 @WebServlet(
     name = "DeleteContact",
-    urlPatterns = {"/deleteContact"})
+    urlPatterns = {"/deleteContact"},
+    asyncSupported = true)
 public class DeleteContactServlet extends HttpServlet {
   @Override
   protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    AsyncRequests.dispatch(request, response, DeleteContactServlet::delete);
+  }
+
+  private static String delete(HttpServletRequest request, HttpServletResponse response)
       throws IOException {
-    ContactDao.builder()
-        .withConnection(ConnectionFactory.INSTANCE.getConnection())
-        .build()
-        .delete(Long.valueOf(request.getParameter("id")));
+    UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+    if (!ContactsApiServlet.acceptsJson(request)) {
+      unitOfWork.contacts().delete(Long.valueOf(request.getParameter("id")));
+      unitOfWork.commit();
+      response.sendRedirect(request.getContextPath() + "/listContact");
+      return null;
+    }
 
-    response.sendRedirect(request.getContextPath() + "/listContact");
+    try {
+      unitOfWork.contacts().delete(Long.valueOf(request.getParameter("id")));
+      unitOfWork.commit();
+      response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    } catch (RuntimeException e) {
+      ContactsApiServlet.sendError(unitOfWork, response, e);
+    }
+    return null;
   }
 }
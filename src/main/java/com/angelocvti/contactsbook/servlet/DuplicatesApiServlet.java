@@ -0,0 +1,257 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import com.angelocvti.contactsbook.dedup.Deduplication;
+import com.angelocvti.contactsbook.dedup.Duplicate;
+import com.angelocvti.contactsbook.dedup.DuplicateDao;
+import com.angelocvti.contactsbook.format.ContactFormats;
+import com.angelocvti.contactsbook.format.JsonWriter;
+import com.angelocvti.contactsbook.persistence.Page;
+import com.angelocvti.contactsbook.persistence.UnitOfWork;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * JSON API of the duplicate contacts of the address book chosen for the request:
+ *
+ * <ul>
+ *   <li>POST /api/duplicates starts a search of the duplicates in the background and answers 202
+ *       with its state, or 409 if one is already running;
+ *   <li>GET /api/duplicates?offset=&amp;size= gives the state of the last search and a page of the
+ *       pairs it found, best score first, each with the contact to keep and its duplicate;
+ *   <li>POST /api/duplicates/merge merges the pairs of the body, filling the blank fields of the
+ *       contact kept from its duplicates and deleting each duplicate in favour of it, and answers
+ *       with how many were merged:
+ * </ul>
+ *
+ * <pre>
+ * {"merges":[{"keep":12,"remove":345},{"keep":12,"remove":678}]}
+ * </pre>
+ *
+ * @see Deduplication
+ * @author Angelo Cavalcanti
+ */
+@WebServlet(
+    name = "DuplicatesApi",
+    urlPatterns = {"/api/duplicates", "/api/duplicates/*"},
+    asyncSupported = true)
+public class DuplicatesApiServlet extends HttpServlet {
+
+  /** Merges a request can ask for, about as many as fit in the body. */
+  private static final int MAX_MERGES = 2_000;
+
+  private static final int MAX_BODY_CHARS = 64 * 1024;
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    AsyncRequests.dispatch(request, response, DuplicatesApiServlet::list);
+  }
+
+  @Override
+  protected void doPost(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    String pathInfo = request.getPathInfo();
+    if (pathInfo == null || "/".equals(pathInfo)) {
+      AsyncRequests.dispatch(request, response, DuplicatesApiServlet::start);
+    } else if ("/merge".equals(pathInfo)) {
+      AsyncRequests.dispatch(request, response, DuplicatesApiServlet::merge);
+    } else {
+      ContactsApiServlet.writeError(response, HttpServletResponse.SC_NOT_FOUND, "Not found.");
+    }
+  }
+
+  private static String list(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    if (request.getPathInfo() != null && !"/".equals(request.getPathInfo())) {
+      ContactsApiServlet.writeError(response, HttpServletResponse.SC_NOT_FOUND, "Not found.");
+      return null;
+    }
+    long offset;
+    int size;
+    try {
+      String offsetParameter = request.getParameter("offset");
+      String sizeParameter = request.getParameter("size");
+      offset = offsetParameter == null ? 0 : Long.parseLong(offsetParameter);
+      size = Page.capSize(sizeParameter == null ? null : Integer.valueOf(sizeParameter));
+    } catch (NumberFormatException e) {
+      ContactsApiServlet.writeError(
+          response, HttpServletResponse.SC_BAD_REQUEST, "Invalid 'offset' or 'size' parameter.");
+      return null;
+    }
+
+    UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+    Page<Duplicate> page =
+        DuplicateDao.builder()
+            .withBookId(unitOfWork.getBookId())
+            .withConnectionSupplier(unitOfWork::getWriteConnection)
+            .withReadConnectionSupplier(unitOfWork::getReadConnection)
+            .build()
+            .findPage(offset, size);
+    unitOfWork.commit();
+
+    response.setHeader("Cache-Control", "no-cache");
+    JsonWriter jsonWriter = new JsonWriter(ContactsApiServlet.openJson(response));
+    jsonWriter.beginObject();
+    writeJob(jsonWriter, Deduplication.INSTANCE.getJob(unitOfWork.getBookId()));
+    jsonWriter.name("duplicates").beginArray();
+    for (Duplicate duplicate : page.getItems()) {
+      jsonWriter.beginObject().name("score").value(round(duplicate.getScore()));
+      ContactFormats.writeJson(jsonWriter.name("contact"), duplicate.getContact());
+      ContactFormats.writeJson(jsonWriter.name("duplicate"), duplicate.getDuplicate());
+      jsonWriter.endObject();
+    }
+    jsonWriter
+        .endArray()
+        .name("previousCursor")
+        .value(page.getPreviousCursor())
+        .name("nextCursor")
+        .value(page.getNextCursor())
+        .endObject()
+        .flush();
+    return null;
+  }
+
+  private static String start(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    long bookId = TransactionFilter.unitOfWork(request).getBookId();
+    Optional<Deduplication.Job> job = Deduplication.INSTANCE.start(bookId);
+    if (!job.isPresent()) {
+      ContactsApiServlet.writeError(
+          response,
+          HttpServletResponse.SC_CONFLICT,
+          "A search of the duplicates of this book is already running.");
+      return null;
+    }
+    response.setStatus(HttpServletResponse.SC_ACCEPTED);
+    JsonWriter jsonWriter = new JsonWriter(ContactsApiServlet.openJson(response));
+    jsonWriter.beginObject();
+    writeJob(jsonWriter, job);
+    jsonWriter.endObject().flush();
+    return null;
+  }
+
+  private static String merge(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+    try {
+      Map<Long, Long> keptByDuplicate =
+          readMerges(ContactsApiServlet.readBody(request, MAX_BODY_CHARS));
+      int merged = Deduplication.INSTANCE.merge(unitOfWork, keptByDuplicate);
+      unitOfWork.commit();
+
+      JsonWriter jsonWriter = new JsonWriter(ContactsApiServlet.openJson(response));
+      jsonWriter.beginObject().name("merged").value(merged).endObject().flush();
+    } catch (RuntimeException e) {
+      ContactsApiServlet.sendError(unitOfWork, response, e);
+    } catch (IOException e) {
+      ContactsApiServlet.sendError(
+          unitOfWork, response, new IllegalArgumentException(e.getMessage(), e));
+    }
+    return null;
+  }
+
+  /** The id kept for each duplicate id, from a {"merges":[{"keep":1,"remove":2}]} document. */
+  private static Map<Long, Long> readMerges(Object document) {
+    Object merges = document instanceof Map ? ((Map<?, ?>) document).get("merges") : null;
+    if (!(merges instanceof List)) {
+      throw new IllegalArgumentException("The body must have a 'merges' array.");
+    }
+    List<?> list = (List<?>) merges;
+    if (list.size() > MAX_MERGES) {
+      throw new IllegalArgumentException("At most " + MAX_MERGES + " merges can be sent at once.");
+    }
+    Map<Long, Long> keptByDuplicate = new LinkedHashMap<>();
+    for (Object merge : list) {
+      if (!(merge instanceof Map)) {
+        throw new IllegalArgumentException(
+            "Each merge must be an object with 'keep' and 'remove'.");
+      }
+      Long kept = readId((Map<?, ?>) merge, "keep");
+      Long duplicate = readId((Map<?, ?>) merge, "remove");
+      Long previous = keptByDuplicate.put(duplicate, kept);
+      if (previous != null && !previous.equals(kept)) {
+        throw new IllegalArgumentException(
+            "The contact " + duplicate + " can't be merged into two contacts.");
+      }
+    }
+    return keptByDuplicate;
+  }
+
+  private static Long readId(Map<?, ?> merge, String name) {
+    Object id = merge.get(name);
+    try {
+      if (id instanceof BigDecimal) {
+        return ((BigDecimal) id).longValueExact();
+      }
+    } catch (ArithmeticException e) {
+      // Not an integer, reported below.
+    }
+    throw new IllegalArgumentException("Each merge must have an integer '" + name + "'.");
+  }
+
+  private static void writeJob(JsonWriter jsonWriter, Optional<Deduplication.Job> job)
+      throws IOException {
+    jsonWriter.name("search");
+    if (!job.isPresent()) {
+      jsonWriter.value((String) null);
+      return;
+    }
+    Deduplication.Job search = job.get();
+    jsonWriter
+        .beginObject()
+        .name("state")
+        .value(search.getState().name().toLowerCase(Locale.ROOT))
+        .name("startedAt")
+        .value(search.getStartedAt().toString())
+        .name("finishedAt")
+        .value(search.getFinishedAt() == null ? null : search.getFinishedAt().toString())
+        .name("contacts")
+        .value(search.getContacts())
+        .name("comparisons")
+        .value(search.getComparisons())
+        .name("duplicates")
+        .value(search.getDuplicates())
+        .name("error")
+        .value(search.getError())
+        .endObject();
+  }
+
+  /** The score with three decimals, enough to rank the pairs. */
+  private static double round(double score) {
+    return Math.round(score * 1000) / 1000.0;
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import com.angelocvti.contactsbook.format.ContactFormats;
+import com.angelocvti.contactsbook.format.JsonWriter;
+import com.angelocvti.contactsbook.persistence.ContactChange;
+import com.angelocvti.contactsbook.persistence.ContactChanges;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+/**
+ * One client of the contact change feed, to which the changes of its book are written as
+ * server-sent events. The writes never block: the events wait in a queue for the connection to
+ * accept them, and a client so slow that the queue fills up is sent a reload instead of the changes
+ * it missed.
+ *
+ * @author Angelo Cavalcanti
+ */
+final class EventStream implements ContactChanges.Listener, WriteListener {
+
+  private static final int MAX_PENDING = 100;
+  private static final byte[] RELOAD = format(ContactChange.Type.RELOAD, "{}");
+  private static final byte[] PING = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+  private final AsyncContext asyncContext;
+  private final ServletOutputStream outputStream;
+  private final Deque<byte[]> pending = new ArrayDeque<>();
+  private Runnable closeAction = () -> {};
+  private boolean writable;
+  private boolean closed;
+
+  EventStream(AsyncContext asyncContext, ServletOutputStream outputStream, long retryMillis) {
+    this.asyncContext = asyncContext;
+    this.outputStream = outputStream;
+    pending.add(("retry: " + retryMillis + "\n\n").getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Sets what to do once the stream is closed, such as unsubscribing it. */
+  synchronized void onClose(Runnable closeAction) {
+    this.closeAction = closeAction;
+  }
+
+  @Override
+  public void onChange(ContactChange change) {
+    send(toEvent(change));
+  }
+
+  /** Sends a comment, so proxies don't time out an idle stream and a gone client is noticed. */
+  void ping() {
+    send(PING);
+  }
+
+  @Override
+  public synchronized void onWritePossible() {
+    // Called once the write listener is set, before which the stream can't be asked if it's ready.
+    writable = true;
+    write();
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    close();
+  }
+
+  synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    pending.clear();
+    closeAction.run();
+    try {
+      asyncContext.complete();
+    } catch (IllegalStateException e) {
+      // Already completed by the container.
+    }
+  }
+
+  private synchronized void send(byte[] event) {
+    if (closed) {
+      return;
+    }
+    if (pending.size() >= MAX_PENDING) {
+      pending.clear();
+      pending.add(RELOAD);
+    } else {
+      pending.add(event);
+    }
+    write();
+  }
+
+  /** Writes the pending events the connection accepts without blocking. */
+  private void write() {
+    if (!writable) {
+      return;
+    }
+    try {
+      while (!pending.isEmpty() && outputStream.isReady()) {
+        outputStream.write(pending.poll());
+      }
+      if (pending.isEmpty() && outputStream.isReady()) {
+        outputStream.flush();
+      }
+    } catch (IOException | IllegalStateException e) {
+      close();
+    }
+  }
+
+  private static byte[] toEvent(ContactChange change) {
+    StringWriter data = new StringWriter();
+    JsonWriter jsonWriter = new JsonWriter(data);
+    try {
+      switch (change.getType()) {
+        case CREATED:
+        case UPDATED:
+          ContactFormats.writeJson(jsonWriter, change.getContact());
+          break;
+        case DELETED:
+          jsonWriter.beginObject().name("id").value(change.getContactId()).endObject();
+          break;
+        default:
+          return RELOAD;
+      }
+      jsonWriter.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return format(change.getType(), data.toString());
+  }
+
+  private static byte[] format(ContactChange.Type type, String data) {
+    return ("event: " + type.name().toLowerCase(Locale.ROOT) + "\ndata: " + data + "\n\n")
+        .getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import com.angelocvti.contactsbook.format.ContactFormats;
+import com.angelocvti.contactsbook.format.CsvWriter;
+import com.angelocvti.contactsbook.format.JsonWriter;
+import com.angelocvti.contactsbook.model.Contact;
+import com.angelocvti.contactsbook.persistence.ContactDao;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Exports the contacts ordered by id as CSV (format=csv, the default) or newline delimited JSON
+ * (format=ndjson). The rows are streamed from a database cursor straight to the response, so the
+ * memory used doesn't depend on the size of the book. The optional parameter 'since' exports only
+ * the contacts with a greater id. The {@link CompressionFilter} gzips the response when the client
+ * accepts it.
+ *
+ * @author Angelo Cavalcanti
+ */
+@WebServlet(
+    name = "ExportContacts",
+    urlPatterns = {"/exportContacts"})
+public class ExportContactsServlet extends HttpServlet {
+
+  /** Rows written between two flushes, so the client receives data while the export goes on. */
+  private static final int FLUSH_INTERVAL = ContactDao.DEFAULT_FETCH_SIZE;
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String since = request.getParameter("since");
+    boolean ndjson = "ndjson".equals(request.getParameter("format"));
+
+    response.setCharacterEncoding("UTF-8");
+    response.setContentType(ndjson ? "application/x-ndjson" : "text/csv");
+    response.setHeader(
+        "Content-Disposition",
+        "attachment; filename=\"contacts." + (ndjson ? "ndjson" : "csv") + "\"");
+
+    try (Stream<Contact> contacts =
+            TransactionFilter.unitOfWork(request)
+                .contacts()
+                .streamAfter(
+                    since == null ? null : Long.valueOf(since), ContactDao.DEFAULT_FETCH_SIZE);
+        Writer writer = openWriter(response)) {
+      if (ndjson) {
+        writeNdjson(contacts.iterator(), writer);
+      } else {
+        writeCsv(contacts.iterator(), writer);
+      }
+    }
+  }
+
+  private static void writeCsv(Iterator<Contact> contacts, Writer writer) throws IOException {
+    CsvWriter csvWriter = new CsvWriter(writer);
+    csvWriter.writeRecord(ContactFormats.CSV_HEADER);
+    writer.flush();
+    for (int rows = 1; contacts.hasNext(); rows++) {
+      ContactFormats.writeCsv(csvWriter, contacts.next());
+      if (rows % FLUSH_INTERVAL == 0) {
+        writer.flush();
+      }
+    }
+  }
+
+  private static void writeNdjson(Iterator<Contact> contacts, Writer writer) throws IOException {
+    JsonWriter jsonWriter = new JsonWriter(writer);
+    for (int rows = 1; contacts.hasNext(); rows++) {
+      ContactFormats.writeJson(jsonWriter, contacts.next());
+      writer.write('\n');
+      if (rows % FLUSH_INTERVAL == 0) {
+        writer.flush();
+      }
+    }
+  }
+
+  private static Writer openWriter(HttpServletResponse response) throws IOException {
+    return new BufferedWriter(
+        new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), 8192);
+  }
+}
@@ -0,0 +1,308 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import com.angelocvti.contactsbook.config.Environment;
+import com.angelocvti.contactsbook.exceptions.DaoException;
+import com.angelocvti.contactsbook.format.ContactFormats;
+import com.angelocvti.contactsbook.format.CsvReader;
+import com.angelocvti.contactsbook.format.MultipartReader;
+import com.angelocvti.contactsbook.model.Contact;
+import com.angelocvti.contactsbook.persistence.UnitOfWork;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Imports contacts from a CSV file with the columns name, email, address and birthdate (dd/MM/yyyy
+ * or yyyy-MM-dd), with an optional header line. The file can be sent as the part 'file' of a
+ * multipart form or as the raw request body. Either way the body is read as it arrives, without
+ * being buffered in memory or on disk, and rows are read one at a time and inserted in JDBC
+ * batches, each committed in its own transaction; the response lists the rejected rows as the
+ * import goes and ends with a summary. Fields longer than the {@value #MAX_LENGTH} characters their
+ * columns hold reject their row, and a batch the database refuses is inserted again row by row, so
+ * only the rows that fail are rejected and the import goes on.
+ *
+ * <p>Bodies larger than IMPORT_MAX_BYTES (100 MB by default) are refused with 413 when their length
+ * is declared, or else stop being imported once they reach it, keeping the rows committed until
+ * then.
+ *
+ * @author Angelo Cavalcanti
+ */
+@WebServlet(
+    name = "ImportContacts",
+    urlPatterns = {"/importContacts"})
+public class ImportContactsServlet extends HttpServlet {
+
+  private static final int BATCH_SIZE = 1000;
+  private static final int MAX_LENGTH = 255;
+  private static final long MAX_BYTES = Environment.getLong("IMPORT_MAX_BYTES", 100L << 20);
+
+  @Override
+  protected void doPost(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    if (request.getContentLengthLong() > MAX_BYTES) {
+      response.sendError(
+          HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+          "Imports are limited to " + MAX_BYTES + " bytes.");
+      return;
+    }
+    response.setContentType("text/plain");
+    response.setCharacterEncoding("UTF-8");
+    PrintWriter writer = response.getWriter();
+
+    long start = System.nanoTime();
+    Batch batch = new Batch();
+    int invalid = 0;
+
+    UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+    try (InputStream inputStream = openCsv(request)) {
+      CsvReader csvReader =
+          new CsvReader(
+              new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)));
+      RowParser rowParser = new RowParser();
+
+      List<String> record;
+      while ((record = csvReader.readRecord()) != null) {
+        int line = csvReader.getRecordLine();
+        if (isBlank(record) || (line == 1 && isHeader(record))) {
+          continue;
+        }
+        try {
+          batch.add(line, rowParser.parse(record));
+        } catch (RuntimeException e) {
+          invalid++;
+          writer.println("line " + line + ": " + e.getMessage());
+        }
+
+        if (batch.size() == BATCH_SIZE) {
+          batch.flush(unitOfWork, writer);
+        }
+      }
+    } catch (IOException e) {
+      writer.println("Import stopped: " + e.getMessage());
+    }
+    batch.flush(unitOfWork, writer);
+
+    long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    int rejected = invalid + batch.duplicates + batch.failed;
+    writer.println(
+        "Imported "
+            + batch.inserted
+            + " contacts, rejected "
+            + rejected
+            + " rows in "
+            + elapsedMillis
+            + " ms ("
+            + (batch.inserted + rejected) * 1000L / elapsedMillis
+            + " rows/s).");
+  }
+
+  private static InputStream openCsv(HttpServletRequest request) throws IOException {
+    InputStream body = new LimitedInputStream(request.getInputStream(), MAX_BYTES);
+    String boundary = MultipartReader.boundary(request.getContentType());
+    return boundary == null ? body : new MultipartReader(body, boundary).openPart("file");
+  }
+
+  private static boolean isBlank(List<String> record) {
+    return record.size() == 1 && record.get(0).trim().isEmpty();
+  }
+
+  private static boolean isHeader(List<String> record) {
+    return "name".equalsIgnoreCase(record.get(0).trim());
+  }
+
+  /** Fails the reads past the limit, so a body with no declared length can't grow unbounded. */
+  private static final class LimitedInputStream extends FilterInputStream {
+
+    private long remaining;
+
+    private LimitedInputStream(InputStream inputStream, long limit) {
+      super(inputStream);
+      this.remaining = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int read = super.read();
+      if (read != -1) {
+        count(1);
+      }
+      return read;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = super.read(buffer, offset, length);
+      if (read > 0) {
+        count(read);
+      }
+      return read;
+    }
+
+    private void count(int read) throws IOException {
+      remaining -= read;
+      if (remaining < 0) {
+        throw new IOException("The import is larger than " + MAX_BYTES + " bytes.");
+      }
+    }
+  }
+
+  /** Builds contacts from CSV records, applying the same rules as the add contact form. */
+  private static final class RowParser {
+
+    private Contact parse(List<String> record) {
+      if (record.size() != 4) {
+        throw new IllegalArgumentException(
+            "Expected 4 columns (name, email, address, birthdate) but found "
+                + record.size()
+                + ".");
+      }
+
+      String birthdate = record.get(3).trim();
+      LocalDate date =
+          birthdate.indexOf('-') > 0
+              ? LocalDate.parse(birthdate, DateTimeFormatter.ISO_LOCAL_DATE)
+              : LocalDate.parse(birthdate, ContactFormats.BIRTHDATE_FORMATTER);
+
+      return Contact.builder()
+          .withName(valueOf("name", record.get(0)))
+          .withEmail(valueOf("email", record.get(1)))
+          .withAddress(valueOf("address", record.get(2)))
+          .withBirthdate(date)
+          .build();
+    }
+
+    private static String valueOf(String column, String field) {
+      String value = field.trim();
+      if (value.codePointCount(0, value.length()) > MAX_LENGTH) {
+        throw new IllegalArgumentException(
+            "The " + column + " is longer than " + MAX_LENGTH + " characters.");
+      }
+      return value.isEmpty() ? null : value;
+    }
+  }
+
+  /** Contacts waiting to be inserted, with the CSV line each one came from. */
+  private static final class Batch {
+
+    private final List<Contact> contacts = new ArrayList<>(BATCH_SIZE);
+    private final List<Integer> lines = new ArrayList<>(BATCH_SIZE);
+    private int inserted;
+    private int duplicates;
+    private int failed;
+
+    private void add(int line, Contact contact) {
+      lines.add(line);
+      contacts.add(contact);
+    }
+
+    private int size() {
+      return contacts.size();
+    }
+
+    private void flush(UnitOfWork unitOfWork, PrintWriter writer) {
+      try {
+        boolean[] results = unitOfWork.contacts().insertAll(contacts);
+        unitOfWork.commit();
+        for (int i = 0; i < results.length; i++) {
+          report(i, results[i], writer);
+        }
+      } catch (DaoException e) {
+        rollback(unitOfWork);
+        for (int i = 0; i < contacts.size(); i++) {
+          flushOne(unitOfWork, i, writer);
+        }
+      }
+      writer.flush();
+      contacts.clear();
+      lines.clear();
+    }
+
+    /** Inserts one contact of a batch the database refused, to find out which rows it refused. */
+    private void flushOne(UnitOfWork unitOfWork, int index, PrintWriter writer) {
+      try {
+        boolean[] results =
+            unitOfWork.contacts().insertAll(Collections.singletonList(contacts.get(index)));
+        unitOfWork.commit();
+        report(index, results[0], writer);
+      } catch (DaoException e) {
+        rollback(unitOfWork);
+        failed++;
+        writer.println("line " + lines.get(index) + ": The row was refused: " + reason(e));
+      }
+    }
+
+    /** Rolls back a failed insert; if even that fails, the next insert will fail on its own. */
+    private static void rollback(UnitOfWork unitOfWork) {
+      try {
+        unitOfWork.rollback();
+      } catch (DaoException e) {
+        // Already reported through the insert that failed.
+      }
+    }
+
+    /** The first line of the database error, without the statement of the batch. */
+    private static String reason(DaoException e) {
+      Throwable cause = e.getCause() == null ? e : e.getCause();
+      if (cause instanceof SQLException && ((SQLException) cause).getNextException() != null) {
+        cause = ((SQLException) cause).getNextException();
+      }
+      String message = String.valueOf(cause.getMessage());
+      int end = message.indexOf('\n');
+      return end < 0 ? message : message.substring(0, end);
+    }
+
+    private void report(int index, boolean insertedRow, PrintWriter writer) {
+      if (insertedRow) {
+        inserted++;
+      } else {
+        duplicates++;
+        writer.println(
+            "line "
+                + lines.get(index)
+                + ": The email: "
+                + contacts.get(index).getEmail()
+                + " is being used by another contact.");
+      }
+    }
+  }
+}
@@ -24,8 +24,10 @@
 
 package com.angelocvti.contactsbook.servlet;
 
-import com.angelocvti.contactsbook.persistence.ConnectionFactory;
-import com.angelocvti.contactsbook.persistence.ContactDao;
+import com.angelocvti.contactsbook.model.Contact;
+import com.angelocvti.contactsbook.persistence.Dao;
+import com.angelocvti.contactsbook.persistence.Page;
+import com.angelocvti.contactsbook.persistence.UnitOfWork;
 import java.io.IOException;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -33,22 +35,40 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** @author Angelo Cavalcanti */
+/**
+ * The list page of the contacts. It is sent with only the first page of contacts, as JSON, and
+ * fetches the following ones from /api/contacts as the table is scrolled.
+ *
+ * @author Angelo Cavalcanti
+ */
 @WebServlet(
     name = "ListContact",
-    urlPatterns = {"/listContact"})
+    urlPatterns = {"/listContact"},
+    asyncSupported = true)
 public class ListContactsServlet extends HttpServlet {
 
   @Override
   protected void doGet(HttpServletRequest request, HttpServletResponse response)
       throws ServletException, IOException {
-    request.setAttribute(
-        "contacts",
-        ContactDao.builder()
-            .withConnection(ConnectionFactory.INSTANCE.getConnection())
-            .build()
-            .findAll());
+    AsyncRequests.dispatch(request, response, ListContactsServlet::list);
+  }
+
+  private static String list(HttpServletRequest request, HttpServletResponse response) {
+    String after = request.getParameter("after");
+    String before = request.getParameter("before");
+    String size = request.getParameter("size");
+    int pageSize = Page.capSize(size == null ? null : Integer.valueOf(size));
+
+    UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+    Dao<Contact> contactDao = unitOfWork.contacts();
+    Page<Contact> page =
+        before != null
+            ? contactDao.findPageBefore(Long.valueOf(before), pageSize)
+            : contactDao.findPageAfter(after == null ? null : Long.valueOf(after), pageSize);
+    unitOfWork.commit();
 
-    request.getRequestDispatcher("listContacts.jsp").forward(request, response);
+    request.setAttribute("firstPage", ContactsApiServlet.toJson(page));
+    request.setAttribute("pageSize", pageSize);
+    return "/listContacts.jsp";
   }
 }
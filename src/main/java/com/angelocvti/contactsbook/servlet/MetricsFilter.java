@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import com.angelocvti.contactsbook.metrics.Metrics;
+import com.angelocvti.contactsbook.metrics.OperationMetrics;
+import java.io.IOException;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Times every request by the name of the servlet that handles it. Forwards are timed too, so the
+ * rendering of the JSPs shows up under the servlet "jsp" apart from the servlet that forwarded.
+ * Asynchronous requests are timed until they complete, including the time queued for a database
+ * thread and the rendering of the JSP they dispatch to.
+ *
+ * @author Angelo Cavalcanti
+ */
+public class MetricsFilter extends HttpFilter {
+
+  @Override
+  protected void doFilter(
+      HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    long start = System.nanoTime();
+    OperationMetrics metrics =
+        Metrics.INSTANCE.servlet(request.getHttpServletMapping().getServletName());
+    boolean async = false;
+    boolean failed = true;
+    try {
+      chain.doFilter(request, response);
+      async = request.isAsyncStarted();
+      failed = response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+    } finally {
+      if (async) {
+        request.getAsyncContext().addListener(new CompletionListener(metrics, start));
+      } else {
+        metrics.record(System.nanoTime() - start, failed);
+      }
+    }
+  }
+
+  /** Records an asynchronous request once it completes, whether normally, by error or timeout. */
+  private static final class CompletionListener implements AsyncListener {
+
+    private final OperationMetrics metrics;
+    private final long start;
+
+    private CompletionListener(OperationMetrics metrics, long start) {
+      this.metrics = metrics;
+      this.start = start;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      HttpServletResponse response = (HttpServletResponse) event.getSuppliedResponse();
+      metrics.record(
+          System.nanoTime() - start,
+          response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {}
+
+    @Override
+    public void onError(AsyncEvent event) {}
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
+  }
+}
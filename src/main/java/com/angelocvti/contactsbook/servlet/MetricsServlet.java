@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import com.angelocvti.contactsbook.metrics.Metrics;
+import com.angelocvti.contactsbook.metrics.PrometheusWriter;
+import com.angelocvti.contactsbook.persistence.ConnectionFactory;
+import com.angelocvti.contactsbook.persistence.ConnectionPool;
+import com.angelocvti.contactsbook.persistence.ContactCache;
+import com.angelocvti.contactsbook.persistence.ContactDaoFactory;
+import com.angelocvti.contactsbook.persistence.DatabaseExecutor;
+import java.io.IOException;
+import java.util.Optional;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Exposes the latencies of the servlets, the Dao methods and the connection pool, along with the
+ * pool, read replica, database executor and cache statistics, in the Prometheus text format.
+ *
+ * @author Angelo Cavalcanti
+ */
+@WebServlet(
+    name = "Metrics",
+    urlPatterns = {"/metrics"})
+public class MetricsServlet extends HttpServlet {
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    response.setContentType(PrometheusWriter.CONTENT_TYPE);
+    response.setHeader("Cache-Control", "no-store");
+
+    PrometheusWriter writer = new PrometheusWriter(response.getWriter());
+    writer.writeRegistry(Metrics.INSTANCE);
+    writePool(writer, ConnectionFactory.INSTANCE.getStatistics());
+    if (ConnectionFactory.INSTANCE.hasReplicas()) {
+      writeReplicas(writer, ConnectionFactory.INSTANCE);
+    }
+    writeExecutor(writer, DatabaseExecutor.INSTANCE);
+    Optional<ContactCache.Statistics> cache = ContactDaoFactory.INSTANCE.getCacheStatistics();
+    if (cache.isPresent()) {
+      writeCache(writer, cache.get());
+    }
+  }
+
+  private static void writePool(PrometheusWriter writer, ConnectionPool.Statistics pool)
+      throws IOException {
+    writer.gauge("contacts_book_pool_active_connections", "Connections in use", pool.getActive());
+    writer.gauge("contacts_book_pool_idle_connections", "Connections idle", pool.getIdle());
+    writer.gauge("contacts_book_pool_max_connections", "Maximum pool size", pool.getMaxSize());
+    writer.gauge(
+        "contacts_book_pool_waiters", "Threads waiting for a connection", pool.getWaiters());
+    writer.counter(
+        "contacts_book_pool_acquires_total", "Connections handed out", pool.getAcquireCount());
+    writer.counter(
+        "contacts_book_pool_acquire_timeouts_total",
+        "Connection requests that timed out",
+        pool.getAcquireTimeouts());
+    writer.counter(
+        "contacts_book_pool_leaks_total",
+        "Connections held past the leak detection threshold",
+        pool.getLeaksDetected());
+    writer.counter(
+        "contacts_book_pool_statement_cache_hits_total",
+        "Prepared statements reused from the per-connection cache",
+        pool.getStatementCacheHits());
+    writer.counter(
+        "contacts_book_pool_statement_cache_misses_total",
+        "Prepared statements that had to be prepared",
+        pool.getStatementCacheMisses());
+  }
+
+  private static void writeReplicas(PrometheusWriter writer, ConnectionFactory factory)
+      throws IOException {
+    writer.gauge("contacts_book_replicas", "Read replicas configured", factory.getReplicaCount());
+    writer.gauge(
+        "contacts_book_replicas_healthy",
+        "Read replicas passing the health check",
+        factory.getHealthyReplicaCount());
+    writer.counter(
+        "contacts_book_replica_reads_total",
+        "Read connections borrowed from a replica",
+        factory.getReplicaReads());
+    writer.counter(
+        "contacts_book_replica_fallbacks_total",
+        "Read connections borrowed from the primary because no replica could serve them",
+        factory.getReplicaFallbacks());
+  }
+
+  private static void writeExecutor(PrometheusWriter writer, DatabaseExecutor executor)
+      throws IOException {
+    writer.gauge(
+        "contacts_book_executor_active_threads",
+        "Database threads running a request",
+        executor.getActiveCount());
+    writer.gauge(
+        "contacts_book_executor_max_threads", "Database threads", executor.getMaxThreads());
+    writer.gauge(
+        "contacts_book_executor_queued_requests",
+        "Requests waiting for a database thread",
+        executor.getQueueSize());
+    writer.counter(
+        "contacts_book_executor_rejections_total",
+        "Requests answered 503 because the queue was full",
+        executor.getRejectedCount());
+  }
+
+  private static void writeCache(PrometheusWriter writer, ContactCache.Statistics cache)
+      throws IOException {
+    writer.gauge("contacts_book_cache_size", "Contacts cached", cache.getSize());
+    writer.gauge("contacts_book_cache_max_size", "Contact cache capacity", cache.getMaxSize());
+    writer.counter("contacts_book_cache_hits_total", "Contact cache hits", cache.getHits());
+    writer.counter("contacts_book_cache_misses_total", "Contact cache misses", cache.getMisses());
+    writer.counter(
+        "contacts_book_cache_evictions_total",
+        "Contacts evicted from the cache",
+        cache.getEvictions());
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import com.angelocvti.contactsbook.model.Contact;
+import com.angelocvti.contactsbook.persistence.ContactDao;
+import com.angelocvti.contactsbook.persistence.Page;
+import com.angelocvti.contactsbook.persistence.UnitOfWork;
+import java.io.IOException;
+import java.util.Collections;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The list page with the contacts matching a search text. It is sent with the first page of
+ * results, as JSON, and fetches the following ones from /api/contacts?q= as the table is scrolled.
+ *
+ * @author Angelo Cavalcanti
+ */
+@WebServlet(
+    name = "SearchContacts",
+    urlPatterns = {"/searchContacts"},
+    asyncSupported = true)
+public class SearchContactsServlet extends HttpServlet {
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    AsyncRequests.dispatch(request, response, SearchContactsServlet::search);
+  }
+
+  private static String search(HttpServletRequest request, HttpServletResponse response) {
+    String query = request.getParameter("q") == null ? "" : request.getParameter("q").trim();
+    String offset = request.getParameter("offset");
+    String size = request.getParameter("size");
+    int pageSize = Page.capSize(size == null ? null : Integer.valueOf(size));
+
+    Page<Contact> page;
+    if (query.length() < ContactDao.SEARCH_MIN_LENGTH) {
+      page = new Page<>(Collections.emptyList(), null, null);
+      request.setAttribute(
+          "searchMessage",
+          "Type at least " + ContactDao.SEARCH_MIN_LENGTH + " characters to search.");
+    } else {
+      UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+      page =
+          unitOfWork
+              .contacts()
+              .search(query, offset == null ? 0 : Long.parseLong(offset), pageSize);
+      unitOfWork.commit();
+    }
+
+    request.setAttribute("query", query);
+    request.setAttribute("firstPage", ContactsApiServlet.toJson(page));
+    request.setAttribute("pageSize", pageSize);
+
+    return "/listContacts.jsp";
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.servlet.ServletContext;
+
+/**
+ * Content fingerprints of the style sheets, scripts and images of the application, computed once
+ * when it starts. A page that links an asset through its {@link #getUrls() versioned URL} lets the
+ * browser keep it for a year, as a new version of the file gets a new URL.
+ *
+ * <p>The style sheets link the images they use through the same URLs: their url() references to
+ * other assets are rewritten with the fingerprints when the application starts, and the rewritten
+ * sheets, served by {@link StylesheetServlet}, are fingerprinted in turn, so a new image gives its
+ * sheets new URLs too.
+ *
+ * @author Angelo Cavalcanti
+ */
+final class StaticAssets {
+
+  private static final String[] DIRECTORIES = {"/css/", "/js/", "/images/"};
+  private static final int FINGERPRINT_LENGTH = 12;
+  private static final Pattern URL_REFERENCE =
+      Pattern.compile("url\\(\\s*(['\"]?)([^'\")\\s?#:]+)\\1\\s*\\)");
+
+  private final Map<String, String> fingerprints;
+  private final Map<String, String> urls;
+  private final Map<String, byte[]> stylesheets;
+
+  private StaticAssets(Map<String, String> fingerprints, Map<String, byte[]> stylesheets) {
+    this.fingerprints = Collections.unmodifiableMap(fingerprints);
+    this.urls = Collections.unmodifiableMap(versionedUrls(fingerprints));
+    this.stylesheets = Collections.unmodifiableMap(stylesheets);
+  }
+
+  static StaticAssets scan(ServletContext context) {
+    Map<String, byte[]> contents = new HashMap<>();
+    for (String directory : DIRECTORIES) {
+      scan(context, directory, contents);
+    }
+    Map<String, String> fingerprints = new HashMap<>();
+    Map<String, byte[]> stylesheets = new HashMap<>();
+    contents.forEach(
+        (path, content) -> {
+          if (!path.endsWith(".css")) {
+            fingerprints.put(path, fingerprint(content));
+          }
+        });
+    // The sheets link only images and fonts, which are fingerprinted by now.
+    Map<String, String> urls = versionedUrls(fingerprints);
+    contents.forEach(
+        (path, content) -> {
+          if (path.endsWith(".css")) {
+            byte[] rewritten = rewrite(path, content, urls);
+            stylesheets.put(path, rewritten);
+            fingerprints.put(path, fingerprint(rewritten));
+          }
+        });
+    return new StaticAssets(fingerprints, stylesheets);
+  }
+
+  /**
+   * @return the URL with the fingerprint of each asset, by its path relative to the root of the
+   *     application, such as "css/background.css".
+   */
+  Map<String, String> getUrls() {
+    return urls;
+  }
+
+  /** True if the version is the fingerprint of the current content of the asset. */
+  boolean isCurrent(String path, String version) {
+    return version != null && version.equals(fingerprints.get(path));
+  }
+
+  /** The fingerprint of the current content of the asset, null if it isn't one. */
+  String getFingerprint(String path) {
+    return fingerprints.get(path);
+  }
+
+  /** The style sheet with its references rewritten to versioned URLs, null if there is none. */
+  byte[] getStylesheet(String path) {
+    return stylesheets.get(path);
+  }
+
+  private static Map<String, String> versionedUrls(Map<String, String> fingerprints) {
+    Map<String, String> versioned = new HashMap<>();
+    fingerprints.forEach((path, fingerprint) -> versioned.put(path, path + "?v=" + fingerprint));
+    return versioned;
+  }
+
+  private static void scan(ServletContext context, String directory, Map<String, byte[]> result) {
+    Set<String> paths = context.getResourcePaths(directory);
+    if (paths == null) {
+      return;
+    }
+    for (String path : paths) {
+      if (path.endsWith("/")) {
+        scan(context, path, result);
+      } else {
+        result.put(path.substring(1), read(context, path));
+      }
+    }
+  }
+
+  /** Replaces each relative url() of the sheet that names an asset by the asset's versioned URL. */
+  private static byte[] rewrite(String path, byte[] content, Map<String, String> urls) {
+    URI sheet = URI.create("/" + path);
+    Matcher matcher = URL_REFERENCE.matcher(new String(content, StandardCharsets.UTF_8));
+    StringBuffer rewritten = new StringBuffer();
+    while (matcher.find()) {
+      String reference = matcher.group(2);
+      String url = urls.get(sheet.resolve(reference).getPath().substring(1));
+      String replacement =
+          url == null
+              ? matcher.group()
+              : "url("
+                  + matcher.group(1)
+                  + reference
+                  + url.substring(url.indexOf('?'))
+                  + matcher.group(1)
+                  + ")";
+      matcher.appendReplacement(rewritten, Matcher.quoteReplacement(replacement));
+    }
+    matcher.appendTail(rewritten);
+    return rewritten.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] read(ServletContext context, String path) {
+    try (InputStream in = context.getResourceAsStream(path)) {
+      ByteArrayOutputStream content = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        content.write(buffer, 0, read);
+      }
+      return content.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static String fingerprint(byte[] content) {
+    try {
+      StringBuilder hex = new StringBuilder();
+      for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.substring(0, FINGERPRINT_LENGTH);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
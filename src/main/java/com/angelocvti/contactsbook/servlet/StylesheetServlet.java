@@ -0,0 +1,69 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the style sheets as rewritten by {@link StaticAssets}, linking the images through their
+ * versioned URLs, with the fingerprint of the sheet as its ETag. The {@link CacheControlFilter}
+ * decides how long they are kept, as for the other static files.
+ *
+ * @author Angelo Cavalcanti
+ */
+@WebServlet(
+    name = "Stylesheets",
+    urlPatterns = {"/css/*"})
+public class StylesheetServlet extends HttpServlet {
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    StaticAssets assets = ApplicationListener.staticAssets(getServletContext());
+    String path = "css" + (request.getPathInfo() == null ? "" : request.getPathInfo());
+    byte[] stylesheet = assets.getStylesheet(path);
+    if (stylesheet == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+
+    String etag = "\"" + assets.getFingerprint(path) + "\"";
+    response.setHeader("ETag", etag);
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    // Compared weakly: the compression filter makes the ETag of a gzipped sheet weak.
+    if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+    response.setContentType("text/css");
+    response.setCharacterEncoding("UTF-8");
+    response.setContentLength(stylesheet.length);
+    response.getOutputStream().write(stylesheet);
+  }
+}
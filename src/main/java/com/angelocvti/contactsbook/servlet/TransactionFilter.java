@@ -0,0 +1,193 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.servlet;
+
+import com.angelocvti.contactsbook.config.Environment;
+import com.angelocvti.contactsbook.persistence.Books;
+import com.angelocvti.contactsbook.persistence.ConnectionFactory;
+import com.angelocvti.contactsbook.persistence.UnitOfWork;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.util.Locale;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Binds a {@link com.angelocvti.contactsbook.persistence.UnitOfWork UnitOfWork} to every request,
+ * so all the Dao calls made while handling it share one connection and one transaction. The
+ * transaction is committed when the request completes normally and rolled back when it fails, and
+ * the connection is always given back to the pool. A connection is only borrowed if the request
+ * touches the database.
+ *
+ * <p>Servlets commit themselves before redirecting or forwarding to a JSP, so the client never sees
+ * a response ahead of the commit and no connection is held while the page is rendered. A request
+ * that goes asynchronous hands its unit of work over to the thread that completes it, see {@link
+ * AsyncRequests}.
+ *
+ * <p>The unit of work is scoped to one address book: the one given by the parameter "book", which
+ * the session remembers for the requests that follow, or else the last one the session chose, or
+ * else the {@link Books#DEFAULT_ID default book}. A book that isn't a number is answered 400, and
+ * one that doesn't exist or that the user of the request may not use 404. The books with an owner
+ * are only available to the user the container authenticated under that name, and the book the
+ * session remembers is checked again on every request. The books without an owner are shared by
+ * every client: without authentication configured in the container they are the only ones
+ * available, and they are not isolated from each other. The parameter is only read from the body of
+ * urlencoded forms: for other bodies, such as the multipart uploads and CSV files streamed by
+ * {@link ImportContactsServlet}, it is read from the query string, so the body is left unread for
+ * the servlet.
+ *
+ * <p>With read replicas configured, a write records its time in the session, and the requests of
+ * that session read from the primary for the next DB_REPLICA_STICKY_MS, so clients see their own
+ * writes even when the replicas lag behind.
+ *
+ * @author Angelo Cavalcanti
+ */
+public class TransactionFilter extends HttpFilter {
+
+  private static final String ATTRIBUTE = UnitOfWork.class.getName();
+  private static final String BOOK = TransactionFilter.class.getName() + ".book";
+  private static final String LAST_WRITE = TransactionFilter.class.getName() + ".lastWrite";
+  private static final long STICKY_MILLIS = Environment.getLong("DB_REPLICA_STICKY_MS", 5_000);
+
+  /**
+   * Returns the unit of work bound to the request.
+   *
+   * @throws IllegalStateException if the request didn't go through this filter.
+   * @author Angelo Cavalcanti
+   */
+  public static UnitOfWork unitOfWork(ServletRequest request) {
+    UnitOfWork unitOfWork = (UnitOfWork) request.getAttribute(ATTRIBUTE);
+    if (unitOfWork == null) {
+      throw new IllegalStateException("No unit of work is bound to the request.");
+    }
+    return unitOfWork;
+  }
+
+  @Override
+  protected void doFilter(
+      HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    Long bookId = bookId(request, response);
+    if (bookId == null) {
+      return;
+    }
+    UnitOfWork unitOfWork = createUnitOfWork(request, bookId);
+    request.setAttribute(ATTRIBUTE, unitOfWork);
+    boolean async = false;
+    try {
+      chain.doFilter(request, response);
+      async = request.isAsyncStarted();
+      if (!async) {
+        unitOfWork.commit();
+      }
+    } finally {
+      if (!async) {
+        request.removeAttribute(ATTRIBUTE);
+        unitOfWork.close();
+      }
+    }
+  }
+
+  /**
+   * Reads the book the request is for, answering the request and returning null if the book given
+   * can't be used.
+   */
+  private static Long bookId(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String user = request.getRemoteUser();
+    String parameter = bookParameter(request);
+    if (parameter == null) {
+      HttpSession session = request.getSession(false);
+      Long chosen = session == null ? null : (Long) session.getAttribute(BOOK);
+      // The session may outlive the user it chose the book for.
+      long bookId =
+          chosen != null && Books.INSTANCE.isAvailableTo(chosen, user) ? chosen : Books.DEFAULT_ID;
+      if (!Books.INSTANCE.isAvailableTo(bookId, user)) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND, "No address book was found.");
+        return null;
+      }
+      return bookId;
+    }
+
+    long bookId;
+    try {
+      bookId = Long.parseLong(parameter.trim());
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The book must be a number.");
+      return null;
+    }
+    if (!Books.INSTANCE.isAvailableTo(bookId, user)) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "No address book was found.");
+      return null;
+    }
+    request.getSession().setAttribute(BOOK, bookId);
+    return bookId;
+  }
+
+  private static String bookParameter(HttpServletRequest request) throws IOException {
+    String contentType = request.getContentType();
+    if (contentType == null
+        || contentType.toLowerCase(Locale.ROOT).startsWith("application/x-www-form-urlencoded")) {
+      return request.getParameter("book");
+    }
+    String queryString = request.getQueryString();
+    if (queryString == null) {
+      return null;
+    }
+    for (String pair : queryString.split("&")) {
+      if (pair.startsWith("book=")) {
+        String value = pair.substring("book=".length());
+        try {
+          return URLDecoder.decode(value, "UTF-8");
+        } catch (IllegalArgumentException e) {
+          return value;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static UnitOfWork createUnitOfWork(HttpServletRequest request, long bookId) {
+    if (!ConnectionFactory.INSTANCE.hasReplicas()) {
+      return UnitOfWork.builder().withBookId(bookId).build();
+    }
+    return UnitOfWork.builder()
+        .withBookId(bookId)
+        .withPrimaryReads(wroteRecently(request.getSession(false)))
+        .withWriteListener(
+            () -> request.getSession().setAttribute(LAST_WRITE, System.currentTimeMillis()))
+        .build();
+  }
+
+  private static boolean wroteRecently(HttpSession session) {
+    Long lastWrite = session == null ? null : (Long) session.getAttribute(LAST_WRITE);
+    return lastWrite != null && System.currentTimeMillis() - lastWrite < STICKY_MILLIS;
+  }
+}
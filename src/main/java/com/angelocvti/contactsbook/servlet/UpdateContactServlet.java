@@ -24,50 +24,89 @@
 
 package com.angelocvti.contactsbook.servlet;
 
+import com.angelocvti.contactsbook.exceptions.ContactNotFoundException;
+import com.angelocvti.contactsbook.format.ContactFormats;
 import com.angelocvti.contactsbook.model.Contact;
-import com.angelocvti.contactsbook.persistence.ConnectionFactory;
-import com.angelocvti.contactsbook.persistence.ContactDao;
+import com.angelocvti.contactsbook.persistence.UnitOfWork;
 import java.io.IOException;
 import java.lang.reflect.MalformedParametersException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** @author Angelo Cavalcanti */
+/**
+ * Updates the contact of the form and redirects to the list, or, when the request accepts JSON,
+ * answers with the contact as updated.
+ *
+ * @author Angelo Cavalcanti
+ */
 @WebServlet(
     name = "UpdateContact",
-    urlPatterns = {"/updateContact"})
+    urlPatterns = {"/updateContact"},
+    asyncSupported = true)
 public class UpdateContactServlet extends HttpServlet {
 
   @Override
   protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws ServletException, IOException {
+    AsyncRequests.dispatch(request, response, UpdateContactServlet::update);
+  }
+
+  private static String update(HttpServletRequest request, HttpServletResponse response)
       throws IOException {
-    Calendar birthdate;
-    try {
-      Date date = new SimpleDateFormat("dd/MM/yyyy").parse(request.getParameter("birthdate"));
-      birthdate = Calendar.getInstance();
-      birthdate.setTime(date);
-    } catch (ParseException e) {
-      throw new MalformedParametersException("Error parsing birthdate parameter.");
+    if (ContactsApiServlet.acceptsJson(request)) {
+      UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+      try {
+        Long id = Long.valueOf(request.getParameter("id"));
+        unitOfWork.contacts().update(id, readContact(request));
+        Contact updated =
+            unitOfWork
+                .contacts()
+                .findById(id)
+                .orElseThrow(() -> new ContactNotFoundException("No contact was found."));
+        unitOfWork.commit();
+        ContactsApiServlet.writeContact(response, updated);
+      } catch (MalformedParametersException e) {
+        ContactsApiServlet.sendError(
+            unitOfWork, response, new IllegalArgumentException(e.getMessage(), e));
+      } catch (RuntimeException e) {
+        ContactsApiServlet.sendError(unitOfWork, response, e);
+      }
+      return null;
     }
 
-    ContactDao.builder()
-        .withConnection(ConnectionFactory.INSTANCE.getConnection())
-        .build()
-        .update(
-            Long.valueOf(request.getParameter("id")),
-            Contact.builder()
-                .withName(request.getParameter("name"))
-                .withEmail(request.getParameter("email"))
-                .withAddress(request.getParameter("address"))
-                .withBirthdate(birthdate)
-                .build());
+    Contact contact = readContact(request);
+    UnitOfWork unitOfWork = TransactionFilter.unitOfWork(request);
+    unitOfWork.contacts().update(Long.valueOf(request.getParameter("id")), contact);
+    unitOfWork.commit();
 
     response.sendRedirect(request.getContextPath() + "/listContact");
+    return null;
+  }
+
+  private static Contact readContact(HttpServletRequest request) {
+    LocalDate birthdate;
+    try {
+      birthdate =
+          LocalDate.parse(request.getParameter("birthdate"), ContactFormats.BIRTHDATE_FORMATTER);
+    } catch (DateTimeParseException e) {
+      throw new MalformedParametersException("Error parsing birthdate parameter.");
+    }
+
+    Contact.ContactBuilder contact =
+        Contact.builder()
+            .withName(request.getParameter("name"))
+            .withEmail(request.getParameter("email"))
+            .withAddress(request.getParameter("address"))
+            .withBirthdate(birthdate);
+    String version = request.getParameter("version");
+    if (version != null && !version.isEmpty()) {
+      contact.withVersion(Integer.valueOf(version));
+    }
+    return contact.build();
   }
 }
@@ -1,9 +1,158 @@
+create table books
+(
+    id             BIGSERIAL,
+    name           VARCHAR(255) NOT NULL,
+    owner          VARCHAR(255),
+    primary key (id)
+);
+
+insert into books (name) values ('Contacts');
+
 create table contacts
 (
     id             BIGSERIAL,
+    book_id        BIGINT NOT NULL REFERENCES books (id),
     name           VARCHAR(255),
     email          VARCHAR(255),
     address        VARCHAR(255),
     birthdate      DATE,
-    primary key (id)
-);
\ No newline at end of file
+    version        INTEGER NOT NULL DEFAULT 0,
+    primary key (book_id, id)
+) partition by hash (book_id);
+
+do
+$$
+begin
+    for remainder in 0..15 loop
+        execute format('create table contacts_p%s partition of contacts'
+            ' for values with (modulus 16, remainder %s)', remainder, remainder);
+    end loop;
+end;
+$$;
+
+create unique index contacts_email_key on contacts (book_id, lower(email));
+
+create extension if not exists pg_trgm;
+
+create extension if not exists btree_gist;
+
+create index contacts_search_idx on contacts
+    using gist (book_id, (name || ' ' || email || ' ' || address) gist_trgm_ops(siglen = 256));
+
+create index contacts_birthday_idx on contacts
+    (book_id, cast(extract(month from birthdate) * 100 + extract(day from birthdate) as integer));
+
+-- The revision of each book is the sum of 16 slots, each bumped by the writers whose backend maps
+-- to it, so concurrent writers of a book seldom wait for each other on the same row.
+create table contacts_revision
+(
+    book_id        BIGINT NOT NULL REFERENCES books (id),
+    slot           SMALLINT NOT NULL,
+    revision       BIGINT NOT NULL,
+    primary key (book_id, slot)
+);
+
+create function contacts_bump_revision() returns trigger as
+$$
+begin
+    if tg_op = 'INSERT' then
+        insert into contacts_revision (book_id, slot, revision)
+            select distinct book_id, pg_backend_pid() % 16, 1 from new_rows order by book_id
+        on conflict (book_id, slot) do update set revision = contacts_revision.revision + 1;
+    elsif tg_op = 'UPDATE' then
+        insert into contacts_revision (book_id, slot, revision)
+            select book_id, pg_backend_pid() % 16, 1
+                from (select book_id from new_rows union select book_id from old_rows) as changed
+                order by book_id
+        on conflict (book_id, slot) do update set revision = contacts_revision.revision + 1;
+    elsif tg_op = 'DELETE' then
+        insert into contacts_revision (book_id, slot, revision)
+            select distinct book_id, pg_backend_pid() % 16, 1 from old_rows order by book_id
+        on conflict (book_id, slot) do update set revision = contacts_revision.revision + 1;
+    else
+        update contacts_revision set revision = revision + 1;
+    end if;
+    return null;
+end;
+$$ language plpgsql;
+
+create trigger contacts_revision_insert_trigger
+    after insert on contacts referencing new table as new_rows
+    for each statement execute function contacts_bump_revision();
+
+create trigger contacts_revision_update_trigger
+    after update on contacts referencing old table as old_rows new table as new_rows
+    for each statement execute function contacts_bump_revision();
+
+create trigger contacts_revision_delete_trigger
+    after delete on contacts referencing old table as old_rows
+    for each statement execute function contacts_bump_revision();
+
+create trigger contacts_revision_truncate_trigger
+    after truncate on contacts
+    for each statement execute function contacts_bump_revision();
+
+-- Announces the changes to the contacts on the channel 'contact_changes', as 'created 1 42',
+-- 'updated 1 42', 'deleted 1 42' or, for a statement changing over 100 rows, 'reload 1'.
+create function contacts_notify_change() returns trigger as
+$$
+begin
+    if tg_op = 'INSERT' then
+        if (select count(*) from new_rows) > 100 then
+            perform pg_notify('contact_changes', 'reload ' || book_id)
+                from (select distinct book_id from new_rows) as books;
+        else
+            perform pg_notify('contact_changes', 'created ' || book_id || ' ' || id)
+                from (select book_id, id from new_rows order by id) as changed;
+        end if;
+    elsif tg_op = 'UPDATE' then
+        if (select count(*) from new_rows) > 100 then
+            perform pg_notify('contact_changes', 'reload ' || book_id)
+                from (select distinct book_id from new_rows) as books;
+        else
+            perform pg_notify('contact_changes', 'updated ' || book_id || ' ' || id)
+                from (select book_id, id from new_rows order by id) as changed;
+        end if;
+    elsif tg_op = 'DELETE' then
+        if (select count(*) from old_rows) > 100 then
+            perform pg_notify('contact_changes', 'reload ' || book_id)
+                from (select distinct book_id from old_rows) as books;
+        else
+            perform pg_notify('contact_changes', 'deleted ' || book_id || ' ' || id)
+                from (select book_id, id from old_rows order by id) as changed;
+        end if;
+    else
+        perform pg_notify('contact_changes', 'reload');
+    end if;
+    return null;
+end;
+$$ language plpgsql;
+
+create trigger contacts_notify_insert_trigger
+    after insert on contacts referencing new table as new_rows
+    for each statement execute function contacts_notify_change();
+
+create trigger contacts_notify_update_trigger
+    after update on contacts referencing old table as old_rows new table as new_rows
+    for each statement execute function contacts_notify_change();
+
+create trigger contacts_notify_delete_trigger
+    after delete on contacts referencing old table as old_rows
+    for each statement execute function contacts_notify_change();
+
+create trigger contacts_notify_truncate_trigger
+    after truncate on contacts
+    for each statement execute function contacts_notify_change();
+
+-- Likely duplicate contacts found by the duplicate detection job, replaced on each run of a book.
+create table contact_duplicates
+(
+    book_id      BIGINT NOT NULL REFERENCES books (id),
+    contact_id   BIGINT NOT NULL,
+    duplicate_id BIGINT NOT NULL,
+    score        REAL   NOT NULL,
+    primary key (book_id, contact_id, duplicate_id)
+);
+
+create index contact_duplicates_score_idx
+    on contact_duplicates (book_id, score desc, contact_id, duplicate_id);
@@ -0,0 +1,8 @@
+-- Makes the emails unique ignoring case, so the duplicate check no longer races and inserts can
+-- use INSERT ... ON CONFLICT. The index is built without locking the table for writes, so this
+-- script must run outside a transaction block.
+--
+-- Duplicated emails must be resolved first; they can be listed with:
+--   select lower(email), array_agg(id) from contacts group by lower(email) having count(*) > 1;
+
+create unique index concurrently if not exists contacts_email_key on contacts (lower(email));
@@ -0,0 +1,10 @@
+-- Trigram index used by the contacts search. It serves both the substring match
+-- (ILIKE '%term%') and the ranking by word similarity (ORDER BY term <<-> ...), so the best
+-- matches are read in index order instead of sorting every match. The expression must be the same
+-- used by ContactDao.search. Requires PostgreSQL 13+ (siglen) and runs outside a transaction
+-- block, since the index is built without locking the table for writes.
+
+create extension if not exists pg_trgm;
+
+create index concurrently if not exists contacts_search_idx on contacts
+    using gist ((name || ' ' || email || ' ' || address) gist_trgm_ops(siglen = 256));
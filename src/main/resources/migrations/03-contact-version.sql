@@ -0,0 +1,5 @@
+-- Adds the version used for optimistic locking: every update increments it, and an update made
+-- from an edit form only applies if the contact is still at the version the form was loaded with.
+-- Since PostgreSQL 11 adding a column with a constant default doesn't rewrite the table.
+
+alter table contacts add column if not exists version integer not null default 0;
@@ -0,0 +1,26 @@
+-- Keeps a counter that changes whenever the table contacts does, so the JSON API can derive its
+-- ETags from one single-row read. The trigger runs once per statement, in the writing transaction:
+-- readers never see a new revision before the rows it stands for are committed, and a batch
+-- insert bumps it once. Statements that change no rows bump it too, which only costs a refetch.
+
+create table if not exists contacts_revision
+(
+    id             BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    revision       BIGINT NOT NULL
+);
+
+insert into contacts_revision (revision) values (0) on conflict do nothing;
+
+create or replace function contacts_bump_revision() returns trigger as
+$$
+begin
+    update contacts_revision set revision = revision + 1;
+    return null;
+end;
+$$ language plpgsql;
+
+drop trigger if exists contacts_revision_trigger on contacts;
+
+create trigger contacts_revision_trigger
+    after insert or update or delete or truncate on contacts
+    for each statement execute function contacts_bump_revision();
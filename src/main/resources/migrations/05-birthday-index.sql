@@ -0,0 +1,11 @@
+-- Expression index on the birthday of the contacts, as month * 100 + day (a birthdate of
+-- 1990-12-25 has the key 1225), used by ContactDao.findUpcomingBirthdays. Any window of days maps to
+-- at most two ranges of keys, read with index range scans whatever the year of birth. The
+-- expression must be the same used by ContactDao. Runs outside a transaction block, since the index
+-- is built without locking the table for writes.
+
+create index concurrently if not exists contacts_birthday_idx on contacts
+    (cast(extract(month from birthdate) * 100 + extract(day from birthdate) as integer));
+
+-- Statistics on the indexed expression, so the planner estimates how many birthdays fall in a window.
+analyze contacts;
@@ -0,0 +1,129 @@
+-- Splits the contacts into address books, one per tenant. Every contact belongs to a book, its
+-- email is unique within that book, and the table is hash partitioned by book so the queries of a
+-- book, which always filter on book_id, are pruned to one partition and use that partition's
+-- indexes. The existing contacts go to the book 1. The indexes lead with book_id too, so a
+-- search or a birthday scan only walks the entries of one book; the search index needs btree_gist
+-- for it. The revision used for ETags is kept per book, bumped once per statement for each book
+-- the statement changed.
+--
+-- The table is rebuilt, so the script runs in one transaction holding an exclusive lock on
+-- contacts for the time the rows take to copy; run it in a maintenance window. It needs
+-- PostgreSQL 13+, like 02-search-index.sql.
+
+begin;
+
+create table if not exists books
+(
+    id             BIGSERIAL,
+    name           VARCHAR(255) NOT NULL,
+    primary key (id)
+);
+
+insert into books (id, name) values (1, 'Contacts') on conflict do nothing;
+
+select setval('books_id_seq', greatest((select max(id) from books), 1));
+
+alter table contacts rename to contacts_unpartitioned;
+
+alter index contacts_pkey rename to contacts_unpartitioned_pkey;
+
+create table contacts
+(
+    id             BIGINT NOT NULL DEFAULT nextval('contacts_id_seq'),
+    book_id        BIGINT NOT NULL REFERENCES books (id),
+    name           VARCHAR(255),
+    email          VARCHAR(255),
+    address        VARCHAR(255),
+    birthdate      DATE,
+    version        INTEGER NOT NULL DEFAULT 0,
+    primary key (book_id, id)
+) partition by hash (book_id);
+
+do
+$$
+begin
+    for remainder in 0..15 loop
+        execute format('create table contacts_p%s partition of contacts'
+            ' for values with (modulus 16, remainder %s)', remainder, remainder);
+    end loop;
+end;
+$$;
+
+insert into contacts (id, book_id, name, email, address, birthdate, version)
+    select id, 1, name, email, address, birthdate, version from contacts_unpartitioned;
+
+alter sequence contacts_id_seq owned by contacts.id;
+
+drop table contacts_unpartitioned;
+
+create unique index contacts_email_key on contacts (book_id, lower(email));
+
+create extension if not exists pg_trgm;
+
+create extension if not exists btree_gist;
+
+create index contacts_search_idx on contacts
+    using gist (book_id, (name || ' ' || email || ' ' || address) gist_trgm_ops(siglen = 256));
+
+create index contacts_birthday_idx on contacts
+    (book_id, cast(extract(month from birthdate) * 100 + extract(day from birthdate) as integer));
+
+alter table contacts_revision rename to contacts_revision_global;
+
+alter index contacts_revision_pkey rename to contacts_revision_global_pkey;
+
+create table contacts_revision
+(
+    book_id        BIGINT PRIMARY KEY REFERENCES books (id),
+    revision       BIGINT NOT NULL
+);
+
+insert into contacts_revision (book_id, revision)
+    select 1, revision from contacts_revision_global;
+
+drop table contacts_revision_global;
+
+drop function if exists contacts_bump_revision() cascade;
+
+create function contacts_bump_revision() returns trigger as
+$$
+begin
+    if tg_op = 'INSERT' then
+        insert into contacts_revision (book_id, revision)
+            select distinct book_id, 1 from new_rows order by book_id
+        on conflict (book_id) do update set revision = contacts_revision.revision + 1;
+    elsif tg_op = 'UPDATE' then
+        insert into contacts_revision (book_id, revision)
+            select book_id, 1 from (select book_id from new_rows union select book_id from old_rows)
+                as changed order by book_id
+        on conflict (book_id) do update set revision = contacts_revision.revision + 1;
+    elsif tg_op = 'DELETE' then
+        insert into contacts_revision (book_id, revision)
+            select distinct book_id, 1 from old_rows order by book_id
+        on conflict (book_id) do update set revision = contacts_revision.revision + 1;
+    else
+        update contacts_revision set revision = revision + 1;
+    end if;
+    return null;
+end;
+$$ language plpgsql;
+
+create trigger contacts_revision_insert_trigger
+    after insert on contacts referencing new table as new_rows
+    for each statement execute function contacts_bump_revision();
+
+create trigger contacts_revision_update_trigger
+    after update on contacts referencing old table as old_rows new table as new_rows
+    for each statement execute function contacts_bump_revision();
+
+create trigger contacts_revision_delete_trigger
+    after delete on contacts referencing old table as old_rows
+    for each statement execute function contacts_bump_revision();
+
+create trigger contacts_revision_truncate_trigger
+    after truncate on contacts
+    for each statement execute function contacts_bump_revision();
+
+commit;
+
+analyze contacts;
@@ -0,0 +1,15 @@
+-- Table of the likely duplicate contacts found by the duplicate detection job, reviewed through
+-- /api/duplicates before being merged. Each run replaces the pairs of its book. A pair is kept as
+-- found, so the pairs whose contacts were deleted since are skipped when they are listed.
+
+create table if not exists contact_duplicates
+(
+    book_id      BIGINT NOT NULL REFERENCES books (id),
+    contact_id   BIGINT NOT NULL,
+    duplicate_id BIGINT NOT NULL,
+    score        REAL   NOT NULL,
+    primary key (book_id, contact_id, duplicate_id)
+);
+
+create index if not exists contact_duplicates_score_idx
+    on contact_duplicates (book_id, score desc, contact_id, duplicate_id);
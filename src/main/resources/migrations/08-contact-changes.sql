@@ -0,0 +1,60 @@
+-- Announces every change to the contacts on the channel 'contact_changes', for the change feed
+-- served to the open list pages by /api/events. The notifications are sent when the writing
+-- transaction commits and never if it rolls back. Their payload is the kind of change, the book and
+-- the id of the contact, e.g. 'updated 1 42', read by ContactChanges. A statement changing more
+-- than 100 rows, like an import, announces a 'reload' of each book it changed instead, and a
+-- truncate a 'reload' of every book.
+
+create or replace function contacts_notify_change() returns trigger as
+$$
+begin
+    if tg_op = 'INSERT' then
+        if (select count(*) from new_rows) > 100 then
+            perform pg_notify('contact_changes', 'reload ' || book_id)
+                from (select distinct book_id from new_rows) as books;
+        else
+            perform pg_notify('contact_changes', 'created ' || book_id || ' ' || id)
+                from (select book_id, id from new_rows order by id) as changed;
+        end if;
+    elsif tg_op = 'UPDATE' then
+        if (select count(*) from new_rows) > 100 then
+            perform pg_notify('contact_changes', 'reload ' || book_id)
+                from (select distinct book_id from new_rows) as books;
+        else
+            perform pg_notify('contact_changes', 'updated ' || book_id || ' ' || id)
+                from (select book_id, id from new_rows order by id) as changed;
+        end if;
+    elsif tg_op = 'DELETE' then
+        if (select count(*) from old_rows) > 100 then
+            perform pg_notify('contact_changes', 'reload ' || book_id)
+                from (select distinct book_id from old_rows) as books;
+        else
+            perform pg_notify('contact_changes', 'deleted ' || book_id || ' ' || id)
+                from (select book_id, id from old_rows order by id) as changed;
+        end if;
+    else
+        perform pg_notify('contact_changes', 'reload');
+    end if;
+    return null;
+end;
+$$ language plpgsql;
+
+drop trigger if exists contacts_notify_insert_trigger on contacts;
+create trigger contacts_notify_insert_trigger
+    after insert on contacts referencing new table as new_rows
+    for each statement execute function contacts_notify_change();
+
+drop trigger if exists contacts_notify_update_trigger on contacts;
+create trigger contacts_notify_update_trigger
+    after update on contacts referencing old table as old_rows new table as new_rows
+    for each statement execute function contacts_notify_change();
+
+drop trigger if exists contacts_notify_delete_trigger on contacts;
+create trigger contacts_notify_delete_trigger
+    after delete on contacts referencing old table as old_rows
+    for each statement execute function contacts_notify_change();
+
+drop trigger if exists contacts_notify_truncate_trigger on contacts;
+create trigger contacts_notify_truncate_trigger
+    after truncate on contacts
+    for each statement execute function contacts_notify_change();
@@ -0,0 +1,5 @@
+-- Gives the address books an owner, the name of the user authenticated by the container who may
+-- use the book. A book without an owner, like every book before this script, may be used by any
+-- client, authenticated or not.
+
+alter table books add column if not exists owner VARCHAR(255);
@@ -34,8 +34,8 @@
     <title>Error</title>
     <link href="https://cdn.jsdelivr.net/npm/bootstrap@5.0.0-beta1/dist/css/bootstrap.min.css" rel="stylesheet"
           integrity="sha384-giJF6kkoqNQ00vy+HMDP7azOuL0xtbfIcaT9wjKHr8RbDVddVHyTfAAsrekwKmP1" crossorigin="anonymous">
-    <link href="css/background.css" rel="stylesheet">
-    <link href="css/footer.css" rel="stylesheet">
+    <link href="${assets['css/background.css']}" rel="stylesheet">
+    <link href="${assets['css/footer.css']}" rel="stylesheet">
 </head>
 
 <body id="page_body">
@@ -22,53 +22,320 @@
  * SOFTWARE.
  */
 
-function updateModalUpdateContactBody(element) {
-  const name = document.getElementById(
-    "contact_" + element.dataset.contactId + "_name"
-  ).innerText;
-  const email = document.getElementById(
-    "contact_" + element.dataset.contactId + "_email"
-  ).innerText;
-  const address = document.getElementById(
-    "contact_" + element.dataset.contactId + "_address"
-  ).innerText;
-  const birthdate = document.getElementById(
-    "contact_" + element.dataset.contactId + "_birthdate"
-  ).innerText;
-  document.getElementById("name_input").value = name;
-  document.getElementById("email_input").value = email;
-  document.getElementById("address_input").value = address;
-  document.getElementById("birthdate_input").value = birthdate;
-
-  const hiddenInput = document.createElement("input");
-  hiddenInput.setAttribute("name", "id");
-  hiddenInput.style.display = "none";
-  hiddenInput.value = element.dataset.contactId;
-
-  document.getElementById("update_contact_form").appendChild(hiddenInput);
-}
-
-function updateModalDeleteContactBody(element) {
-  const modalDeleteContactBody = document.getElementById(
-    "modal_delete_contact_body"
+// The table only holds the rows in view, plus a few on each side: the same row elements are
+// filled with other contacts as it is scrolled, and two spacer rows stand for the rest. The
+// contacts are kept in the order of the server, and the pages that follow are fetched from the
+// JSON API when the end of those read comes into view.
+
+// Rows rendered past each end of the visible ones, so that a short scroll finds them ready.
+const OVERSCAN = 10;
+// Height of a row until one is rendered and measured.
+const ESTIMATED_ROW_HEIGHT = 49;
+
+const viewport = document.getElementById("contacts_viewport");
+const tableBody = document.getElementById("contacts_table_body");
+const topSpacer = tableBody.rows[0];
+const bottomSpacer = tableBody.rows[1];
+const rowTemplate = document.getElementById("contact_row_template").content
+  .firstElementChild;
+const pageSize = Number(tableBody.dataset.pageSize);
+const query = tableBody.dataset.query;
+
+const updateContactModal = document.getElementById("modal_update_contact");
+const updateContactForm = document.getElementById("update_contact_form");
+const updateContactError = document.getElementById("update_contact_error");
+const deleteContactModal = document.getElementById("modal_delete_contact");
+const deleteContactForm = document.getElementById("delete_contact_form");
+const deleteContactName = document.getElementById("delete_contact_name");
+const deleteContactError = document.getElementById("delete_contact_error");
+
+const contacts = [];
+const indexById = new Map();
+// The rendered rows, each with its element, its fields and the contact it shows.
+const rows = [];
+let nextCursor = null;
+let hasNextPage = true;
+let loading = false;
+// Incremented when the contacts are read again, so that the pages requested before are ignored.
+let generation = 0;
+let rowHeight = 0;
+let renderScheduled = false;
+
+function addPage(page) {
+  page.contacts.forEach(function (contact) {
+    indexById.set(contact.id, contacts.length);
+    contacts.push(contact);
+  });
+  nextCursor = page.nextCursor;
+  hasNextPage = page.nextCursor !== null;
+}
+
+function loadNextPage() {
+  if (loading || !hasNextPage) {
+    return;
+  }
+  const parameters = new URLSearchParams({ size: pageSize });
+  if (query) {
+    parameters.set("q", query);
+  }
+  if (nextCursor !== null) {
+    parameters.set(query ? "offset" : "after", nextCursor);
+  }
+  const requested = generation;
+  loading = true;
+  fetch("api/contacts?" + parameters, {
+    headers: { Accept: "application/json" },
+  })
+    .then(function (response) {
+      if (!response.ok) {
+        throw new Error(response.statusText);
+      }
+      return response.json();
+    })
+    .then(function (page) {
+      if (requested === generation) {
+        addPage(page);
+        scheduleRender();
+      }
+    })
+    .catch(function () {
+      // Tried again on the next scroll.
+    })
+    .then(function () {
+      if (requested === generation) {
+        loading = false;
+      }
+    });
+}
+
+function scheduleRender() {
+  if (!renderScheduled) {
+    renderScheduled = true;
+    window.requestAnimationFrame(render);
+  }
+}
+
+function render() {
+  renderScheduled = false;
+  const height = rowHeight || ESTIMATED_ROW_HEIGHT;
+  const visible = Math.ceil(
+    Math.max(viewport.clientHeight, window.innerHeight) / height
+  );
+  // The scroll position may be past the contacts left, when some were removed.
+  let first = Math.min(
+    Math.floor(viewport.scrollTop / height) - OVERSCAN,
+    contacts.length - visible - OVERSCAN
   );
+  first = Math.max(0, first);
+  // An even first row keeps the stripes of the rows in place while they are scrolled.
+  first -= first % 2;
+  const last = Math.min(contacts.length, first + visible + 2 * OVERSCAN);
 
-  const message =
-    "Delete " +
-    document.getElementById("contact_" + element.dataset.contactId + "_name")
-      .innerText +
-    "'s contact?";
-  modalDeleteContactBody.innerHTML = message;
+  while (rows.length < last - first) {
+    rows.push(createRow());
+  }
+  while (rows.length > last - first) {
+    rows.pop().element.remove();
+  }
+  for (let i = 0; i < rows.length; i++) {
+    bindRow(rows[i], contacts[first + i]);
+  }
+  topSpacer.cells[0].style.height = first * height + "px";
+  bottomSpacer.cells[0].style.height = (contacts.length - last) * height + "px";
 
-  const deleteContactForm = document.createElement("form");
-  deleteContactForm.setAttribute("id", "delete_contact_form");
-  deleteContactForm.setAttribute("action", "deleteContact");
+  if (rowHeight === 0 && rows.length > 0) {
+    rowHeight = rows[0].element.offsetHeight;
+    scheduleRender();
+  }
+  if (last + OVERSCAN >= contacts.length) {
+    loadNextPage();
+  }
+}
 
-  const hiddenInput = document.createElement("input");
-  hiddenInput.setAttribute("name", "id");
-  hiddenInput.style.display = "none";
-  hiddenInput.value = element.dataset.contactId;
+function createRow() {
+  const element = rowTemplate.cloneNode(true);
+  const fields = {};
+  element.querySelectorAll("[data-field]").forEach(function (field) {
+    fields[field.dataset.field] = field;
+  });
+  tableBody.insertBefore(element, bottomSpacer);
+  return { element: element, fields: fields, contact: null };
+}
 
-  deleteContactForm.appendChild(hiddenInput);
-  modalDeleteContactBody.appendChild(deleteContactForm);
+function bindRow(row, contact) {
+  if (row.contact === contact) {
+    return;
+  }
+  row.contact = contact;
+  row.element.dataset.contactId = contact.id;
+  row.fields.name.textContent = contact.name;
+  row.fields.email.textContent = contact.email;
+  row.fields.email.setAttribute("href", "mailto:" + contact.email);
+  row.fields.address.textContent = contact.address;
+  row.fields.birthdate.textContent = formatBirthdate(contact.birthdate);
 }
+
+function formatBirthdate(isoDate) {
+  return isoDate === null ? "" : isoDate.split("-").reverse().join("/");
+}
+
+function contactOf(element) {
+  const index = indexById.get(Number(element.closest("tr").dataset.contactId));
+  return index === undefined ? undefined : contacts[index];
+}
+
+// Created contacts are only shown once the last page was read, as they come after it.
+function addContact(contact) {
+  const lastContact = contacts[contacts.length - 1];
+  if (
+    query ||
+    hasNextPage ||
+    indexById.has(contact.id) ||
+    (lastContact !== undefined && contact.id < lastContact.id)
+  ) {
+    return;
+  }
+  indexById.set(contact.id, contacts.length);
+  contacts.push(contact);
+  scheduleRender();
+}
+
+function replaceContact(contact) {
+  const index = indexById.get(contact.id);
+  if (index !== undefined) {
+    contacts[index] = contact;
+    scheduleRender();
+  }
+}
+
+function removeContact(id) {
+  const index = indexById.get(id);
+  if (index === undefined) {
+    return;
+  }
+  contacts.splice(index, 1);
+  indexById.delete(id);
+  for (let i = index; i < contacts.length; i++) {
+    indexById.set(contacts[i].id, i);
+  }
+  scheduleRender();
+}
+
+// Reads the contacts again from the first page, when changes were missed.
+function reloadContacts() {
+  generation++;
+  contacts.length = 0;
+  indexById.clear();
+  nextCursor = null;
+  hasNextPage = true;
+  loading = false;
+  viewport.scrollTop = 0;
+  scheduleRender();
+}
+
+// The buttons of every row, rendered or not yet, are handled here rather than one by one.
+tableBody.addEventListener("click", function (event) {
+  const button = event.target.closest("[data-action]");
+  if (button === null) {
+    return;
+  }
+  const contact = contactOf(button);
+  if (contact === undefined) {
+    return;
+  }
+  if (button.dataset.action === "update") {
+    showUpdateContact(contact);
+  } else if (button.dataset.action === "delete") {
+    showDeleteContact(contact);
+  }
+});
+
+function showUpdateContact(contact) {
+  const inputs = updateContactForm.elements;
+  inputs.name.value = contact.name;
+  inputs.email.value = contact.email;
+  inputs.address.value = contact.address;
+  inputs.birthdate.value = formatBirthdate(contact.birthdate);
+  inputs.id.value = contact.id;
+  inputs.version.value = contact.version;
+  updateContactError.innerText = "";
+}
+
+function showDeleteContact(contact) {
+  deleteContactName.textContent = contact.name;
+  deleteContactForm.elements.id.value = contact.id;
+  deleteContactError.innerText = "";
+}
+
+// Sends the update and delete forms in the background and changes the contact they changed,
+// instead of reloading the whole list.
+document.addEventListener("submit", function (event) {
+  const form = event.target;
+  if (form === updateContactForm) {
+    event.preventDefault();
+    sendForm(form, updateContactModal, updateContactError).then(replaceContact);
+  } else if (form === deleteContactForm) {
+    event.preventDefault();
+    const id = Number(form.elements.id.value);
+    sendForm(form, deleteContactModal, deleteContactError).then(function () {
+      removeContact(id);
+    });
+  }
+});
+
+function sendForm(form, modal, error) {
+  const url =
+    form.getAttribute("action") + "?" + new URLSearchParams(new FormData(form));
+  return fetch(url, { headers: { Accept: "application/json" } })
+    .then(function (response) {
+      if (response.status === 204) {
+        return null;
+      }
+      return response.json().then(function (body) {
+        if (!response.ok) {
+          throw new Error(body.error);
+        }
+        return body;
+      });
+    })
+    .then(function (body) {
+      bootstrap.Modal.getInstance(modal).hide();
+      return body;
+    })
+    .catch(function (failure) {
+      error.innerText = failure.message;
+      return new Promise(function () {});
+    });
+}
+
+// Applies the changes made by anyone to the contacts of the book, as the server streams them.
+function listenToContactChanges() {
+  if (!window.EventSource) {
+    return;
+  }
+  let opened = false;
+  const events = new EventSource("api/events");
+  events.addEventListener("open", function () {
+    // Changes may have been missed while the stream was down.
+    if (opened) {
+      reloadContacts();
+    }
+    opened = true;
+  });
+  events.addEventListener("created", function (event) {
+    addContact(JSON.parse(event.data));
+  });
+  events.addEventListener("updated", function (event) {
+    replaceContact(JSON.parse(event.data));
+  });
+  events.addEventListener("deleted", function (event) {
+    removeContact(JSON.parse(event.data).id);
+  });
+  events.addEventListener("reload", reloadContacts);
+}
+
+addPage(JSON.parse(tableBody.dataset.firstPage));
+viewport.addEventListener("scroll", scheduleRender, { passive: true });
+window.addEventListener("resize", scheduleRender);
+render();
+listenToContactChanges();
@@ -23,7 +23,6 @@
  --%>
 
 <%@taglib uri="http://java.sun.com/jsp/jstl/core" prefix="core" %>
-<%@taglib uri="http://java.sun.com/jsp/jstl/fmt" prefix="fmt" %>
 
 <%@ page contentType="text/html; charset=UTF-8" pageEncoding="UTF-8" %>
 
@@ -42,9 +41,9 @@
             integrity="sha384-giJF6kkoqNQ00vy+HMDP7azOuL0xtbfIcaT9wjKHr8RbDVddVHyTfAAsrekwKmP1"
             crossorigin="anonymous"
     />
-    <link href="css/background.css" rel="stylesheet"/>
-    <link href="css/listContacts.css" rel="stylesheet"/>
-    <link href="css/footer.css" rel="stylesheet"/>
+    <link href="${assets['css/background.css']}" rel="stylesheet"/>
+    <link href="${assets['css/listContacts.css']}" rel="stylesheet"/>
+    <link href="${assets['css/footer.css']}" rel="stylesheet"/>
 </head>
 
 <body id="page_body">
@@ -116,7 +115,10 @@
                         />
                         <label for="birthdate_input">Birthdate</label>
                     </div>
+                    <input type="hidden" name="id"/>
+                    <input type="hidden" name="version"/>
                 </form>
+                <p id="update_contact_error" class="text-danger text-center"></p>
             </div>
             <div class="modal-footer">
                 <button
@@ -152,7 +154,13 @@
                         aria-label="Close"
                 ></button>
             </div>
-            <div id="modal_delete_contact_body" class="modal-body"></div>
+            <div class="modal-body">
+                Delete <span id="delete_contact_name"></span>'s contact?
+                <form id="delete_contact_form" action="deleteContact">
+                    <input type="hidden" name="id"/>
+                </form>
+            </div>
+            <p id="delete_contact_error" class="text-danger text-center"></p>
             <div class="modal-footer">
                 <button
                         type="button"
@@ -169,7 +177,24 @@
 
 <div class="container">
     <div id="div_row_contacts_table" class="row">
-        <div class="table-responsive-md">
+        <form id="search_contacts_form" class="d-flex mb-3" action="searchContacts" role="search">
+            <input
+                    id="search_input"
+                    class="form-control me-2"
+                    type="search"
+                    name="q"
+                    value="<core:out value="${query}"/>"
+                    placeholder="Search by name, e-Mail or address"
+                    aria-label="Search"
+            />
+            <button class="btn btn-secondary" type="submit">Search</button>
+        </form>
+
+        <core:if test="${not empty searchMessage}">
+            <p class="text-center">${searchMessage}</p>
+        </core:if>
+
+        <div id="contacts_viewport" class="table-responsive-md">
             <table
                     class="table table-hover table-bordered table-striped table-dark text-center"
             >
@@ -187,62 +212,42 @@
                 </tr>
                 </thead>
 
-                <tbody>
-                <core:forEach var="contact" items="${contacts}">
-                    <tr>
-                        <td>
-                            <span id="contact_${contact.id}_name">${contact.name}</span>
-                        </td>
-
-                        <td>
-                            <a
-                                    id="contact_${contact.id}_email"
-                                    href="mailto:${contact.email}"
-                            >${contact.email}</a
-                            >
-                        </td>
-
-                        <td>
-                    <span id="contact_${contact.id}_address"
-                    >${contact.address}</span
-                    >
-                        </td>
-
-                        <td>
-                    <span id="contact_${contact.id}_birthdate">
-                      <fmt:formatDate
-                              value="${contact.birthdate.time}"
-                              pattern="dd/MM/yyyy"
-                      />
-                    </span>
-                        </td>
-
-                        <td>
-                            <button
-                                    id="update_contact_${contact.id}_button"
-                                    data-contact-id="${contact.id}"
-                                    class="btn btn-secondary"
-                                    data-bs-toggle="modal"
-                                    data-bs-target="#modal_update_contact"
-                                    onclick="updateModalUpdateContactBody(this)"
-                            >
-                                Update
-                            </button>
-                            <button
-                                    id="delete_contact_${contact.id}_button"
-                                    data-contact-id="${contact.id}"
-                                    class="btn btn-danger"
-                                    data-bs-toggle="modal"
-                                    data-bs-target="#modal_delete_contact"
-                                    onclick="updateModalDeleteContactBody(this)"
-                            >
-                                Delete
-                            </button>
-                        </td>
-                    </tr>
-                </core:forEach>
+                <tbody
+                        id="contacts_table_body"
+                        data-page-size="${pageSize}"
+                        data-query="<core:out value="${query}"/>"
+                        data-first-page="<core:out value="${firstPage}"/>"
+                >
+                <tr class="contacts_spacer"><td colspan="5"></td></tr>
+                <tr class="contacts_spacer"><td colspan="5"></td></tr>
                 </tbody>
             </table>
+            <template id="contact_row_template">
+                <tr>
+                    <td><span data-field="name"></span></td>
+                    <td><a data-field="email"></a></td>
+                    <td><span data-field="address"></span></td>
+                    <td><span data-field="birthdate"></span></td>
+                    <td>
+                        <button
+                                data-action="update"
+                                class="btn btn-secondary"
+                                data-bs-toggle="modal"
+                                data-bs-target="#modal_update_contact"
+                        >
+                            Update
+                        </button>
+                        <button
+                                data-action="delete"
+                                class="btn btn-danger"
+                                data-bs-toggle="modal"
+                                data-bs-target="#modal_delete_contact"
+                        >
+                            Delete
+                        </button>
+                    </td>
+                </tr>
+            </template>
         </div>
     </div>
 </div>
@@ -256,7 +261,7 @@
         integrity="sha384-ygbV9kiqUc6oa4msXn9868pTtWMgiQaeYH7/t7LECLbyPA2x65Kgf80OJFdroafW"
         crossorigin="anonymous"
 ></script>
-<script src="js/calendar.js"></script>
-<script src="js/listContacts.js"></script>
+<script src="${assets['js/calendar.js']}"></script>
+<script src="${assets['js/listContacts.js']}"></script>
 </body>
 </html>
@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Angelo Hugo Cavalcanti de Carvalho Silva
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.angelocvti.contactsbook.dedup;
+
+import static org.junit.Assert.assertEquals;
+
+import com.angelocvti.contactsbook.model.Contact;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class DuplicateFinderTest {
+
+  @Test
+  public void findsPairSharingSmallBlockWhenAnotherSharedBlockIsSkipped() {
+    List<Contact> contacts = new ArrayList<>();
+    contacts.add(contact(1, "Maria Silva", "maria.silva@example.com", "1 Oak Street"));
+    contacts.add(contact(2, "Maria Silva", "mariasilva@example.org", "2 Elm Avenue"));
+    // Three more Maria Silvas make the block of the name too large to be compared.
+    contacts.add(contact(3, "Maria Silva", "msilva.sales@example.com", "3 Pine Road"));
+    contacts.add(contact(4, "Maria Silva", "maria.s.office@example.com", "4 Birch Lane"));
+    contacts.add(contact(5, "Maria Silva", "silvam.home@example.com", "5 Cedar Court"));
+
+    DuplicateFinder.Result result =
+        DuplicateFinder.builder()
+            .withMinScore(0.75)
+            .withMaxBlockSize(3)
+            .build()
+            .find(contacts.stream());
+
+    assertEquals(1, result.getSkippedBlocks());
+    assertEquals(1, result.getMatches().size());
+    assertEquals(1, result.getMatches().get(0).getContactId());
+    assertEquals(2, result.getMatches().get(0).getDuplicateId());
+  }
+
+  private static Contact contact(long id, String name, String email, String address) {
+    return Contact.builder()
+        .withId(id)
+        .withBookId(1L)
+        .withName(name)
+        .withEmail(email)
+        .withAddress(address)
+        .withBirthdate(LocalDate.of(1980, 1, 1))
+        .build();
+  }
+}